@@ -0,0 +1,5 @@
+# Codecs generated for @VSerializable classes are looked up by name at runtime.
+-keepnames @org.vaslabs.vserializer.VSerializable class *
+-keep class **_VCodec extends org.vaslabs.vserializer.ClassCodec {
+    <init>();
+}
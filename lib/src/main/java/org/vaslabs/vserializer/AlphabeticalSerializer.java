@@ -1,180 +1,924 @@
 package org.vaslabs.vserializer;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-
-import static org.vaslabs.vserializer.SerializationUtils.getAllFields;
-import static org.vaslabs.vserializer.SerializationUtils.skipField;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Created by vnicolaou on 02/05/16.
  */
 public class AlphabeticalSerializer extends StringSerializer {
 
+    /**
+     * The number of elements each task encodes when an array is serialized in parallel.
+     */
+    static final int PARALLEL_CHUNK_LENGTH = 1 << 14;
+
+    /*
+     * The marker ahead of the elements of a collection, or the keys or the values of a map, that
+     * are boxed primitives: packed values when none is null, otherwise one element after another.
+     */
+    private static final byte PACKED = 1;
+    private static final byte ELEMENTS = 0;
+
+    protected final ByteOrder byteOrder;
+
+    public AlphabeticalSerializer() {
+        this(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * @param byteOrder the byte order of multi-byte values on the wire. Big-endian by default;
+     *                  {@link ByteOrder#nativeOrder()} lets primitive arrays be copied in bulk
+     *                  without swapping bytes, but the data can then only be read back with the
+     *                  same byte order.
+     */
+    public AlphabeticalSerializer(ByteOrder byteOrder) {
+        this.byteOrder = byteOrder;
+    }
+
     @Override
     public <T> byte[] serialize(T obj) {
+        return serializeRoot(obj);
+    }
+
+    private byte[] serializeRoot(Object obj) {
         if (obj == null)
             return new byte[0];
-        if (obj instanceof String)
-            return super.serialize(obj);
-        if (obj.getClass().isArray()) {
-            boolean isPrimitive = SerializationUtils.enumTypes.containsKey(obj.getClass());
-            if (isPrimitive) {
-                return SerializationUtils.toBytes(obj);
-            }
+        final ClassPlan plan = ClassPlan.of(obj.getClass());
+        OutputBuffer byteBuffer = new OutputBuffer(plan.sizeHint, byteOrder);
+
+        try {
+            writeRoot(byteBuffer, plan, obj);
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            return new byte[0];
         }
-        final Field[] fields = getAllFields(obj);
-        final int size = computeSize(fields, obj);
 
-        ByteBuffer byteBuffer = ByteBuffer.allocate(size);
+        plan.recordSize(byteBuffer.position());
+        return byteBuffer.toByteArray();
+    }
 
+    /**
+     * Writes the object at the position of the given buffer and advances it past the written
+     * bytes. Heap, direct and mapped buffers are all written in place, whatever their byte order.
+     *
+     * @return the number of bytes written
+     * @throws java.nio.BufferOverflowException if the object does not fit in the remaining bytes,
+     * in which case the position of the buffer is left unchanged
+     */
+    @Override
+    public <T> int serialize(T obj, ByteBuffer byteBuffer) {
+        if (obj == null)
+            return 0;
+        OutputBuffer outputBuffer = OutputBuffer.wrap(byteBuffer, byteOrder);
+        try {
+            writeRoot(outputBuffer, ClassPlan.of(obj.getClass()), obj);
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        final int written = outputBuffer.position();
+        byteBuffer.position(byteBuffer.position() + written);
+        return written;
+    }
 
+    /**
+     * Serializes the object into a scratch buffer of the calling thread, which is reused by the
+     * next pooled serialization once the returned lease is released. Serializing the same kind of
+     * objects over and over this way allocates no buffers after the first ones.
+     */
+    public <T> BufferLease serializePooled(T obj) {
+        OutputBuffer outputBuffer = BufferPool.acquire(byteOrder);
+        if (obj == null)
+            return new BufferLease(outputBuffer);
         try {
-            putIn(byteBuffer, fields, obj);
+            writeRoot(outputBuffer, ClassPlan.of(obj.getClass()), obj);
         } catch (IllegalAccessException e) {
             e.printStackTrace();
-            return new byte[0];
+            outputBuffer.reset(byteOrder);
+        } catch (RuntimeException e) {
+            BufferPool.release(outputBuffer);
+            throw e;
         }
+        return new BufferLease(outputBuffer);
+    }
 
-        return byteBuffer.array();
+    /**
+     * Serializes the object into a scratch buffer of the calling thread and hands its bytes to the
+     * sink, without allocating a buffer or a lease.
+     *
+     * @return the number of bytes written to the sink
+     */
+    public <T> int serializeTo(T obj, OutputSink sink) throws IOException {
+        if (obj == null)
+            return 0;
+        OutputBuffer outputBuffer = BufferPool.acquire(byteOrder);
+        try {
+            writeRoot(outputBuffer, ClassPlan.of(obj.getClass()), obj);
+            final int length = outputBuffer.position();
+            sink.write(outputBuffer.byteBuffer().array(), 0, length);
+            return length;
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            return 0;
+        } finally {
+            BufferPool.release(outputBuffer);
+        }
     }
 
+    /**
+     * Serializes the list as an array of the class its elements share, or of Object when they are
+     * of different classes. Use {@link #serialize(List, Class)} when that class is not the one the
+     * list is read back with, as the polymorphic serializer tags elements by their declared type.
+     */
     @Override
     public <T> byte[] serialize(List<T> list) {
-        Object[] arrayFromList = list.toArray();
-        return serialize(arrayFromList);
+        return serialize(toArray(list, elementTypeOf(list)));
     }
 
-    protected int computeSize(Field[] fields, Object obj) {
-        return SerializationUtils.calculateSize(fields, obj);
+    /**
+     * Serializes the list as an array of the given element type.
+     */
+    public <T> byte[] serialize(List<? extends T> list, Class<T> elementType) {
+        return serialize(toArray(list, elementType));
     }
 
     @Override
     public <T> byte[] serialize(T[] objects) {
-        if (objects.length == 0)
+        return serializeRoot(objects);
+    }
+
+    public <T> byte[] serialize(List<T> list, ExecutorService executor) {
+        return serialize(toArray(list, elementTypeOf(list)), executor);
+    }
+
+    /**
+     * Serializes a large array with the elements split in chunks that are encoded by the executor,
+     * a ForkJoinPool for instance, and by the calling thread, each chunk into a buffer of its own.
+     * The chunks are then joined behind the count, so the output is the same as the one of
+     * {@link #serialize(Object[])}.
+     * <p>
+     * Arrays of fewer than two chunks are serialized on the calling thread, and so is any array
+     * when the serializer keeps state across the elements of a payload, such as the strings or
+     * objects written before.
+     */
+    public <T> byte[] serialize(T[] objects, ExecutorService executor) {
+        if (objects == null || objects.length < 2 * PARALLEL_CHUNK_LENGTH || newPayloadState() != null)
+            return serializeRoot(objects);
+        final List<Future<OutputBuffer>> chunks = new ArrayList<>();
+        try {
+            for (int from = PARALLEL_CHUNK_LENGTH; from < objects.length; from += PARALLEL_CHUNK_LENGTH) {
+                chunks.add(executor.submit(chunkOf(objects, from, Math.min(from + PARALLEL_CHUNK_LENGTH, objects.length))));
+            }
+            final OutputBuffer firstChunk = chunkOf(objects, 0, PARALLEL_CHUNK_LENGTH).call();
+            final OutputBuffer[] buffers = new OutputBuffer[chunks.size()];
+            int length = firstChunk.position();
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = chunks.get(i).get();
+                length += buffers[i].position();
+            }
+            OutputBuffer byteBuffer = new OutputBuffer(length + 8, byteOrder);
+            putLength(byteBuffer, objects.length);
+            putChunk(byteBuffer, firstChunk);
+            for (OutputBuffer buffer : buffers) {
+                putChunk(byteBuffer, buffer);
+            }
+            return byteBuffer.toByteArray();
+        } catch (ExecutionException e) {
+            return failedChunk(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return new byte[0];
-        final int totalSize = SerializationUtils.calculateNonPrimitiveArraySize(objects);
-        ByteBuffer byteBuffer = ByteBuffer.allocate(totalSize);
-        byteBuffer.putInt(objects.length);
-        for (T obj : objects) {
-            try {
-                if (obj != null) {
-                    byteBuffer.put((byte) 1);
-                    putIn(byteBuffer, getAllFields(obj), obj);
-                } else {
-                    byteBuffer.put((byte) -1);
+        } catch (Exception e) {
+            return failedChunk(e);
+        } finally {
+            for (Future<OutputBuffer> chunk : chunks) {
+                chunk.cancel(false);
+            }
+        }
+    }
+
+    private Callable<OutputBuffer> chunkOf(final Object[] objects, final int from, final int to) {
+        return new Callable<OutputBuffer>() {
+            @Override
+            public OutputBuffer call() throws IllegalAccessException {
+                OutputBuffer byteBuffer = new OutputBuffer(OutputBuffer.DEFAULT_CAPACITY, byteOrder);
+                putElementsIn(byteBuffer, objects, from, to);
+                return byteBuffer;
+            }
+        };
+    }
+
+    private static void putChunk(OutputBuffer byteBuffer, OutputBuffer chunk) {
+        byteBuffer.put(chunk.byteBuffer().array(), 0, chunk.position());
+    }
+
+    private static byte[] failedChunk(Throwable cause) {
+        rethrowUnchecked(cause);
+        cause.printStackTrace();
+        return new byte[0];
+    }
+
+    private static void rethrowUnchecked(Throwable cause) {
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+    }
+
+    public <T> byte[] serializeIndexed(List<T> list) {
+        return serializeIndexed(toArray(list, elementTypeOf(list)));
+    }
+
+    private static <T> T[] toArray(List<? extends T> list, Class<T> elementType) {
+        return list.toArray((T[]) Array.newInstance(elementType, list.size()));
+    }
+
+    /**
+     * The class shared by all the non-null elements, the declaring class for enum constants, or
+     * Object when they have none in common.
+     */
+    static Class elementTypeOf(List list) {
+        Class elementType = null;
+        for (Object element : list) {
+            if (element == null)
+                continue;
+            final Class type = element instanceof Enum ? ((Enum) element).getDeclaringClass() : element.getClass();
+            if (elementType == null)
+                elementType = type;
+            else if (elementType != type)
+                return Object.class;
+        }
+        return elementType == null ? Object.class : elementType;
+    }
+
+    /**
+     * Serializes an array followed by a table of the offsets of its elements, so that any element
+     * can be decoded without the ones before it, with {@link #indexedList(byte[], Class)}.
+     * <p>
+     * The elements are written as in {@link #serialize(Object[])}, with a null marker each, but
+     * every element is a payload of its own: strings or objects are never shared between them.
+     * They are followed by the offset of each element from the start of the data and by the
+     * number of elements, all of them four byte ints.
+     *
+     * @throws UnsupportedOperationException if the elements of the payloads of this serializer
+     * cannot be accessed on their own
+     */
+    public <T> byte[] serializeIndexed(T[] objects) {
+        requireElementAccess();
+        if (objects == null)
+            return new byte[0];
+        final int[] offsets = new int[objects.length];
+        OutputBuffer byteBuffer = new OutputBuffer(OutputBuffer.DEFAULT_CAPACITY + 4 * objects.length, byteOrder);
+        ClassPlan plan = null;
+        try {
+            for (int i = 0; i < objects.length; i++) {
+                final Object object = objects[i];
+                if (object != null && (plan == null || plan.type != object.getClass()))
+                    plan = ClassPlan.of(object.getClass());
+                offsets[i] = byteBuffer.position();
+                final PayloadState previousState = swapPayloadState(newPayloadState());
+                try {
+                    putElementIn(byteBuffer, objects.getClass().getComponentType(), plan, object);
+                } finally {
+                    swapPayloadState(previousState);
                 }
-            } catch (IllegalAccessException e) {
-                return new byte[0];
             }
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            return new byte[0];
+        }
+        for (int offset : offsets) {
+            byteBuffer.putInt(offset);
+        }
+        byteBuffer.putInt(objects.length);
+        return byteBuffer.toByteArray();
+    }
+
+    void writeRoot(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+        final PayloadState previousState = swapPayloadState(newPayloadState());
+        try {
+            putRootIn(byteBuffer, plan, obj);
+        } finally {
+            swapPayloadState(previousState);
+        }
+    }
+
+    <T> T readRoot(ByteBuffer byteBuffer, Class<T> clazz) {
+        final PayloadState previousState = swapPayloadState(newPayloadState());
+        try {
+            return convertRoot(byteBuffer, clazz);
+        } finally {
+            swapPayloadState(previousState);
+        }
+    }
+
+    /**
+     * Writes one record of a {@link BatchWriter}, a payload of its own that is read back with
+     * {@link #readRecord(ByteBuffer, Class)}. Serializers that transform the bytes of their
+     * payloads transform every record the same way.
+     */
+    protected void writeRecord(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+        writeRoot(byteBuffer, plan, obj);
+    }
+
+    /**
+     * Reads a record written by {@link #writeRecord(OutputBuffer, ClassPlan, Object)}, from the
+     * position to the limit of the buffer.
+     */
+    protected <T> T readRecord(ByteBuffer byteBuffer, Class<T> clazz) {
+        return readRoot(byteBuffer, clazz);
+    }
+
+    /**
+     * Whether the elements and fields of the payloads of this serializer can be written and read on
+     * their own, in place. Array streams, element iterators, indexed arrays and views need it;
+     * serializers that transform their payloads as a whole, such as encrypting ones, return false
+     * and are rejected by all of them.
+     */
+    protected boolean supportsElementAccess() {
+        return true;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if this serializer does not support element access
+     */
+    void requireElementAccess() {
+        if (!supportsElementAccess())
+            throw new UnsupportedOperationException("The elements of " + getClass().getSimpleName() + " payloads cannot be accessed on their own");
+    }
+
+    /**
+     * State shared by all the objects of one payload, such as the strings already written in it,
+     * or null if they are encoded independently of each other.
+     */
+    protected PayloadState newPayloadState() {
+        return null;
+    }
+
+    /**
+     * Makes the given state the one of the payload encoded or decoded on this thread.
+     *
+     * @return the state it replaces
+     */
+    protected PayloadState swapPayloadState(PayloadState state) {
+        return null;
+    }
+
+    /**
+     * The state of one payload. Readers that have to decode an element again once more bytes have
+     * arrived mark the state before the element and reset it to the mark before trying again.
+     */
+    protected static abstract class PayloadState {
+
+        protected abstract void mark();
+
+        protected abstract void reset();
+    }
+
+    /**
+     * Writes a top level object: strings, primitive arrays, boxed primitives and enums as their bare
+     * contents, object arrays
+     * as their length followed by their elements, or nothing at all when empty, and any other
+     * object field by field.
+     */
+    protected void putRootIn(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+        if (plan.isString) {
+            putChars(byteBuffer, (String) obj);
+        } else if (plan.boxedType != null) {
+            putBoxed(byteBuffer, plan, obj);
+        } else if (plan.isEnum) {
+            putEnum(byteBuffer, (Enum) obj);
+        } else if (plan.type.isArray()) {
+            if (SerializationUtils.enumTypes.containsKey(plan.type)) {
+                putPrimitiveArray(byteBuffer, obj);
+                return;
+            }
+            Object[] objects = (Object[]) obj;
+            if (objects.length == 0)
+                return;
+            putLength(byteBuffer, objects.length);
+            putElementsIn(byteBuffer, objects);
+        } else {
+            putIn(byteBuffer, plan, obj);
         }
-        return byteBuffer.array();
     }
 
     @Override
     public <T> T deserialise(byte[] data, Class<T> clazz) {
+        return readRoot(wrap(data), clazz);
+    }
+
+    /**
+     * Reads an object from the position of the given buffer and advances it past the bytes read.
+     * Heap, direct and mapped buffers are all read in place, in the byte order of the serializer
+     * whatever their own. Strings and
+     * primitive arrays take up all the remaining bytes.
+     */
+    @Override
+    public <T> T deserialise(ByteBuffer byteBuffer, Class<T> clazz) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        T obj = readRoot(input, clazz);
+        byteBuffer.position(input.position());
+        return obj;
+    }
+
+    /**
+     * Decodes only the named fields of an object, leaving the others at their defaults.
+     */
+    public <T> T deserialise(byte[] data, Class<T> clazz, String... fields) {
+        return deserialise(data, new Projection<>(clazz, fields));
+    }
+
+    public <T> T deserialise(byte[] data, Projection<T> projection) {
+        return deserialise(wrap(data), projection);
+    }
+
+    /**
+     * Decodes the fields of the projection of an object at the position of the buffer, skipping
+     * the others. The buffer itself is not moved, as the fields after the last selected one are
+     * never read.
+     */
+    public <T> T deserialise(ByteBuffer byteBuffer, Projection<T> projection) {
+        final PayloadState previousState = swapPayloadState(newPayloadState());
+        try {
+            return convertRoot(byteBuffer.duplicate().order(byteOrder), projection);
+        } finally {
+            swapPayloadState(previousState);
+        }
+    }
+
+    @Override
+    public <T> List<T> deserialise(byte[] data, Class<List> listClass, Class<T> parametarizedClass) {
+        T[] modelArray = (T[]) Array.newInstance(parametarizedClass, 0);
+        T[] array = (T[]) readRoot(wrap(data), modelArray.getClass());
+        return Arrays.asList(array);
+    }
+
+    /**
+     * Decodes a serialized Integer array or list into an int array, without boxing its elements.
+     *
+     * @throws IllegalArgumentException if one of the elements is null
+     */
+    public int[] deserialiseInts(byte[] data) {
+        return deserialiseInts(wrap(data));
+    }
+
+    /**
+     * Decodes an Integer array or list from the position of the buffer and advances it past the
+     * bytes read.
+     */
+    public int[] deserialiseInts(ByteBuffer byteBuffer) {
+        final ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final ClassPlan plan = ClassPlan.of(Integer.class);
+        final int[] values = new int[getRootLength(input)];
+        for (int i = 0; i < values.length; i++) {
+            requireElement(input, plan, i);
+            values[i] = getInt(input);
+        }
+        byteBuffer.position(input.position());
+        return values;
+    }
+
+    /**
+     * Decodes a serialized Long array or list into a long array, without boxing its elements.
+     *
+     * @throws IllegalArgumentException if one of the elements is null
+     */
+    public long[] deserialiseLongs(byte[] data) {
+        return deserialiseLongs(wrap(data));
+    }
+
+    public long[] deserialiseLongs(ByteBuffer byteBuffer) {
+        final ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final ClassPlan plan = ClassPlan.of(Long.class);
+        final long[] values = new long[getRootLength(input)];
+        for (int i = 0; i < values.length; i++) {
+            requireElement(input, plan, i);
+            values[i] = getLong(input);
+        }
+        byteBuffer.position(input.position());
+        return values;
+    }
+
+    /**
+     * Decodes a serialized Double array or list into a double array, without boxing its elements.
+     *
+     * @throws IllegalArgumentException if one of the elements is null
+     */
+    public double[] deserialiseDoubles(byte[] data) {
+        return deserialiseDoubles(wrap(data));
+    }
+
+    public double[] deserialiseDoubles(ByteBuffer byteBuffer) {
+        final ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final ClassPlan plan = ClassPlan.of(Double.class);
+        final double[] values = new double[getRootLength(input)];
+        for (int i = 0; i < values.length; i++) {
+            requireElement(input, plan, i);
+            values[i] = input.getDouble();
+        }
+        byteBuffer.position(input.position());
+        return values;
+    }
+
+    /**
+     * Decodes a serialized Integer array or list into a list that keeps its values unboxed.
+     */
+    public IntList intList(byte[] data) {
+        return new IntList(deserialiseInts(data));
+    }
+
+    public IntList intList(ByteBuffer byteBuffer) {
+        return new IntList(deserialiseInts(byteBuffer));
+    }
+
+    /**
+     * Reads the length of a top level array, which is not written at all when it is empty. Every
+     * element takes at least its marker, so a length beyond the remaining bytes is rejected before
+     * anything is allocated.
+     */
+    private int getRootLength(ByteBuffer byteBuffer) {
+        if (!byteBuffer.hasRemaining())
+            return 0;
+        final int length = getLength(byteBuffer);
+        if (length < 0)
+            throw new IllegalArgumentException("Invalid array length " + length);
+        requireRemaining(byteBuffer, length);
+        return length;
+    }
+
+    private void requireElement(ByteBuffer byteBuffer, ClassPlan plan, int index) {
+        if (getElementPlan(byteBuffer, plan) == null)
+            throw new IllegalArgumentException("Element " + index + " is null");
+    }
+
+    /**
+     * Iterates over a serialized array or list, decoding its elements one at a time.
+     */
+    public <T> ElementIterator<T> iterate(byte[] data, Class<T> elementType) {
+        return iterate(wrap(data), elementType);
+    }
+
+    /**
+     * Iterates over an array or list serialized in the remaining bytes of the buffer, decoding its
+     * elements one at a time. The position of the buffer is not moved.
+     *
+     * @throws UnsupportedOperationException if the elements of the payloads of this serializer
+     * cannot be accessed on their own
+     */
+    public <T> ElementIterator<T> iterate(ByteBuffer byteBuffer, Class<T> elementType) {
+        return new ElementIterator<>(this, byteBuffer, elementType);
+    }
+
+    /**
+     * A view that reads the primitive and enum fields of serialized instances of the class without
+     * decoding them.
+     * <p>
+     * Only payloads whose fields are at fixed offsets can be viewed. The compact and the reference
+     * sensitive serializers write values of variable length ahead of the fields, and serializers
+     * without {@link #supportsElementAccess() element access}, such as encrypted ones, decode their
+     * payloads whole, so those serializers throw instead.
+     *
+     * @throws UnsupportedOperationException if the payloads of this serializer cannot be viewed
+     */
+    public <T> VView<T> view(Class<T> type) {
+        requireElementAccess();
+        return new VView<>(type, byteOrder);
+    }
+
+    /**
+     * A list view of an array serialized with {@link #serializeIndexed(Object[])}, which decodes
+     * an element only when it is requested.
+     */
+    public <T> IndexedList<T> indexedList(byte[] data, Class<T> elementType) {
+        return indexedList(wrap(data), elementType);
+    }
+
+    /**
+     * A list view of an indexed array in the remaining bytes of the buffer. The position of the
+     * buffer is not moved.
+     *
+     * @throws UnsupportedOperationException if the elements of the payloads of this serializer
+     * cannot be accessed on their own
+     */
+    public <T> IndexedList<T> indexedList(ByteBuffer byteBuffer, Class<T> elementType) {
+        return new IndexedList<>(this, byteBuffer, elementType);
+    }
+
+    /**
+     * Decodes an array serialized with {@link #serializeIndexed(Object[])}, with the elements split
+     * in chunks that are decoded by the executor and by the calling thread.
+     */
+    public <T> T[] deserialiseIndexed(byte[] data, Class<T> elementType, ExecutorService executor) {
+        final IndexedList<T> list = indexedList(data, elementType);
+        final T[] array = (T[]) Array.newInstance(elementType, list.size());
+        final List<Future<T[]>> chunks = new ArrayList<>();
+        try {
+            for (int from = PARALLEL_CHUNK_LENGTH; from < array.length; from += PARALLEL_CHUNK_LENGTH) {
+                chunks.add(executor.submit(chunkOf(list, array, from, Math.min(from + PARALLEL_CHUNK_LENGTH, array.length))));
+            }
+            chunkOf(list, array, 0, Math.min(PARALLEL_CHUNK_LENGTH, array.length)).call();
+            for (Future<T[]> chunk : chunks) {
+                chunk.get();
+            }
+            return array;
+        } catch (ExecutionException e) {
+            rethrowUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (Exception e) {
+            rethrowUnchecked(e);
+            throw new IllegalStateException(e);
+        } finally {
+            for (Future<T[]> chunk : chunks) {
+                chunk.cancel(false);
+            }
+        }
+    }
+
+    private static <T> Callable<T[]> chunkOf(final IndexedList<T> list, final T[] array, final int from, final int to) {
+        return new Callable<T[]>() {
+            @Override
+            public T[] call() {
+                for (int i = from; i < to; i++) {
+                    array[i] = list.get(i);
+                }
+                return array;
+            }
+        };
+    }
+
+    /*
+     * Decoding serialized primitive arrays into existing arrays: every value in the data is read in
+     * bulk into the array, starting at the given offset, and the number of values read is returned.
+     * An array too short for the data throws an IndexOutOfBoundsException and reads nothing.
+     */
+
+    public int deserialiseInto(byte[] data, int[] array, int offset) {
+        return deserialiseInto(wrap(data), array, offset);
+    }
+
+    public int deserialiseInto(ByteBuffer byteBuffer, int[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, 4, array.length, offset);
+        SerializationUtils.getInts(input, array, offset, length);
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    public int deserialiseInto(byte[] data, long[] array, int offset) {
+        return deserialiseInto(wrap(data), array, offset);
+    }
+
+    public int deserialiseInto(ByteBuffer byteBuffer, long[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, 8, array.length, offset);
+        SerializationUtils.getLongs(input, array, offset, length);
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    public int deserialiseInto(byte[] data, short[] array, int offset) {
+        return deserialiseInto(wrap(data), array, offset);
+    }
+
+    public int deserialiseInto(ByteBuffer byteBuffer, short[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, 2, array.length, offset);
+        SerializationUtils.getShorts(input, array, offset, length);
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    public int deserialiseInto(byte[] data, char[] array, int offset) {
+        return deserialiseInto(wrap(data), array, offset);
+    }
+
+    public int deserialiseInto(ByteBuffer byteBuffer, char[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, 2, array.length, offset);
+        SerializationUtils.getChars(input, array, offset, length);
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    public int deserialiseInto(byte[] data, float[] array, int offset) {
+        return deserialiseInto(wrap(data), array, offset);
+    }
+
+    public int deserialiseInto(ByteBuffer byteBuffer, float[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, 4, array.length, offset);
+        SerializationUtils.getFloats(input, array, offset, length);
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    public int deserialiseInto(byte[] data, double[] array, int offset) {
+        return deserialiseInto(wrap(data), array, offset);
+    }
+
+    public int deserialiseInto(ByteBuffer byteBuffer, double[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, 8, array.length, offset);
+        SerializationUtils.getDoubles(input, array, offset, length);
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    private static int valuesIn(ByteBuffer byteBuffer, int valueSize, int arrayLength, int offset) {
+        final int length = byteBuffer.remaining() / valueSize;
+        if (offset < 0 || offset > arrayLength || length > arrayLength - offset)
+            throw new IndexOutOfBoundsException(length + " values do not fit at " + offset + " in an array of " + arrayLength);
+        return length;
+    }
+
+    /**
+     * Decodes an object into the given instance, overwriting its fields in place. Nested objects
+     * of the class of the field and arrays of the length on the wire that the instance already
+     * holds are decoded into as well, so decoding the same shape again allocates little more than
+     * its strings.
+     *
+     * @return the target, or null if the data could not be decoded
+     */
+    public <T> T deserialiseInto(byte[] data, T target) {
+        return deserialiseInto(wrap(data), target);
+    }
+
+    /**
+     * Decodes an object from the position of the given buffer into the given instance, and
+     * advances the buffer past the bytes read.
+     *
+     * @see #deserialiseInto(byte[], Object)
+     */
+    public <T> T deserialiseInto(ByteBuffer byteBuffer, T target) {
+        final ClassPlan plan = ClassPlan.of(target.getClass());
+        if (plan.isValueType() || plan.type.isArray())
+            throw new IllegalArgumentException(plan.type + " instances cannot be decoded into");
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final PayloadState previousState = swapPayloadState(newPayloadState());
+        final T obj;
+        try {
+            obj = convertRootInto(input, plan, target);
+        } finally {
+            swapPayloadState(previousState);
+        }
+        byteBuffer.position(input.position());
+        return obj;
+    }
+
+    /**
+     * Decodes a serialized array or list into the given array when it has the same length, or
+     * else into a new one, decoding its elements into the instances already at their index.
+     *
+     * @return the array the elements were decoded into
+     * @throws IllegalStateException if an element cannot be decoded, in which case the elements
+     * before it may already have been overwritten
+     */
+    public <T> T[] deserialiseArrayInto(byte[] data, T[] reuse) {
+        return deserialiseArrayInto(wrap(data), reuse);
+    }
+
+    /**
+     * @see #deserialiseArrayInto(byte[], Object[])
+     */
+    public <T> T[] deserialiseArrayInto(ByteBuffer byteBuffer, T[] reuse) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final PayloadState previousState = swapPayloadState(newPayloadState());
+        T[] array = reuse;
+        int i = 0;
+        try {
+            final int arraySize = input.hasRemaining() ? getLength(input) : 0;
+            if (arraySize != reuse.length) {
+                array = (T[]) Array.newInstance(reuse.getClass().getComponentType(), arraySize);
+                System.arraycopy(reuse, 0, array, 0, Math.min(arraySize, reuse.length));
+            }
+            final ClassPlan plan = ClassPlan.of(reuse.getClass().getComponentType());
+            for (; i < array.length; i++) {
+                array[i] = (T) convertElementInto(input, plan, array[i]);
+            }
+        } catch (BufferUnderflowException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read element " + i, e);
+        } finally {
+            swapPayloadState(previousState);
+        }
+        byteBuffer.position(input.position());
+        return array;
+    }
+
+    /**
+     * Wraps serialized data in a buffer of the byte order of the serializer.
+     */
+    protected ByteBuffer wrap(byte[] data) {
+        return ByteBuffer.wrap(data).order(byteOrder);
+    }
+
+    /**
+     * Reads a top level object, as written by {@link #putRootIn(OutputBuffer, ClassPlan, Object)}.
+     */
+    protected <T> T convertRoot(ByteBuffer byteBuffer, Class<T> clazz) {
         if (clazz.equals(String.class))
-            return super.deserialise(data, clazz);
+            return (T) getChars(byteBuffer);
+        final ClassPlan plan = ClassPlan.of(clazz);
+        try {
+            if (plan.boxedType != null)
+                return (T) getBoxed(byteBuffer, plan);
+        } catch (Exception e) {
+            return null;
+        }
+        if (plan.isEnum)
+            return getEnum(byteBuffer, clazz);
         if (clazz.isArray()) {
             boolean isPrimitive = SerializationUtils.enumTypes.containsKey(clazz);
             if (isPrimitive) {
-                return deserialisePrimitiveArray(data, clazz);
+                return deserialisePrimitiveArray(byteBuffer, clazz);
             } else {
-                return deserialiseArray(data, clazz);
+                return deserialiseArray(byteBuffer, clazz);
             }
         }
-        Field[] fields = getAllFields(clazz);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
         T obj = null;
         try {
             obj = SerializationUtils.instantiate(clazz);
-            obj = convert(byteBuffer, fields, obj);
+            obj = convert(byteBuffer, plan, obj);
         } catch (Exception e) {
             return obj;
         }
         return obj;
     }
 
-    @Override
-    public <T> List<T> deserialise(byte[] data, Class<List> listClass, Class<T> parametarizedClass) {
-        T[] modelArray = (T[]) Array.newInstance(parametarizedClass, 0);
-        T[] array = (T[]) deserialiseArray(data, modelArray.getClass());
-        return Arrays.asList(array);
+    /**
+     * Reads the selected fields of a top level object.
+     */
+    protected <T> T convertRoot(ByteBuffer byteBuffer, Projection<T> projection) {
+        T obj = null;
+        try {
+            obj = (T) projection.plan.newInstance();
+            return convertProjected(byteBuffer, projection, obj);
+        } catch (Exception e) {
+            return obj;
+        }
     }
 
-    protected <T> T deserialisePrimitiveArray(byte[] data, Class<T> clazz) {
-        int typeSize = SerializationUtils.sizes.get(clazz);
-        switch (SerializationUtils.enumTypes.get(clazz)) {
-            case INT: {
-                int[] array = new int[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            }
-            case LONG:{
-                long[] array = new long[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            }
-            case SHORT:{
-                short[] array = new short[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            }
-            case CHAR:{
-                char[] array = new char[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            }
-            case BOOLEAN:{
-                boolean[] array = new boolean[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            }
-            case BYTE:{
-                byte[] array = new byte[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            } case FLOAT:{
-                float[] array = new float[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            } case DOUBLE: {
-                double[] array = new double[data.length/typeSize];
-                SerializationUtils.fromBytes(data, array);
-                return (T) array;
-            }
+    protected <T> T convertProjected(ByteBuffer byteBuffer, Projection<T> projection, T obj) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException, NoSuchFieldException {
+        final FieldPlan[] fieldPlans = projection.plan.fields();
+        for (int i = 0; i < projection.fieldCount; i++) {
+            if (projection.isSelected(i))
+                convert(byteBuffer, fieldPlans[i], obj);
+            else
+                skip(byteBuffer, fieldPlans[i]);
+        }
+        return obj;
+    }
 
+    /**
+     * Reads a top level object into the given instance, as written by
+     * {@link #putRootIn(OutputBuffer, ClassPlan, Object)}.
+     */
+    protected <T> T convertRootInto(ByteBuffer byteBuffer, ClassPlan plan, T target) {
+        try {
+            return convertInto(byteBuffer, plan, target);
+        } catch (Exception e) {
+            return null;
         }
-        return null;
     }
 
-    private <T> T deserialiseArray(byte[] data, Class<T> clazz) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        final int arraySize = data.length == 0 ? 0 : byteBuffer.getInt();
+    protected <T> T deserialisePrimitiveArray(byte[] data, Class<T> clazz) {
+        return deserialisePrimitiveArray(wrap(data), clazz);
+    }
+
+    protected <T> T deserialisePrimitiveArray(ByteBuffer byteBuffer, Class<T> clazz) {
+        int typeSize = SerializationUtils.sizes.get(clazz);
+        return (T) getPrimitiveArray(byteBuffer, SerializationUtils.enumTypes.get(clazz), byteBuffer.remaining() / typeSize);
+    }
+
+    private <T> T deserialiseArray(ByteBuffer byteBuffer, Class<T> clazz) {
+        final int arraySize = byteBuffer.hasRemaining() ? getLength(byteBuffer) : 0;
         Class type = clazz.getComponentType();
         T[] objects = (T[]) Array.newInstance(type, arraySize);
-        final Field[] fields = getAllFields(type);
+        final ClassPlan plan = ClassPlan.of(type);
         for (int i = 0; i < objects.length; i++) {
-            boolean objectIsNull = byteBuffer.get() == -1;
-            if (objectIsNull) {
-                objects[i] = null;
-                continue;
-            }
-            T obj = null;
             try {
-                if (SerializationUtils.primitiveWrappers.containsKey(type)) {
-                    objects[i] = (T) SerializationUtils.instantiatePrimitiveWrapper(type, byteBuffer);
-                    continue;
-                }
-                obj = (T) SerializationUtils.instantiate(type);
-                obj = convert(byteBuffer, fields, obj);
-                objects[i] = obj;
+                objects[i] = (T) convertElement(byteBuffer, plan);
             } catch (Exception e) {
                 System.err.println(e.toString());
             }
@@ -182,81 +926,66 @@ public class AlphabeticalSerializer extends StringSerializer {
         return (T) objects;
     }
 
-    protected  <T> T convert(ByteBuffer byteBuffer, Field[] fields, T obj) throws NoSuchMethodException, InvocationTargetException, InstantiationException {
-        Arrays.sort(fields, new Comparator<Field>() {
-            @Override
-            public int compare(Field lhs, Field rhs) {
-                return lhs.getName().compareTo(rhs.getName());
-            }
-        });
-
-        for (Field field : fields) {
-            if (skipField(field))
-                continue;
+    protected <T> T convert(ByteBuffer byteBuffer, ClassPlan plan, T obj) throws NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final ClassCodec codec = codecFor(plan);
+        if (codec != null) {
             try {
-                SerializationUtils.arrangeField(field, obj);
-                convert(byteBuffer, field, obj);
+                codec.read(this, byteBuffer, obj);
+            } catch (BufferUnderflowException e) {
+                throw e;
             } catch (Exception e) {
                 return null;
-            } finally {
-                try {
-                    SerializationUtils.houseKeeping(field);
-                } catch (Exception e) {
-
-                }
             }
+            return obj;
         }
-        return obj;
-    }
-
-    protected <T> void convert(ByteBuffer byteBuffer, Field field, T obj) throws IllegalAccessException, NoSuchMethodException, InstantiationException, InvocationTargetException, NoSuchFieldException {
-        Class fieldType = field.getType();
-        if (skipField(field))
-            return;
-        if (fieldType.isArray()) {
-            convertArray(byteBuffer, field, obj);
-            return;
-        }
-        if (fieldType.isEnum()) {
+        for (FieldPlan fieldPlan : plan.fields()) {
             try {
-                convertEnum(byteBuffer, field, obj);
+                convert(byteBuffer, fieldPlan, obj);
+            } catch (BufferUnderflowException e) {
+                throw e;
             } catch (Exception e) {
-                return;
+                return null;
             }
-            return;
         }
+        return obj;
+    }
 
-        PrimitiveType primitiveType = SerializationUtils.enumTypes.get(fieldType);
-        if (primitiveType == null) {
-            if (String.class.equals(field.getType())) {
-                this.convertString(byteBuffer, field, obj);
+    protected <T> void convert(ByteBuffer byteBuffer, FieldPlan fieldPlan, T obj) throws IllegalAccessException, NoSuchMethodException, InstantiationException, InvocationTargetException, NoSuchFieldException {
+        final FieldAccessor field = fieldPlan.accessor;
+        switch (fieldPlan.kind) {
+            case PRIMITIVE_ARRAY:
+            case OBJECT_ARRAY:
+                convertArray(byteBuffer, fieldPlan, obj);
                 return;
-            }
-            boolean isNull = -1 == byteBuffer.get();
-            if (isNull) {
-                field.set(obj, null);
+            case ENUM:
+                field.set(obj, getEnum(byteBuffer, fieldPlan.type));
                 return;
-            } else {
-
-                Object innerObject = SerializationUtils.instantiate(field.getType());
-                field.set(obj, innerObject);
-                convert(byteBuffer, getAllFields(obj), innerObject);
+            case STRING:
+                this.convertString(byteBuffer, fieldPlan, obj);
+                return;
+            case COLLECTION:
+                field.set(obj, getCollection(byteBuffer, fieldPlan.type, fieldPlan.elementType));
+                return;
+            case MAP:
+                field.set(obj, getMap(byteBuffer, fieldPlan.type, fieldPlan.keyType, fieldPlan.elementType));
+                return;
+            case OBJECT:
+                field.set(obj, getObject(byteBuffer, fieldPlan.type));
                 return;
-            }
         }
-        switch (primitiveType) {
+        switch (fieldPlan.primitiveType) {
             case INT: {
-                int value = byteBuffer.getInt();
+                int value = getInt(byteBuffer);
                 field.setInt(obj, value);
                 return;
             }
             case LONG: {
-                long value = byteBuffer.getLong();
+                long value = getLong(byteBuffer);
                 field.setLong(obj, value);
                 return;
             }
             case SHORT: {
-                short value = byteBuffer.getShort();
+                short value = getShort(byteBuffer);
                 field.setShort(obj, value);
                 return;
             }
@@ -286,181 +1015,459 @@ public class AlphabeticalSerializer extends StringSerializer {
                 return;
             }
             default:
-                throw new IllegalArgumentException(field.getType().toString());
+                throw new IllegalArgumentException(fieldPlan.type.toString());
         }
     }
 
-    private <T> void convertEnum(ByteBuffer byteBuffer, Field field, T obj) throws Exception {
+    protected <E> E getEnum(ByteBuffer byteBuffer, Class<E> enumType) {
         byte ordinal = byteBuffer.get();
-        if (ordinal < 0) {
-            field.set(obj, null);
-        }
-        Object enumObj = generateEnum(field.getType(), ordinal);
-        field.set(obj, enumObj);
+        if (ordinal < 0)
+            return null;
+        return generateEnum(enumType, ordinal);
+    }
+
+    /**
+     * Reads a nested object: a null marker followed by the object, encoded like an array element.
+     */
+    protected <T> T getObject(ByteBuffer byteBuffer, Class<T> type) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        return (T) convertElement(byteBuffer, ClassPlan.of(type));
     }
 
+    protected <T> void convertArray(ByteBuffer byteBuffer, FieldPlan fieldPlan, T obj) throws IllegalAccessException, NoSuchFieldException, NoSuchMethodException, InstantiationException, InvocationTargetException {
+        fieldPlan.accessor.set(obj, getArray(byteBuffer, fieldPlan.type));
+    }
 
-    protected <T> void convertArray(ByteBuffer byteBuffer, Field field, T obj) throws IllegalAccessException, NoSuchFieldException, NoSuchMethodException, InstantiationException, InvocationTargetException {
-        Class fieldType = field.getType();
-        if (!SerializationUtils.enumTypes.containsKey(fieldType)) {
-            convertNonPrimitiveArray(byteBuffer, field, obj);
-            return;
+    /**
+     * Reads an array: its length, -1 for null, followed by its elements.
+     */
+    protected <A> A getArray(ByteBuffer byteBuffer, Class<A> arrayType) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final PrimitiveType primitiveType = SerializationUtils.enumTypes.get(arrayType);
+        if (primitiveType == null)
+            return (A) getNonPrimitiveArray(byteBuffer, arrayType.getComponentType());
+        final int arrayLength = getLength(byteBuffer);
+        if (arrayLength == -1)
+            return null;
+        return (A) getPrimitiveArray(byteBuffer, primitiveType, arrayLength);
+    }
+
+    /**
+     * Reads a collection: its size, -1 for null, followed by its elements. The collection is
+     * created with room for all of them.
+     */
+    protected <C> C getCollection(ByteBuffer byteBuffer, Class<C> collectionType, Class elementType) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final int size = getLength(byteBuffer);
+        if (size == -1)
+            return null;
+        final C collection = SerializationUtils.newCollection(collectionType, size);
+        getValues(byteBuffer, elementType, size, (Collection) collection);
+        return collection;
+    }
+
+    /**
+     * Reads a map: its size, -1 for null, followed by its keys and then by its values, both
+     * encoded like the elements of a collection.
+     */
+    protected <M> M getMap(ByteBuffer byteBuffer, Class<M> mapType, Class keyType, Class valueType) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final int size = getLength(byteBuffer);
+        if (size == -1)
+            return null;
+        final List keys = new ArrayList(size);
+        getValues(byteBuffer, keyType, size, keys);
+        final List values = new ArrayList(size);
+        getValues(byteBuffer, valueType, size, values);
+        final M map = SerializationUtils.newMap(mapType, size);
+        for (int i = 0; i < size; i++) {
+            ((Map) map).put(keys.get(i), values.get(i));
         }
-        final int arrayLength = byteBuffer.getInt();
-        if (arrayLength == -1) {
-            field.set(obj, null);
+        return map;
+    }
+
+    /**
+     * Reads the given number of elements declared of the given type and adds them to the target.
+     */
+    protected void getValues(ByteBuffer byteBuffer, Class declaredType, int count, Collection target) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final ClassPlan plan = ClassPlan.of(declaredType);
+        if (plan.boxedType != null && byteBuffer.get() == PACKED) {
+            SerializationUtils.addBoxed(target, getPrimitiveArray(byteBuffer, plan.boxedType, count));
             return;
         }
-        switch (SerializationUtils.enumTypes.get(fieldType)) {
+        for (int i = 0; i < count; i++) {
+            target.add(convertElement(byteBuffer, plan));
+        }
+    }
+
+    /**
+     * Reads the given number of primitive values into a new array.
+     */
+    protected Object getPrimitiveArray(ByteBuffer byteBuffer, PrimitiveType primitiveType, int arrayLength) {
+        switch (primitiveType) {
             case INT: {
+                requireRemaining(byteBuffer, arrayLength * 4L);
                 int[] array = new int[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.getInt();}
-                field.set(obj, array);
-                return;
+                SerializationUtils.getInts(byteBuffer, array, 0, arrayLength);
+                return array;
             }
             case LONG: {
+                requireRemaining(byteBuffer, arrayLength * 8L);
                 long[] array = new long[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.getLong();}
-                field.set(obj, array);
-                return;
+                SerializationUtils.getLongs(byteBuffer, array, 0, arrayLength);
+                return array;
             }
             case SHORT: {
+                requireRemaining(byteBuffer, arrayLength * 2L);
                 short[] array = new short[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.getShort();}
-                field.set(obj, array);
-                return;
+                SerializationUtils.getShorts(byteBuffer, array, 0, arrayLength);
+                return array;
             }
             case CHAR: {
+                requireRemaining(byteBuffer, arrayLength * 2L);
                 char[] array = new char[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.getChar();}
-                field.set(obj, array);
-                return;
+                SerializationUtils.getChars(byteBuffer, array, 0, arrayLength);
+                return array;
             }case BOOLEAN: {
+                requireRemaining(byteBuffer, arrayLength);
                 boolean[] array = new boolean[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.get() == 1;}
-                field.set(obj, array);
-                return;
+                SerializationUtils.getBooleans(byteBuffer, array, 0, arrayLength);
+                return array;
             }
             case BYTE: {
+                requireRemaining(byteBuffer, arrayLength);
                 byte[] array = new byte[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.get();}
-                field.set(obj, array);
-                return;
+                byteBuffer.get(array);
+                return array;
             } case FLOAT: {
+                requireRemaining(byteBuffer, arrayLength * 4L);
                 float[] array = new float[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.getFloat();}
-                field.set(obj, array);
-                return;
+                SerializationUtils.getFloats(byteBuffer, array, 0, arrayLength);
+                return array;
             } case DOUBLE: {
+                requireRemaining(byteBuffer, arrayLength * 8L);
                 double[] array = new double[arrayLength];
-                for (int i = 0; i<arrayLength; i++) { array[i] = byteBuffer.getDouble();}
-                field.set(obj, array);
-                return;
+                SerializationUtils.getDoubles(byteBuffer, array, 0, arrayLength);
+                return array;
             }
         }
+        return null;
     }
 
-    private <T> void convertNonPrimitiveArray(ByteBuffer byteBuffer, final Field field, T object) throws IllegalAccessException, NoSuchFieldException, NoSuchMethodException, InvocationTargetException, InstantiationException {
-        if (skipField(field))
-            return;
-        final int arraySize = byteBuffer.getInt();
+    private Object[] getNonPrimitiveArray(ByteBuffer byteBuffer, Class type) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final int arraySize = getLength(byteBuffer);
         if (arraySize == -1)
-            return;
-        Class type = field.getType().getComponentType();
-        T[] objects = (T[]) Array.newInstance(type, arraySize);
-        final Field[] fields = getAllFields(type);
+            return null;
+        Object[] objects = (Object[]) Array.newInstance(type, arraySize);
+        final ClassPlan plan = ClassPlan.of(type);
         for (int i = 0; i < objects.length; i++) {
-            if (byteBuffer.get() == -1) {
-                objects[i] = null;
-                continue;
-            }
-            T obj = null;
-            if (type.isEnum()) {
-                obj = (T) generateEnum(type, byteBuffer.get());
-            } else {
-                obj = (T) SerializationUtils.instantiate(type);
-                obj = convert(byteBuffer, fields, obj);
-
-            }
-            objects[i] = obj;
+            objects[i] = convertElement(byteBuffer, plan);
         }
-        SerializationUtils.arrangeField(field, object);
-        field.set(object, objects);
-        SerializationUtils.houseKeeping(field);
+        return objects;
+    }
 
+    /**
+     * Reads an element of an object array: a null marker followed by the element itself.
+     */
+    protected Object convertElement(ByteBuffer byteBuffer, ClassPlan plan) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final ClassPlan elementPlan = getElementPlan(byteBuffer, plan);
+        if (elementPlan == null)
+            return null;
+        return convertElementValue(byteBuffer, elementPlan);
     }
 
-    private <T> T generateEnum(Class<T> enumType, int ordinal) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        T[] enums =  enumType.getEnumConstants();
-        return enums[ordinal];
+    /**
+     * Reads the marker ahead of an element declared of the planned class.
+     *
+     * @return the plan of the element, or null for a null element
+     */
+    protected ClassPlan getElementPlan(ByteBuffer byteBuffer, ClassPlan declaredPlan) {
+        return byteBuffer.get() == -1 ? null : declaredPlan;
     }
 
-    protected void putIn(ByteBuffer byteBuffer, Field[] fields, Object obj) throws IllegalAccessException {
-        Arrays.sort(fields, new Comparator<Field>() {
-            @Override
-            public int compare(Field lhs, Field rhs) {
-                return lhs.getName().compareTo(rhs.getName());
-            }
-        });
+    /**
+     * Reads an element of an object array that follows its marker.
+     */
+    protected Object convertElementValue(ByteBuffer byteBuffer, ClassPlan plan) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        if (plan.isEnum)
+            return generateEnum(plan.type, byteBuffer.get());
+        if (plan.boxedType != null)
+            return getBoxed(byteBuffer, plan);
+        if (plan.isString)
+            return getString(byteBuffer);
+        Object obj = plan.newInstance();
+        return convert(byteBuffer, plan, obj);
+    }
 
-        for (Field field : fields) {
-            if (skipField(field))
-                continue;
-            try {
-                SerializationUtils.arrangeField(field, obj);
-                putIn(byteBuffer, field, obj);
-            } catch (NoSuchFieldException nsfe) {
+    /*
+     * Skipping values: fixed width values are skipped by their size, and strings, arrays and
+     * nested objects by the lengths and markers ahead of them, without being decoded.
+     */
 
+    protected void skip(ByteBuffer byteBuffer, FieldPlan fieldPlan) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        switch (fieldPlan.kind) {
+            case PRIMITIVE:
+                skipPrimitives(byteBuffer, fieldPlan.primitiveType, fieldPlan.size, 1);
+                return;
+            case ENUM:
+                skipBytes(byteBuffer, 1);
+                return;
+            case STRING:
+                skipString(byteBuffer);
+                return;
+            case PRIMITIVE_ARRAY: {
+                final int arrayLength = getLength(byteBuffer);
+                if (arrayLength > 0)
+                    skipPrimitives(byteBuffer, fieldPlan.primitiveType, fieldPlan.size, arrayLength);
+                return;
+            }
+            case OBJECT_ARRAY: {
+                final int arrayLength = getLength(byteBuffer);
+                final ClassPlan plan = ClassPlan.of(fieldPlan.type.getComponentType());
+                for (int i = 0; i < arrayLength; i++) {
+                    skipElement(byteBuffer, plan);
+                }
+                return;
+            }
+            case COLLECTION: {
+                final int size = getLength(byteBuffer);
+                if (size >= 0)
+                    skipValues(byteBuffer, fieldPlan.elementType, size);
+                return;
+            }
+            case MAP: {
+                final int size = getLength(byteBuffer);
+                if (size >= 0) {
+                    skipValues(byteBuffer, fieldPlan.keyType, size);
+                    skipValues(byteBuffer, fieldPlan.elementType, size);
+                }
+                return;
             }
-            field.setAccessible(false);
+            default:
+                skipElement(byteBuffer, ClassPlan.of(fieldPlan.type));
         }
     }
 
-    protected void putIn(ByteBuffer byteBuffer, Field field, Object obj) throws IllegalAccessException {
-        if (obj == null)
-            return;
-        Class type = field.getType();
-        if (skipField(field))
+    /**
+     * Skips the given number of primitive values of the given size.
+     */
+    protected void skipPrimitives(ByteBuffer byteBuffer, PrimitiveType primitiveType, int size, int count) {
+        skipBytes(byteBuffer, (long) size * count);
+    }
+
+    /**
+     * Skips the given number of elements of a collection, or keys or values of a map, declared of
+     * the given type.
+     */
+    protected void skipValues(ByteBuffer byteBuffer, Class declaredType, int count) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final ClassPlan plan = ClassPlan.of(declaredType);
+        if (plan.boxedType != null && byteBuffer.get() == PACKED) {
+            skipPrimitives(byteBuffer, plan.boxedType, plan.boxedSize, count);
             return;
-        if (type.isArray()) {
-            putArrayIn(byteBuffer, field, obj);
+        }
+        for (int i = 0; i < count; i++) {
+            skipElement(byteBuffer, plan);
+        }
+    }
+
+    protected void skipString(ByteBuffer byteBuffer) {
+        final int stringLength = getLength(byteBuffer);
+        if (stringLength > 0)
+            skipChars(byteBuffer, stringLength);
+    }
+
+    /**
+     * Skips an element of an object array or a nested object: a null marker followed by the value.
+     */
+    protected void skipElement(ByteBuffer byteBuffer, ClassPlan declaredPlan) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final ClassPlan plan = getElementPlan(byteBuffer, declaredPlan);
+        if (plan == null)
             return;
+        if (plan.isEnum) {
+            skipBytes(byteBuffer, 1);
+        } else if (plan.boxedType != null) {
+            skipPrimitives(byteBuffer, plan.boxedType, plan.boxedSize, 1);
+        } else if (plan.isString) {
+            skipString(byteBuffer);
+        } else {
+            for (FieldPlan fieldPlan : plan.fields()) {
+                skip(byteBuffer, fieldPlan);
+            }
         }
-        if (type.isEnum()) {
+    }
+
+    /*
+     * Decoding into existing instances: the fields of nested objects and arrays that can hold the
+     * decoded value are overwritten instead of being replaced.
+     */
+
+    protected <T> T convertInto(ByteBuffer byteBuffer, ClassPlan plan, T obj) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        for (FieldPlan fieldPlan : plan.fields()) {
             try {
-                int ordinal = getOrdinal(obj, field);
-                byteBuffer.put((byte)ordinal);
-                return;
+                convertInto(byteBuffer, fieldPlan, obj);
+            } catch (BufferUnderflowException e) {
+                throw e;
             } catch (Exception e) {
-                byteBuffer.put((byte) -1);
-                return;
+                return null;
             }
         }
-        PrimitiveType primitiveType = SerializationUtils.enumTypes.get(type);
-        if (primitiveType == null) {
-            if (String.class.equals(type)) {
-                this.insertString(byteBuffer, field, obj);
+        return obj;
+    }
+
+    protected <T> void convertInto(ByteBuffer byteBuffer, FieldPlan fieldPlan, T obj) throws IllegalAccessException, NoSuchMethodException, InstantiationException, InvocationTargetException, NoSuchFieldException {
+        final FieldAccessor field = fieldPlan.accessor;
+        switch (fieldPlan.kind) {
+            case PRIMITIVE_ARRAY:
+            case OBJECT_ARRAY:
+                field.set(obj, getArrayInto(byteBuffer, fieldPlan.type, field.get(obj)));
+                return;
+            case OBJECT:
+                field.set(obj, convertElementInto(byteBuffer, ClassPlan.of(fieldPlan.type), field.get(obj)));
+                return;
+            default:
+                convert(byteBuffer, fieldPlan, obj);
+        }
+    }
+
+    /**
+     * Reads an element of an object array into the existing element when it is an instance of
+     * exactly the planned class.
+     */
+    protected Object convertElementInto(ByteBuffer byteBuffer, ClassPlan plan, Object existing) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        if (existing == null || existing.getClass() != plan.type || plan.isValueType())
+            return convertElement(byteBuffer, plan);
+        final ClassPlan elementPlan = getElementPlan(byteBuffer, plan);
+        if (elementPlan == null)
+            return null;
+        if (elementPlan != plan)
+            return convertElementValue(byteBuffer, elementPlan);
+        return convertInto(byteBuffer, plan, existing);
+    }
+
+    /**
+     * Reads an array into the existing one when it has the length on the wire.
+     */
+    protected Object getArrayInto(ByteBuffer byteBuffer, Class arrayType, Object existing) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final int arrayLength = getLength(byteBuffer);
+        if (arrayLength == -1)
+            return null;
+        final boolean reusable = existing != null && existing.getClass() == arrayType && Array.getLength(existing) == arrayLength;
+        final PrimitiveType primitiveType = SerializationUtils.enumTypes.get(arrayType);
+        if (primitiveType != null) {
+            if (!reusable)
+                return getPrimitiveArray(byteBuffer, primitiveType, arrayLength);
+            fillPrimitiveArray(byteBuffer, existing);
+            return existing;
+        }
+        Object[] objects = reusable ? (Object[]) existing : (Object[]) Array.newInstance(arrayType.getComponentType(), arrayLength);
+        final ClassPlan plan = ClassPlan.of(arrayType.getComponentType());
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = convertElementInto(byteBuffer, plan, objects[i]);
+        }
+        return objects;
+    }
+
+    /**
+     * Reads as many primitive values as the array holds into it.
+     */
+    protected void fillPrimitiveArray(ByteBuffer byteBuffer, Object array) {
+        switch (SerializationUtils.enumTypes.get(array.getClass())) {
+            case INT: {
+                int[] values = (int[]) array;
+                SerializationUtils.getInts(byteBuffer, values, 0, values.length);
                 return;
             }
-            Object fieldObject = field.get(obj);
-            if (fieldObject == null) {
-                byteBuffer.put((byte) -1);
+            case LONG: {
+                long[] values = (long[]) array;
+                SerializationUtils.getLongs(byteBuffer, values, 0, values.length);
                 return;
-            } else {
-                byteBuffer.put((byte) 1);
-                putIn(byteBuffer, getAllFields(fieldObject), fieldObject);
+            }
+            case SHORT: {
+                short[] values = (short[]) array;
+                SerializationUtils.getShorts(byteBuffer, values, 0, values.length);
+                return;
+            }
+            case CHAR: {
+                char[] values = (char[]) array;
+                SerializationUtils.getChars(byteBuffer, values, 0, values.length);
+                return;
+            }
+            case BOOLEAN: {
+                boolean[] values = (boolean[]) array;
+                SerializationUtils.getBooleans(byteBuffer, values, 0, values.length);
+                return;
+            }
+            case BYTE:
+                byteBuffer.get((byte[]) array);
+                return;
+            case FLOAT: {
+                float[] values = (float[]) array;
+                SerializationUtils.getFloats(byteBuffer, values, 0, values.length);
+                return;
+            }
+            case DOUBLE: {
+                double[] values = (double[]) array;
+                SerializationUtils.getDoubles(byteBuffer, values, 0, values.length);
                 return;
             }
         }
-        switch (primitiveType) {
+    }
+
+    private <T> T generateEnum(Class<T> enumType, int ordinal) {
+        T[] enums =  enumType.getEnumConstants();
+        return enums[ordinal];
+    }
+
+    protected void putIn(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+        final ClassCodec codec = codecFor(plan);
+        if (codec != null) {
+            codec.write(this, byteBuffer, obj);
+            return;
+        }
+        for (FieldPlan fieldPlan : plan.fields()) {
+            putIn(byteBuffer, fieldPlan, obj);
+        }
+    }
+
+    /**
+     * The codec to encode instances of the planned class with, or null to encode them field by
+     * field. By default this is the codec generated at compile time for classes annotated with
+     * {@link VSerializable}.
+     */
+    protected ClassCodec codecFor(ClassPlan plan) {
+        return plan.generatedCodec();
+    }
+
+    protected void putIn(OutputBuffer byteBuffer, FieldPlan fieldPlan, Object obj) throws IllegalAccessException {
+        if (obj == null)
+            return;
+        final FieldAccessor field = fieldPlan.accessor;
+        switch (fieldPlan.kind) {
+            case PRIMITIVE_ARRAY:
+            case OBJECT_ARRAY:
+                putArray(byteBuffer, field.get(obj));
+                return;
+            case ENUM:
+                putEnum(byteBuffer, (Enum) field.get(obj));
+                return;
+            case STRING:
+                this.insertString(byteBuffer, fieldPlan, obj);
+                return;
+            case COLLECTION:
+                putCollection(byteBuffer, fieldPlan.elementType, (Collection) field.get(obj));
+                return;
+            case MAP:
+                putMap(byteBuffer, fieldPlan.keyType, fieldPlan.elementType, (Map) field.get(obj));
+                return;
+            case OBJECT:
+                putObject(byteBuffer, fieldPlan.type, field.get(obj));
+                return;
+        }
+        switch (fieldPlan.primitiveType) {
             case INT:
-                byteBuffer.putInt(field.getInt(obj));
+                putInt(byteBuffer, field.getInt(obj));
                 return;
             case LONG:
-                byteBuffer.putLong(field.getLong(obj));
+                putLong(byteBuffer, field.getLong(obj));
                 return;
             case SHORT:
-                byteBuffer.putShort(field.getShort(obj));
+                putShort(byteBuffer, field.getShort(obj));
                 return;
             case CHAR:
                 byteBuffer.putChar(field.getChar(obj));
@@ -478,148 +1485,473 @@ public class AlphabeticalSerializer extends StringSerializer {
                 byteBuffer.putDouble(field.getDouble(obj));
                 return;
             default:
-                throw new IllegalArgumentException(field.getType().toString());
+                throw new IllegalArgumentException(fieldPlan.type.toString());
         }
     }
 
-    private int getOrdinal(Object obj, Field field) throws NoSuchFieldException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
-        SerializationUtils.arrangeField(field, obj);
-        Object enumObject = field.get(obj);
-        if (enumObject == null)
-            return -1;
-        return getOrdinal(enumObject);
+    /*
+     * The encoding of int, long and short values, whether fields, boxed values or array elements:
+     * fixed width in the byte order of the serializer.
+     */
+
+    protected void putInt(OutputBuffer byteBuffer, int value) {
+        byteBuffer.putInt(value);
     }
 
-    private int getOrdinal(Object enumObject) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        Method ordinalMethod = enumObject.getClass().getMethod("ordinal");
-        return (int) ordinalMethod.invoke(enumObject);
+    protected int getInt(ByteBuffer byteBuffer) {
+        return byteBuffer.getInt();
     }
 
-    private void putArrayIn(ByteBuffer byteBuffer, Field field, Object obj) {
-        try {
-            Object array = field.get(obj);
-            if (array == null) {
-                byteBuffer.putInt(-1);
+    protected void putLong(OutputBuffer byteBuffer, long value) {
+        byteBuffer.putLong(value);
+    }
+
+    protected long getLong(ByteBuffer byteBuffer) {
+        return byteBuffer.getLong();
+    }
+
+    protected void putShort(OutputBuffer byteBuffer, short value) {
+        byteBuffer.putShort(value);
+    }
+
+    protected short getShort(ByteBuffer byteBuffer) {
+        return byteBuffer.getShort();
+    }
+
+    /**
+     * Writes a boxed primitive as the primitive value it holds.
+     */
+    protected void putBoxed(OutputBuffer byteBuffer, ClassPlan plan, Object value) {
+        switch (plan.boxedType) {
+            case INT:
+                putInt(byteBuffer, (Integer) value);
                 return;
-            }
-            int arrayLength = SerializationUtils.findArrayLength(field, obj);
-            byteBuffer.putInt(arrayLength);
-            insertArrayValues(byteBuffer, field, obj);
-        } catch (Exception e) {
+            case LONG:
+                putLong(byteBuffer, (Long) value);
+                return;
+            case SHORT:
+                putShort(byteBuffer, (Short) value);
+                return;
+            default:
+                SerializationUtils.putPrimitiveWrapper(byteBuffer, plan.boxedType, value);
+        }
+    }
+
+    protected Object getBoxed(ByteBuffer byteBuffer, ClassPlan plan) throws InvocationTargetException, IllegalAccessException {
+        switch (plan.boxedType) {
+            case INT:
+                return getInt(byteBuffer);
+            case LONG:
+                return getLong(byteBuffer);
+            case SHORT:
+                return getShort(byteBuffer);
+            default:
+                return SerializationUtils.getPrimitiveWrapper(byteBuffer, plan.boxedType);
+        }
+    }
+
+    protected void putEnum(OutputBuffer byteBuffer, Enum enumObject) {
+        byteBuffer.put(enumObject == null ? -1 : (byte) enumObject.ordinal());
+    }
+
+    /**
+     * Writes a nested object: a null marker followed by the object, encoded like an array element.
+     */
+    protected void putObject(OutputBuffer byteBuffer, Object fieldObject) throws IllegalAccessException {
+        putObject(byteBuffer, fieldObject == null ? null : fieldObject.getClass(), fieldObject);
+    }
+
+    /**
+     * Writes a nested object of a field declared of the given type.
+     */
+    protected void putObject(OutputBuffer byteBuffer, Class declaredType, Object fieldObject) throws IllegalAccessException {
+        putElementIn(byteBuffer, declaredType, fieldObject == null ? null : ClassPlan.of(fieldObject.getClass()), fieldObject);
+    }
+
+    /**
+     * Writes an array: its length, -1 for null, followed by its elements.
+     */
+    protected void putArray(OutputBuffer byteBuffer, Object array) throws IllegalAccessException {
+        if (array == null) {
+            putLength(byteBuffer, -1);
             return;
         }
+        putLength(byteBuffer, Array.getLength(array));
+        if (SerializationUtils.enumTypes.containsKey(array.getClass())) {
+            putPrimitiveArray(byteBuffer, array);
+            return;
+        }
+        putElementsIn(byteBuffer, (Object[]) array);
+    }
 
+    /**
+     * Writes the values of a primitive array, without its length.
+     */
+    protected void putPrimitiveArray(OutputBuffer byteBuffer, Object array) {
+        switch (SerializationUtils.enumTypes.get(array.getClass())) {
+            case INT: {
+                int[] values = (int[]) array;
+                byteBuffer.putInts(values, 0, values.length);
+                return;
+            }
+            case LONG: {
+                long[] values = (long[]) array;
+                byteBuffer.putLongs(values, 0, values.length);
+                return;
+            }
+            case SHORT: {
+                short[] values = (short[]) array;
+                byteBuffer.putShorts(values, 0, values.length);
+                return;
+            }
+            case CHAR: {
+                char[] values = (char[]) array;
+                byteBuffer.putChars(values, 0, values.length);
+                return;
+            }
+            case BOOLEAN:
+                for (boolean value : (boolean[]) array) { byteBuffer.put((byte) (value ? 1 : 0)); }
+                return;
+            case BYTE:
+                byteBuffer.put((byte[]) array);
+                return;
+            case FLOAT: {
+                float[] values = (float[]) array;
+                byteBuffer.putFloats(values, 0, values.length);
+                return;
+            }
+            case DOUBLE: {
+                double[] values = (double[]) array;
+                byteBuffer.putDoubles(values, 0, values.length);
+                return;
+            }
+        }
     }
 
-    private void insertArrayValues(ByteBuffer byteBuffer, Field field, Object obj) throws IllegalAccessException, NoSuchMethodException, NoSuchFieldException, InvocationTargetException {
-        Class fieldType = field.getType();
-        if (!SerializationUtils.enumTypes.containsKey(fieldType)) {
-            insertArrayValuesNonPrimitive(byteBuffer, field, obj);
+    /**
+     * Writes a collection: its size, -1 for null, followed by its elements.
+     */
+    protected void putCollection(OutputBuffer byteBuffer, Class elementType, Collection collection) throws IllegalAccessException {
+        if (collection == null) {
+            putLength(byteBuffer, -1);
             return;
         }
-        byte[] bytes = SerializationUtils.toBytes(field.get(obj));
-        byteBuffer.put(bytes);
+        putLength(byteBuffer, collection.size());
+        putValues(byteBuffer, elementType, collection);
     }
 
-    private void insertArrayValuesNonPrimitive(ByteBuffer byteBuffer, Field field, Object obj) throws IllegalAccessException, NoSuchMethodException, NoSuchFieldException, InvocationTargetException {
-        Object[] objects = (Object[]) field.get(obj);
-        if (objects == null || objects.length == 0)
+    /**
+     * Writes a map: its size, -1 for null, followed by its keys and then by its values.
+     */
+    protected void putMap(OutputBuffer byteBuffer, Class keyType, Class valueType, Map map) throws IllegalAccessException {
+        if (map == null) {
+            putLength(byteBuffer, -1);
             return;
+        }
+        putLength(byteBuffer, map.size());
+        putValues(byteBuffer, keyType, map.keySet());
+        putValues(byteBuffer, valueType, map.values());
+    }
 
-        Field[] fields = getAllFields(objects[0]);
-        for (Object object : objects) {
-            if (object == null) {
-                byteBuffer.put((byte) -1);
-            } else {
-                byteBuffer.put((byte) 1);
-                final boolean isEnum = object.getClass().getEnclosingClass().isEnum();
-                if (isEnum) {
-                    putEnum(byteBuffer, object);
-                    continue;
-                }
-                putIn(byteBuffer, fields, object);
+    /**
+     * Writes the elements of a collection, or the keys or the values of a map, declared of the
+     * given type. Boxed primitives are unboxed and written like a primitive array when none of
+     * them is null; any other values are written like the elements of an object array.
+     */
+    protected void putValues(OutputBuffer byteBuffer, Class declaredType, Collection values) throws IllegalAccessException {
+        final ClassPlan declaredPlan = ClassPlan.of(declaredType);
+        if (declaredPlan.boxedType != null) {
+            final Object array = SerializationUtils.unbox(values, declaredPlan.boxedType);
+            if (array != null) {
+                byteBuffer.put(PACKED);
+                putPrimitiveArray(byteBuffer, array);
+                return;
             }
+            byteBuffer.put(ELEMENTS);
+        }
+        ClassPlan plan = null;
+        for (Iterator iterator = values.iterator(); iterator.hasNext(); ) {
+            final Object value = iterator.next();
+            if (value != null && (plan == null || plan.type != value.getClass()))
+                plan = ClassPlan.of(value.getClass());
+            putElementIn(byteBuffer, declaredType, plan, value);
+        }
+    }
+
+    protected void putElementsIn(OutputBuffer byteBuffer, Object[] objects) throws IllegalAccessException {
+        putElementsIn(byteBuffer, objects, 0, objects.length);
+    }
+
+    /**
+     * Writes the elements from index from, inclusive, to index to, exclusive.
+     */
+    protected void putElementsIn(OutputBuffer byteBuffer, Object[] objects, int from, int to) throws IllegalAccessException {
+        final Class declaredType = objects.getClass().getComponentType();
+        ClassPlan plan = null;
+        for (int i = from; i < to; i++) {
+            final Object object = objects[i];
+            if (object != null && (plan == null || plan.type != object.getClass()))
+                plan = ClassPlan.of(object.getClass());
+            putElementIn(byteBuffer, declaredType, plan, object);
+        }
+    }
+
+    /**
+     * Writes an element of an array, or a nested object, whose declared type is the given one, or
+     * null if it is not known. Elements are written the same whatever their declared type.
+     */
+    protected void putElementIn(OutputBuffer byteBuffer, Class declaredType, ClassPlan plan, Object object) throws IllegalAccessException {
+        putElementIn(byteBuffer, plan, object);
+    }
+
+    /**
+     * Writes an element of an object array: a null marker followed by the element itself.
+     */
+    protected void putElementIn(OutputBuffer byteBuffer, ClassPlan plan, Object object) throws IllegalAccessException {
+        if (object == null) {
+            byteBuffer.put((byte) -1);
+            return;
         }
+        byteBuffer.put((byte) 1);
+        putElementValue(byteBuffer, plan, object);
     }
 
-    private void putEnum(ByteBuffer byteBuffer, Object obj) throws InvocationTargetException, NoSuchMethodException, IllegalAccessException, NoSuchFieldException {
-        final int ordinal = getOrdinal(obj);
-        byteBuffer.put((byte) ordinal);
+    /**
+     * Writes an element of an object array that follows its marker.
+     */
+    protected void putElementValue(OutputBuffer byteBuffer, ClassPlan plan, Object object) throws IllegalAccessException {
+        if (plan.isEnum)
+            putEnum(byteBuffer, (Enum) object);
+        else if (plan.boxedType != null)
+            putBoxed(byteBuffer, plan, object);
+        else if (plan.isString)
+            putString(byteBuffer, (String) object);
+        else
+            putIn(byteBuffer, plan, object);
     }
 
 }
 
 abstract class StringSerializer implements VSerializer {
-    private static Field stringField = null;
-    static {
-        try {
-            stringField = String.class.getDeclaredField("value");
-            stringField.setAccessible(true);
-        } catch (NoSuchFieldException e) {
-            e.printStackTrace();
-        }
+
+    /*
+     * The encodings of the characters of a string, written in a byte ahead of them: Latin-1 when
+     * every char fits in a byte, otherwise UTF-8 when it is shorter than UTF-16. UTF-8 encodes each
+     * char of a surrogate pair on its own, like DataOutput does, so any string reads back as it was.
+     */
+    static final byte LATIN_1 = 0;
+    static final byte UTF_8 = 1;
+    static final byte UTF_16 = 2;
+
+    protected <T> void convertString(ByteBuffer byteBuffer, FieldPlan fieldPlan, T obj) throws IllegalAccessException {
+        fieldPlan.accessor.set(obj, getString(byteBuffer));
     }
-    @Override
-    public <T> byte[] serialize(T myTestObject) {
 
-        try {
-            char[] chars = (char[]) stringField.get(myTestObject);
-            return toBytes(chars);
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        }
-        return new byte[0];
+    /**
+     * Reads a string: its length, -1 for null, followed by its encoding and its characters.
+     */
+    protected String getString(ByteBuffer byteBuffer) {
+        final int stringLength = getLength(byteBuffer);
+        if (stringLength == -1)
+            return null;
+        return getChars(byteBuffer, stringLength);
+    }
 
+    protected <T> void insertString(OutputBuffer byteBuffer, FieldPlan fieldPlan, T obj) throws IllegalAccessException {
+        putString(byteBuffer, (String) fieldPlan.accessor.get(obj));
     }
 
-    private byte[] toBytes(char[] chars) {
-        ByteBuffer byteBuffer = ByteBuffer.allocate(chars.length*2);
-        for (char c : chars) {
-            byteBuffer.putChar(c);
+    /**
+     * Writes a string: its length, -1 for null, followed by its encoding and its characters.
+     */
+    protected void putString(OutputBuffer byteBuffer, String string) {
+        if (string == null) {
+            putLength(byteBuffer, -1);
+            return;
         }
-        return byteBuffer.array();
+        putLength(byteBuffer, string.length());
+        putChars(byteBuffer, string);
+    }
+
+    /**
+     * Writes the length of a string or an array, -1 for null, or the number of elements of a top
+     * level array: a fixed width int by default.
+     */
+    protected void putLength(OutputBuffer byteBuffer, int length) {
+        byteBuffer.putInt(length);
+    }
+
+    protected int getLength(ByteBuffer byteBuffer) {
+        return byteBuffer.getInt();
     }
 
-    private char[] toChars(byte[] bytes) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-        char[] chars = new char[bytes.length / 2];
-        for (int i = 0; i < chars.length; i++) {
-            chars[i] = byteBuffer.getChar();
+    /**
+     * Writes the encoding and the characters of a string, without its length, or nothing at all
+     * for an empty string.
+     */
+    protected void putChars(OutputBuffer byteBuffer, String string) {
+        final int length = string.length();
+        if (length == 0)
+            return;
+        final int utf8Length = utf8Length(string);
+        if (utf8Length < 0) {
+            byteBuffer.put(LATIN_1);
+            byteBuffer.putLatin1(string);
+        } else if (utf8Length < length * 2) {
+            byteBuffer.put(UTF_8);
+            byteBuffer.putUtf8(string, utf8Length);
+        } else {
+            byteBuffer.put(UTF_16);
+            byteBuffer.putUtf16(string);
         }
-        return chars;
     }
 
-    @Override
-    public <T> T deserialise(byte[] data, Class<T> clazz) {
-        if (!clazz.equals(String.class)) {
-            throw new IllegalArgumentException("Only Strings are supported");
+    /**
+     * Reads the encoding and the given number of characters of a string.
+     */
+    protected String getChars(ByteBuffer byteBuffer, int length) {
+        if (length == 0)
+            return "";
+        return getEncoded(byteBuffer, byteBuffer.get(), length);
+    }
+
+    /**
+     * Reads a string out of all the remaining bytes, as written by
+     * {@link #putChars(OutputBuffer, String)}.
+     */
+    protected String getChars(ByteBuffer byteBuffer) {
+        if (!byteBuffer.hasRemaining())
+            return "";
+        final byte encoding = byteBuffer.get();
+        switch (encoding) {
+            case LATIN_1:
+                return getEncoded(byteBuffer, encoding, byteBuffer.remaining());
+            case UTF_16:
+                return getEncoded(byteBuffer, encoding, byteBuffer.remaining() / 2);
+            default:
+                int length = 0;
+                for (int i = byteBuffer.position(); i < byteBuffer.limit(); i++) {
+                    if ((byteBuffer.get(i) & 0xC0) != 0x80)
+                        length++;
+                }
+                return getEncoded(byteBuffer, encoding, length);
         }
-        return (T) new String(toChars(data));
     }
 
-    protected <T> void convertString(ByteBuffer byteBuffer, Field field, T obj) throws IllegalAccessException {
-        final int stringLength = byteBuffer.getInt();
-        if (stringLength == -1) {
-            field.set(obj, null);
-            return;
+    /**
+     * Moves past the given number of characters, as written by
+     * {@link #putChars(OutputBuffer, String)}, without decoding them. UTF-8 characters are
+     * counted by their lead bytes.
+     */
+    static void skipChars(ByteBuffer byteBuffer, int length) {
+        final byte encoding = byteBuffer.get();
+        switch (encoding) {
+            case LATIN_1:
+                skipBytes(byteBuffer, length);
+                return;
+            case UTF_16:
+                skipBytes(byteBuffer, 2L * length);
+                return;
+            default: {
+                int position = byteBuffer.position();
+                for (int i = 0; i < length; i++) {
+                    if (position >= byteBuffer.limit())
+                        throw new BufferUnderflowException();
+                    final int lead = byteBuffer.get(position);
+                    position += (lead & 0x80) == 0 ? 1 : (lead & 0xE0) == 0xC0 ? 2 : 3;
+                }
+                if (position > byteBuffer.limit())
+                    throw new BufferUnderflowException();
+                byteBuffer.position(position);
+            }
         }
-        final char[] stringChars = new char[stringLength];
-        for (int i = 0; i < stringLength; i++) {
-            stringChars[i] = byteBuffer.getChar();
+    }
+
+    /**
+     * Reads the given number of characters in the given encoding.
+     */
+    @SuppressWarnings("deprecation")
+    private static String getEncoded(ByteBuffer byteBuffer, byte encoding, int length) {
+        switch (encoding) {
+            case LATIN_1: {
+                requireRemaining(byteBuffer, length);
+                final int position = byteBuffer.position();
+                final String string;
+                if (byteBuffer.hasArray()) {
+                    // copies the bytes straight into the string, with no decoder in between
+                    string = new String(byteBuffer.array(), 0, byteBuffer.arrayOffset() + position, length);
+                } else {
+                    byte[] bytes = new byte[length];
+                    byteBuffer.get(bytes);
+                    string = new String(bytes, 0, 0, length);
+                }
+                byteBuffer.position(position + length);
+                return string;
+            }
+            case UTF_16: {
+                requireRemaining(byteBuffer, length * 2L);
+                CharBuffer charBuffer = byteBuffer.asCharBuffer();
+                charBuffer.limit(length);
+                final String string = charBuffer.toString();
+                byteBuffer.position(byteBuffer.position() + length * 2);
+                return string;
+            }
+            case UTF_8: {
+                requireRemaining(byteBuffer, length);
+                final char[] chars = new char[length];
+                for (int i = 0; i < length; i++) {
+                    final int b = byteBuffer.get();
+                    if (b >= 0)
+                        chars[i] = (char) b;
+                    else if ((b & 0xE0) == 0xC0)
+                        chars[i] = (char) (((b & 0x1F) << 6) | (byteBuffer.get() & 0x3F));
+                    else
+                        chars[i] = (char) (((b & 0x0F) << 12) | ((byteBuffer.get() & 0x3F) << 6) | (byteBuffer.get() & 0x3F));
+                }
+                return new String(chars);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown string encoding " + encoding);
         }
-        String string = new String(stringChars);
-        field.set(obj, string);
     }
 
-    protected <T> void insertString(ByteBuffer byteBuffer, Field field, T obj) throws IllegalAccessException {
-        String string = (String) field.get(obj);
-        if (string == null) {
-            byteBuffer.putInt(-1);
-            return;
+    /**
+     * The number of bytes the characters of a non empty string take after their encoding.
+     */
+    static int encodedLength(String string) {
+        final int utf8Length = utf8Length(string);
+        if (utf8Length < 0)
+            return string.length();
+        return Math.min(utf8Length, string.length() * 2);
+    }
+
+    /**
+     * The length of the string in UTF-8, or -1 if all its chars fit in Latin-1.
+     */
+    private static int utf8Length(String string) {
+        final int length = string.length();
+        int utf8Length = length;
+        boolean latin1 = true;
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c >= 0x80) {
+                utf8Length += c < 0x800 ? 1 : 2;
+                latin1 &= c <= 0xFF;
+            }
         }
-        byteBuffer.putInt(string.length());
-        char[] characters = string.toCharArray();
-        byte[] bytes = toBytes(characters);
-        byteBuffer.put(bytes);
+        return latin1 ? -1 : utf8Length;
+    }
+
+    /**
+     * Fails before allocating an array the remaining bytes cannot fill.
+     */
+    static void requireRemaining(ByteBuffer byteBuffer, long bytes) {
+        if (byteBuffer.remaining() < bytes)
+            throw new BufferUnderflowException();
+    }
+
+    static void skipBytes(ByteBuffer byteBuffer, long bytes) {
+        requireRemaining(byteBuffer, bytes);
+        byteBuffer.position(byteBuffer.position() + (int) bytes);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package org.vaslabs.vserializer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads an array written by {@link ArrayStreamWriter} or {@link VSerializer#serialize(Object[])}
+ * from a stream one element at a time. The stream is read through a window that only has to hold
+ * the element being decoded, so the memory used stays the same however many elements there are.
+ */
+public class ArrayStreamReader<T> implements Closeable {
+
+    static final int WINDOW_SIZE = 8192;
+
+    private final AlphabeticalSerializer serializer;
+    private final InputStream inputStream;
+    private final ClassPlan plan;
+    private final AlphabeticalSerializer.PayloadState payloadState;
+    private final int count;
+    private ByteBuffer window;
+    private int read;
+
+    /**
+     * @throws UnsupportedOperationException if the serializer does not support element access
+     */
+    public ArrayStreamReader(AlphabeticalSerializer serializer, InputStream inputStream, Class<T> elementType) throws IOException {
+        serializer.requireElementAccess();
+        this.serializer = serializer;
+        this.inputStream = inputStream;
+        this.plan = ClassPlan.of(elementType);
+        this.payloadState = serializer.newPayloadState();
+        this.window = ByteBuffer.allocate(WINDOW_SIZE).order(serializer.byteOrder);
+        this.window.flip();
+        this.count = readCount();
+    }
+
+    /**
+     * Reads the number of elements, or returns 0 for an empty stream.
+     */
+    private int readCount() throws IOException {
+        while (!window.hasRemaining()) {
+            if (!fill())
+                return 0;
+        }
+        while (true) {
+            window.mark();
+            try {
+                return serializer.getLength(window);
+            } catch (BufferUnderflowException e) {
+                window.reset();
+                if (!fill())
+                    throw new EOFException("Truncated element count");
+            }
+        }
+    }
+
+    /**
+     * The number of elements in the array.
+     */
+    public int size() {
+        return count;
+    }
+
+    public boolean hasNext() {
+        return read < count;
+    }
+
+    /**
+     * Reads the next element.
+     *
+     * @throws NoSuchElementException if all the elements have been read
+     * @throws EOFException if the stream ends in the middle of an element
+     */
+    public T read() throws IOException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        while (true) {
+            window.mark();
+            if (payloadState != null)
+                payloadState.mark();
+            final AlphabeticalSerializer.PayloadState previousState = serializer.swapPayloadState(payloadState);
+            try {
+                T element = (T) serializer.convertElement(window, plan);
+                read++;
+                return element;
+            } catch (BufferUnderflowException e) {
+                window.reset();
+                if (payloadState != null)
+                    payloadState.reset();
+                if (!fill())
+                    throw new EOFException("Stream ended inside element " + read);
+            } catch (Exception e) {
+                throw new IOException("Cannot read element " + read, e);
+            } finally {
+                serializer.swapPayloadState(previousState);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Moves the unread bytes to the start of the window, growing it if they already fill it, and
+     * reads more bytes after them.
+     *
+     * @return false if the stream has ended
+     */
+    private boolean fill() throws IOException {
+        window.compact();
+        if (!window.hasRemaining()) {
+            ByteBuffer grownWindow = ByteBuffer.allocate(window.capacity() << 1).order(window.order());
+            window.flip();
+            grownWindow.put(window);
+            window = grownWindow;
+        }
+        int bytesRead = inputStream.read(window.array(), window.arrayOffset() + window.position(), window.remaining());
+        if (bytesRead > 0)
+            window.position(window.position() + bytesRead);
+        window.flip();
+        return bytesRead >= 0;
+    }
+}
@@ -0,0 +1,99 @@
+package org.vaslabs.vserializer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Writes an array to a stream one element at a time, in the format of
+ * {@link VSerializer#serialize(Object[])}: the number of elements followed by each element with its
+ * null marker. Elements are encoded into a small chunk that is written out whenever it fills up, so
+ * the memory used stays the same however many elements are written.
+ * <p>
+ * The number of elements goes first on the wire, so it has to be known up front.
+ */
+public class ArrayStreamWriter<T> implements Closeable, Flushable {
+
+    private final AlphabeticalSerializer serializer;
+    private final OutputStream outputStream;
+    private final StreamOutputBuffer outputBuffer;
+    private final AlphabeticalSerializer.PayloadState payloadState;
+    private final Class<T> elementType;
+    private final int count;
+    private int written;
+    private ClassPlan plan;
+
+    public ArrayStreamWriter(AlphabeticalSerializer serializer, OutputStream outputStream, int count) throws IOException {
+        this(serializer, outputStream, count, null);
+    }
+
+    /**
+     * @param elementType the declared type of the elements, which serializers that tag the
+     *                    elements of non final types with their class need
+     * @throws UnsupportedOperationException if the serializer does not support element access
+     */
+    public ArrayStreamWriter(AlphabeticalSerializer serializer, OutputStream outputStream, int count, Class<T> elementType) throws IOException {
+        serializer.requireElementAccess();
+        if (count < 0)
+            throw new IllegalArgumentException("Negative element count: " + count);
+        this.serializer = serializer;
+        this.outputStream = outputStream;
+        this.outputBuffer = new StreamOutputBuffer(outputStream, serializer.byteOrder);
+        this.count = count;
+        this.elementType = elementType;
+        this.payloadState = serializer.newPayloadState();
+        if (count > 0)
+            serializer.putLength(outputBuffer, count);
+    }
+
+    public void write(T element) throws IOException {
+        if (written == count)
+            throw new IllegalStateException("All " + count + " elements have been written");
+        if (element != null && (plan == null || plan.type != element.getClass()))
+            plan = ClassPlan.of(element.getClass());
+        final AlphabeticalSerializer.PayloadState previousState = serializer.swapPayloadState(payloadState);
+        try {
+            serializer.putElementIn(outputBuffer, elementType, plan, element);
+        } catch (StreamOutputBuffer.StreamException e) {
+            throw e.getCause();
+        } catch (IllegalAccessException e) {
+            throw new IOException("Cannot serialize " + element, e);
+        } finally {
+            serializer.swapPayloadState(previousState);
+        }
+        written++;
+    }
+
+    /**
+     * Writes every remaining element of the iterator.
+     */
+    public void write(Iterator<? extends T> elements) throws IOException {
+        while (elements.hasNext()) {
+            write(elements.next());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputBuffer.flush();
+        outputStream.flush();
+    }
+
+    /**
+     * Flushes and closes the stream.
+     *
+     * @throws IllegalStateException if fewer elements than announced were written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            outputStream.close();
+        }
+        if (written != count)
+            throw new IllegalStateException("Expected " + count + " elements but " + written + " were written");
+    }
+}
@@ -0,0 +1,129 @@
+package org.vaslabs.vserializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a payload written by a {@link BatchWriter} one at a time. Records can be
+ * skipped without being decoded, using the length ahead of each of them.
+ * <p>
+ * Classes are matched with the class table of the payload by name. Records of classes that were
+ * not registered with the reader can be skipped but not read.
+ */
+public class BatchReader {
+
+    private final AlphabeticalSerializer serializer;
+    private final ByteBuffer byteBuffer;
+    private final Class[] classes;
+    private int nextClassId = -1;
+    private int nextLength;
+
+    /**
+     * @param byteBuffer the payload, from its position to its limit. The buffer itself is not moved.
+     * @param classes the classes to read, in any order
+     * @throws IllegalArgumentException if the class table is malformed
+     */
+    public BatchReader(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class... classes) {
+        this.serializer = serializer;
+        this.byteBuffer = byteBuffer.duplicate().order(serializer.byteOrder);
+        Map<String, Class> classesByName = new HashMap<>();
+        for (Class type : classes) {
+            classesByName.put(type.getName(), type);
+        }
+        final AlphabeticalSerializer.PayloadState previousState = serializer.swapPayloadState(serializer.newPayloadState());
+        try {
+            final int classCount = SerializationUtils.getVarInt(this.byteBuffer);
+            if (classCount < 0 || classCount > this.byteBuffer.remaining())
+                throw new IllegalArgumentException("Malformed class table");
+            this.classes = new Class[classCount];
+            for (int i = 0; i < classCount; i++) {
+                this.classes[i] = classesByName.get(serializer.getString(this.byteBuffer));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated class table", e);
+        } finally {
+            serializer.swapPayloadState(previousState);
+        }
+    }
+
+    public BatchReader(AlphabeticalSerializer serializer, byte[] data, Class... classes) {
+        this(serializer, ByteBuffer.wrap(data), classes);
+    }
+
+    public boolean hasNext() {
+        return nextClassId >= 0 || byteBuffer.hasRemaining();
+    }
+
+    /**
+     * The class of the next record, or null if it was not registered with this reader.
+     *
+     * @throws NoSuchElementException if all the records have been read
+     */
+    public Class nextType() {
+        return classes[nextClassId()];
+    }
+
+    /**
+     * Decodes the next record.
+     *
+     * @throws IllegalStateException if the class of the record was not registered with this reader
+     */
+    public Object read() {
+        final Class type = nextType();
+        if (type == null)
+            throw new IllegalStateException("The class of the next record is not registered");
+        ByteBuffer record = byteBuffer.duplicate().order(serializer.byteOrder);
+        record.limit(record.position() + nextLength);
+        skip();
+        return serializer.readRecord(record, type);
+    }
+
+    /**
+     * Moves past the next record without decoding it.
+     */
+    public void skip() {
+        nextClassId();
+        byteBuffer.position(byteBuffer.position() + nextLength);
+        nextClassId = -1;
+    }
+
+    /**
+     * Decodes the remaining records of the given class, skipping all the others.
+     */
+    public <T> List<T> readAll(Class<T> type) {
+        List<T> records = new ArrayList<>();
+        while (hasNext()) {
+            if (nextType() == type)
+                records.add((T) read());
+            else
+                skip();
+        }
+        return records;
+    }
+
+    /**
+     * Reads the header of the next record, once.
+     */
+    private int nextClassId() {
+        if (nextClassId >= 0)
+            return nextClassId;
+        if (!byteBuffer.hasRemaining())
+            throw new NoSuchElementException();
+        try {
+            final int classId = SerializationUtils.getVarInt(byteBuffer);
+            final int length = SerializationUtils.getVarInt(byteBuffer);
+            if (classId < 0 || classId >= classes.length || length < 0 || length > byteBuffer.remaining())
+                throw new IllegalArgumentException("Malformed record header");
+            nextLength = length;
+            nextClassId = classId;
+            return classId;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated record header", e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.vaslabs.vserializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Packs many objects of several classes into a single payload, to be read back with a
+ * {@link BatchReader}.
+ * <p>
+ * The payload starts with a class table: the number of classes followed by their names. Every
+ * record is then the id of its class, its index in the table, and its length, both varints,
+ * followed by the object as {@link VSerializer#serialize(Object)} writes it. The class of a record
+ * is resolved once for the batch rather than for every object, and readers can skip over the
+ * records they are not interested in without decoding them.
+ * <p>
+ * Every record is a payload of its own, so strings or objects are never shared between records.
+ * Records are written with {@link AlphabeticalSerializer#writeRecord}, so an
+ * {@link EncryptedAlphabeticalSerializer} encrypts every record on its own; the class table and the
+ * ids and lengths of the records are not encrypted.
+ */
+public class BatchWriter {
+
+    private final AlphabeticalSerializer serializer;
+    private final Map<Class, Integer> classIds;
+    private final ClassPlan[] plans;
+    private final OutputBuffer outputBuffer;
+    private final OutputBuffer recordBuffer;
+    private int count;
+
+    /**
+     * @param classes the classes of the objects to be written, whose position is their id
+     */
+    public BatchWriter(AlphabeticalSerializer serializer, Class... classes) {
+        this.serializer = serializer;
+        this.classIds = new HashMap<>();
+        this.plans = new ClassPlan[classes.length];
+        this.outputBuffer = new OutputBuffer(OutputBuffer.DEFAULT_CAPACITY, serializer.byteOrder);
+        this.recordBuffer = new OutputBuffer(OutputBuffer.DEFAULT_CAPACITY, serializer.byteOrder);
+        outputBuffer.putVarInt(classes.length);
+        final AlphabeticalSerializer.PayloadState previousState = serializer.swapPayloadState(serializer.newPayloadState());
+        try {
+            for (int i = 0; i < classes.length; i++) {
+                if (classIds.put(classes[i], i) != null)
+                    throw new IllegalArgumentException(classes[i] + " is registered twice");
+                plans[i] = ClassPlan.of(classes[i]);
+                serializer.putString(outputBuffer, classes[i].getName());
+            }
+        } finally {
+            serializer.swapPayloadState(previousState);
+        }
+    }
+
+    /**
+     * Appends a record for the object.
+     *
+     * @throws IllegalArgumentException if the object is null or its class was not registered
+     */
+    public void write(Object obj) {
+        if (obj == null)
+            throw new IllegalArgumentException("Batches cannot hold null records");
+        final Class type = obj instanceof Enum ? ((Enum) obj).getDeclaringClass() : obj.getClass();
+        final Integer classId = classIds.get(type);
+        if (classId == null)
+            throw new IllegalArgumentException(type + " is not registered in the batch");
+        recordBuffer.reset(serializer.byteOrder);
+        try {
+            serializer.writeRecord(recordBuffer, plans[classId], obj);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot serialize " + obj, e);
+        }
+        outputBuffer.putVarInt(classId);
+        outputBuffer.putVarInt(recordBuffer.position());
+        outputBuffer.put(recordBuffer.byteBuffer().array(), 0, recordBuffer.position());
+        count++;
+    }
+
+    /**
+     * The number of records written.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * The payload written so far. More records can still be appended afterwards.
+     */
+    public byte[] toByteArray() {
+        return outputBuffer.toByteArray();
+    }
+}
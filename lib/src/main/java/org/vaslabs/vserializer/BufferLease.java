@@ -0,0 +1,71 @@
+package org.vaslabs.vserializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The bytes of an object serialized by {@link AlphabeticalSerializer#serializePooled(Object)}, in
+ * a scratch buffer of the thread that serialized it. Once released, the buffer goes back to be
+ * reused by the next pooled serialization and the lease cannot be read any more.
+ */
+public final class BufferLease implements Closeable {
+
+    private OutputBuffer outputBuffer;
+
+    BufferLease(OutputBuffer outputBuffer) {
+        this.outputBuffer = outputBuffer;
+    }
+
+    /**
+     * The array holding the bytes, from index 0 to {@link #length()}. It may be longer.
+     */
+    public byte[] array() {
+        return buffer().byteBuffer().array();
+    }
+
+    public int length() {
+        return buffer().position();
+    }
+
+    /**
+     * A read only view of the bytes.
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(array(), 0, length()).asReadOnlyBuffer();
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(array(), 0, length());
+    }
+
+    /**
+     * A copy of the bytes that outlives the lease.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(array(), length());
+    }
+
+    /**
+     * Gives the buffer back to the pool. Releasing a lease more than once has no effect.
+     */
+    public void release() {
+        if (outputBuffer == null)
+            return;
+        BufferPool.release(outputBuffer);
+        outputBuffer = null;
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    private OutputBuffer buffer() {
+        if (outputBuffer == null)
+            throw new IllegalStateException("The lease has been released");
+        return outputBuffer;
+    }
+}
@@ -0,0 +1,35 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteOrder;
+
+/**
+ * Keeps one scratch buffer per thread to serialize into, so that steady state serialization
+ * reuses the same memory instead of allocating a buffer per call. A buffer that grew past
+ * {@link #MAX_POOLED_CAPACITY} for an unusually large object is left to the garbage collector.
+ */
+final class BufferPool {
+
+    static final int MAX_POOLED_CAPACITY = 1 << 20;
+
+    private static final ThreadLocal<OutputBuffer> pooledBuffers = new ThreadLocal<>();
+
+    private BufferPool() {
+    }
+
+    /**
+     * The scratch buffer of this thread, emptied, or a new one if it is already in use.
+     */
+    static OutputBuffer acquire(ByteOrder byteOrder) {
+        OutputBuffer outputBuffer = pooledBuffers.get();
+        if (outputBuffer == null)
+            return new OutputBuffer(OutputBuffer.DEFAULT_CAPACITY, byteOrder);
+        pooledBuffers.set(null);
+        outputBuffer.reset(byteOrder);
+        return outputBuffer;
+    }
+
+    static void release(OutputBuffer outputBuffer) {
+        if (outputBuffer.capacity() <= MAX_POOLED_CAPACITY && pooledBuffers.get() == null)
+            pooledBuffers.set(outputBuffer);
+    }
+}
@@ -0,0 +1,78 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes and reads the fields of one class in the layout of {@link AlphabeticalSerializer}:
+ * every serializable field, inherited ones included, in alphabetical order.
+ * A codec only deals with the fields of an instance; null markers and instantiation are
+ * left to the serializer that drives it.
+ * <p>
+ * Codecs generated for {@link VSerializable} classes extend this class and use the helpers below
+ * for everything that is not a primitive field.
+ */
+public abstract class ClassCodec<T> {
+
+    protected abstract void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, T obj) throws IllegalAccessException;
+
+    protected abstract void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, T obj) throws Exception;
+
+    /**
+     * Creates an empty instance to read into, or returns null to let the serializer use the no-arg
+     * constructor reflectively.
+     */
+    protected T newInstance() {
+        return null;
+    }
+
+    protected static void writeString(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, String string) {
+        serializer.putString(byteBuffer, string);
+    }
+
+    protected static String readString(AlphabeticalSerializer serializer, ByteBuffer byteBuffer) {
+        return serializer.getString(byteBuffer);
+    }
+
+    protected static void writeEnum(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Enum enumObject) {
+        serializer.putEnum(byteBuffer, enumObject);
+    }
+
+    protected static <E> E readEnum(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<E> enumType) {
+        return serializer.getEnum(byteBuffer, enumType);
+    }
+
+    protected static void writeArray(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object array) throws IllegalAccessException {
+        serializer.putArray(byteBuffer, array);
+    }
+
+    protected static <A> A readArray(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<A> arrayType) throws Exception {
+        return serializer.getArray(byteBuffer, arrayType);
+    }
+
+    protected static void writeObject(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+        serializer.putObject(byteBuffer, obj);
+    }
+
+    protected static <V> V readObject(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<V> type) throws Exception {
+        return serializer.getObject(byteBuffer, type);
+    }
+
+    protected static void writeCollection(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Collection collection, Class elementType) throws IllegalAccessException {
+        serializer.putCollection(byteBuffer, elementType, collection);
+    }
+
+    protected static <C> C readCollection(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<C> collectionType, Class elementType) throws Exception {
+        return serializer.getCollection(byteBuffer, collectionType, elementType);
+    }
+
+    protected static void writeMap(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Map map, Class keyType, Class valueType) throws IllegalAccessException {
+        serializer.putMap(byteBuffer, keyType, valueType, map);
+    }
+
+    protected static <M> M readMap(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<M> mapType, Class keyType, Class valueType) throws Exception {
+        return serializer.getMap(byteBuffer, mapType, keyType, valueType);
+    }
+
+}
@@ -0,0 +1,284 @@
+package org.vaslabs.vserializer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Serialization metadata of a class: the serializable fields, inherited ones included, in the
+ * alphabetical order they go on the wire. A plan is built once per class and shared by all
+ * serializers, so field discovery, filtering and sorting is not repeated on every call. The fields
+ * of a plan do not change once discovered; only the size hint of the output is updated as instances
+ * are serialized.
+ */
+public final class ClassPlan {
+
+    private static final ConcurrentMap<Class, ClassPlan> plans = new ConcurrentHashMap<>();
+
+    private static final Comparator<Field> alphabeticalOrder = new Comparator<Field>() {
+        @Override
+        public int compare(Field lhs, Field rhs) {
+            return lhs.getName().compareTo(rhs.getName());
+        }
+    };
+
+    final Class type;
+    final boolean isEnum;
+    final boolean isString;
+    final PrimitiveType boxedType;
+    final int boxedSize;
+    /**
+     * The size of the last instance serialized, used as the initial capacity of the next output so
+     * that instances of a fixed size are written without growing or trimming it. Bounded by
+     * {@link #recordSize(int)}.
+     */
+    volatile int sizeHint = OutputBuffer.DEFAULT_CAPACITY;
+    private volatile FieldPlan[] fields;
+    private volatile FieldPlan[] variableFields;
+    private int fixedFieldsSize;
+    private int fixedSize;
+    private int[] fieldOffsets;
+    private volatile Constructor constructor;
+    private volatile ClassCodec compiledCodec;
+    private volatile ClassCodec generatedCodec;
+    private volatile boolean generatedCodecResolved;
+
+    /**
+     * Keeps the size of an instance just serialized as the hint for the next one. Sizes above
+     * {@link BufferPool#MAX_POOLED_CAPACITY} are not kept, so that one unusually large instance
+     * does not make every later serialization of the class allocate as much.
+     */
+    void recordSize(int size) {
+        sizeHint = size <= BufferPool.MAX_POOLED_CAPACITY ? size : OutputBuffer.DEFAULT_CAPACITY;
+    }
+
+    private ClassPlan(Class type) {
+        this.type = type;
+        this.isEnum = Enum.class.isAssignableFrom(type);
+        this.isString = String.class.equals(type);
+        Method valueOfMethod = SerializationUtils.primitiveWrappers.get(type);
+        if (valueOfMethod != null) {
+            Class primitive = valueOfMethod.getParameterTypes()[0];
+            this.boxedType = SerializationUtils.enumTypes.get(primitive);
+            this.boxedSize = SerializationUtils.sizes.get(primitive);
+        } else {
+            this.boxedType = null;
+            this.boxedSize = 0;
+        }
+    }
+
+    public static ClassPlan of(Class type) {
+        ClassPlan plan = plans.get(type);
+        if (plan != null)
+            return plan;
+        plan = new ClassPlan(type);
+        ClassPlan existing = plans.putIfAbsent(type, plan);
+        return existing == null ? plan : existing;
+    }
+
+    /**
+     * Strings, enums and primitive wrappers are written as values rather than field by field.
+     */
+    boolean isValueType() {
+        return isEnum || isString || boxedType != null;
+    }
+
+    /**
+     * The serializable fields in wire order, resolved on first use. Classes with a generated codec
+     * are never resolved reflectively unless a serializer without codec support encodes them.
+     */
+    FieldPlan[] fields() {
+        FieldPlan[] fieldPlans = fields;
+        if (fieldPlans == null) {
+            fieldPlans = isValueType() ? new FieldPlan[0] : resolveFields(type);
+            fields = fieldPlans;
+        }
+        return fieldPlans;
+    }
+
+    /**
+     * The fields whose encoded size depends on their values: strings, arrays and objects, in wire
+     * order. Resolved together with the fixed sizes on first use.
+     */
+    FieldPlan[] variableFields() {
+        FieldPlan[] fieldPlans = variableFields;
+        if (fieldPlans == null) {
+            fieldPlans = resolveLayout();
+            variableFields = fieldPlans;
+        }
+        return fieldPlans;
+    }
+
+    /**
+     * The encoded size of the primitive and enum fields, which is the same for every instance.
+     */
+    int fixedFieldsSize() {
+        variableFields();
+        return fixedFieldsSize;
+    }
+
+    /**
+     * The encoded size of every instance of a class with primitive and enum fields only, of an
+     * enum or of a primitive wrapper, or -1 if the size depends on the values. Element markers are
+     * not included.
+     */
+    int fixedSize() {
+        variableFields();
+        return fixedSize;
+    }
+
+    /**
+     * The offset of a primitive or enum field from the start of an instance on the wire, or -1
+     * if a field of variable size comes before it. Other fields have no offset.
+     */
+    int fieldOffset(int index) {
+        variableFields();
+        return fieldOffsets[index];
+    }
+
+    /**
+     * The index of the field with the given name in wire order, or -1 if there is none.
+     */
+    int fieldIndex(String name) {
+        final FieldPlan[] fieldPlans = fields();
+        int low = 0;
+        int high = fieldPlans.length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = fieldPlans[middle].getName().compareTo(name);
+            if (comparison < 0)
+                low = middle + 1;
+            else if (comparison > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    private FieldPlan[] resolveLayout() {
+        final FieldPlan[] fieldPlans = fields();
+        List<FieldPlan> variable = new ArrayList<>();
+        int[] offsets = new int[fieldPlans.length];
+        int size = 0;
+        for (int i = 0; i < fieldPlans.length; i++) {
+            final FieldPlan fieldPlan = fieldPlans[i];
+            final boolean fixedOffset = variable.isEmpty();
+            offsets[i] = -1;
+            if (fieldPlan.kind == FieldPlan.Kind.PRIMITIVE || fieldPlan.kind == FieldPlan.Kind.ENUM) {
+                if (fixedOffset)
+                    offsets[i] = size;
+                size += fieldPlan.kind == FieldPlan.Kind.ENUM ? 1 : fieldPlan.size;
+            } else {
+                variable.add(fieldPlan);
+            }
+        }
+        fieldOffsets = offsets;
+        fixedFieldsSize = size;
+        if (isEnum)
+            fixedSize = 1;
+        else if (boxedType != null)
+            fixedSize = boxedSize;
+        else if (isString || !variable.isEmpty())
+            fixedSize = -1;
+        else
+            fixedSize = size;
+        return variable.toArray(new FieldPlan[variable.size()]);
+    }
+
+    /**
+     * Creates an instance through the generated codec when there is one, otherwise through the
+     * no-arg constructor, which is looked up and made accessible on first use only.
+     */
+    Object newInstance() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        ClassCodec codec = generatedCodec();
+        if (codec != null) {
+            Object instance = codec.newInstance();
+            if (instance != null)
+                return instance;
+        }
+        Constructor noArgConstructor = constructor;
+        if (noArgConstructor == null) {
+            noArgConstructor = type.getDeclaredConstructor();
+            noArgConstructor.setAccessible(true);
+            constructor = noArgConstructor;
+        }
+        return noArgConstructor.newInstance();
+    }
+
+    /**
+     * The codec compiled from this plan, built on first use.
+     */
+    ClassCodec compiledCodec() {
+        ClassCodec codec = compiledCodec;
+        if (codec == null) {
+            codec = new CompiledClassCodec(this);
+            compiledCodec = codec;
+        }
+        return codec;
+    }
+
+    /**
+     * The codec generated at compile time for this class, or null if it was not annotated with
+     * {@link VSerializable}. Looked up once.
+     */
+    ClassCodec generatedCodec() {
+        if (!generatedCodecResolved) {
+            generatedCodec = isValueType() ? null : findGeneratedCodec(type);
+            generatedCodecResolved = true;
+        }
+        return generatedCodec;
+    }
+
+    private static ClassCodec findGeneratedCodec(Class type) {
+        try {
+            Class codecClass = Class.forName(generatedCodecName(type), true, type.getClassLoader());
+            return (ClassCodec) codecClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot instantiate the generated codec of " + type, e);
+        }
+    }
+
+    /**
+     * The name of the codec generated for a class: its binary name with nested class separators
+     * flattened, followed by _VCodec.
+     */
+    static String generatedCodecName(Class type) {
+        return type.getName().replace('$', '_') + "_VCodec";
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public int getFieldCount() {
+        return fields().length;
+    }
+
+    public FieldPlan getField(int index) {
+        return fields()[index];
+    }
+
+    private static FieldPlan[] resolveFields(Class type) {
+        List<Field> serializableFields = new ArrayList<>();
+        for (Field field : SerializationUtils.getAllFields(type)) {
+            if (!SerializationUtils.skipField(field))
+                serializableFields.add(field);
+        }
+        Collections.sort(serializableFields, alphabeticalOrder);
+        FieldPlan[] fieldPlans = new FieldPlan[serializableFields.size()];
+        for (int i = 0; i < fieldPlans.length; i++) {
+            fieldPlans[i] = new FieldPlan(serializableFields.get(i));
+        }
+        return fieldPlans;
+    }
+}
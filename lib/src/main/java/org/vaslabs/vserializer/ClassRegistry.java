@@ -0,0 +1,49 @@
+package org.vaslabs.vserializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Small integer ids for the classes whose instances may be found where a supertype or an interface
+ * is declared, such as the subclasses of an abstract model class. The id of a class is its
+ * position among the classes given, so writers and readers have to register the same classes in
+ * the same order.
+ */
+public final class ClassRegistry {
+
+    private final Class[] classes;
+    private final Map<Class, Integer> ids;
+
+    /**
+     * @throws IllegalArgumentException if a class is given twice
+     */
+    public ClassRegistry(Class... classes) {
+        this.classes = classes.clone();
+        this.ids = new HashMap<>();
+        for (int i = 0; i < classes.length; i++) {
+            if (ids.put(classes[i], i) != null)
+                throw new IllegalArgumentException(classes[i] + " is registered twice");
+        }
+    }
+
+    public int size() {
+        return classes.length;
+    }
+
+    /**
+     * @return the id of the class, or -1 if it is not registered
+     */
+    public int idOf(Class type) {
+        final Integer id = ids.get(type);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @throws IllegalArgumentException if no class has the id
+     */
+    public Class classOf(int id) {
+        if (id < 0 || id >= classes.length)
+            throw new IllegalArgumentException("Unknown class id " + id);
+        return classes[id];
+    }
+}
@@ -0,0 +1,219 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The layout of {@link AlphabeticalSerializer} with variable length integers, for payloads where
+ * most numbers are small. Lengths and counts are unsigned varints of the length plus one, so that
+ * null still has an encoding of its own, and int, long and short values, whether fields, boxed
+ * values or array elements, are ZigZag encoded varints: values between -64 and 63 take a single
+ * byte. Floating point values, chars, bytes, booleans and enums keep their fixed width.
+ * <p>
+ * The output can only be read back by a compact serializer. Codecs generated for
+ * {@link VSerializable} classes write fixed width integers, so every class is encoded field by
+ * field.
+ */
+public class CompactAlphabeticalSerializer extends AlphabeticalSerializer {
+
+    public CompactAlphabeticalSerializer() {
+    }
+
+    public CompactAlphabeticalSerializer(ByteOrder byteOrder) {
+        super(byteOrder);
+    }
+
+    @Override
+    protected ClassCodec codecFor(ClassPlan plan) {
+        return null;
+    }
+
+    /**
+     * Integers take as many bytes as their values need, so no field has a fixed offset.
+     */
+    @Override
+    public <T> VView<T> view(Class<T> type) {
+        throw new UnsupportedOperationException("Compact payloads have no fixed offsets");
+    }
+
+    @Override
+    protected void putLength(OutputBuffer byteBuffer, int length) {
+        byteBuffer.putVarInt(length + 1);
+    }
+
+    @Override
+    protected int getLength(ByteBuffer byteBuffer) {
+        return SerializationUtils.getVarInt(byteBuffer) - 1;
+    }
+
+    @Override
+    protected void putInt(OutputBuffer byteBuffer, int value) {
+        byteBuffer.putVarInt((value << 1) ^ (value >> 31));
+    }
+
+    @Override
+    protected int getInt(ByteBuffer byteBuffer) {
+        final int value = SerializationUtils.getVarInt(byteBuffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    protected void putLong(OutputBuffer byteBuffer, long value) {
+        byteBuffer.putVarLong((value << 1) ^ (value >> 63));
+    }
+
+    @Override
+    protected long getLong(ByteBuffer byteBuffer) {
+        final long value = SerializationUtils.getVarLong(byteBuffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    protected void putShort(OutputBuffer byteBuffer, short value) {
+        putInt(byteBuffer, value);
+    }
+
+    @Override
+    protected short getShort(ByteBuffer byteBuffer) {
+        return (short) getInt(byteBuffer);
+    }
+
+    @Override
+    protected void putPrimitiveArray(OutputBuffer byteBuffer, Object array) {
+        switch (SerializationUtils.enumTypes.get(array.getClass())) {
+            case INT:
+                for (int value : (int[]) array) { putInt(byteBuffer, value); }
+                return;
+            case LONG:
+                for (long value : (long[]) array) { putLong(byteBuffer, value); }
+                return;
+            case SHORT:
+                for (short value : (short[]) array) { putShort(byteBuffer, value); }
+                return;
+            default:
+                super.putPrimitiveArray(byteBuffer, array);
+        }
+    }
+
+    @Override
+    protected Object getPrimitiveArray(ByteBuffer byteBuffer, PrimitiveType primitiveType, int arrayLength) {
+        switch (primitiveType) {
+            case INT: {
+                requireRemaining(byteBuffer, arrayLength);
+                int[] array = new int[arrayLength];
+                for (int i = 0; i < arrayLength; i++) { array[i] = getInt(byteBuffer); }
+                return array;
+            }
+            case LONG: {
+                requireRemaining(byteBuffer, arrayLength);
+                long[] array = new long[arrayLength];
+                for (int i = 0; i < arrayLength; i++) { array[i] = getLong(byteBuffer); }
+                return array;
+            }
+            case SHORT: {
+                requireRemaining(byteBuffer, arrayLength);
+                short[] array = new short[arrayLength];
+                for (int i = 0; i < arrayLength; i++) { array[i] = getShort(byteBuffer); }
+                return array;
+            }
+            default:
+                return super.getPrimitiveArray(byteBuffer, primitiveType, arrayLength);
+        }
+    }
+
+    @Override
+    protected void fillPrimitiveArray(ByteBuffer byteBuffer, Object array) {
+        switch (SerializationUtils.enumTypes.get(array.getClass())) {
+            case INT: {
+                int[] values = (int[]) array;
+                for (int i = 0; i < values.length; i++) { values[i] = getInt(byteBuffer); }
+                return;
+            }
+            case LONG: {
+                long[] values = (long[]) array;
+                for (int i = 0; i < values.length; i++) { values[i] = getLong(byteBuffer); }
+                return;
+            }
+            case SHORT: {
+                short[] values = (short[]) array;
+                for (int i = 0; i < values.length; i++) { values[i] = getShort(byteBuffer); }
+                return;
+            }
+            default:
+                super.fillPrimitiveArray(byteBuffer, array);
+        }
+    }
+
+    @Override
+    protected void skipPrimitives(ByteBuffer byteBuffer, PrimitiveType primitiveType, int size, int count) {
+        if (!isVarint(primitiveType)) {
+            super.skipPrimitives(byteBuffer, primitiveType, size, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            SerializationUtils.getVarLong(byteBuffer);
+        }
+    }
+
+    /**
+     * A top level int, long or short array is as long as the number of varints left in the buffer.
+     */
+    @Override
+    protected <T> T deserialisePrimitiveArray(ByteBuffer byteBuffer, Class<T> clazz) {
+        final PrimitiveType primitiveType = SerializationUtils.enumTypes.get(clazz);
+        if (!isVarint(primitiveType))
+            return super.deserialisePrimitiveArray(byteBuffer, clazz);
+        return (T) getPrimitiveArray(byteBuffer, primitiveType, varintsIn(byteBuffer));
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, int[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, array.length, offset);
+        for (int i = 0; i < length; i++) { array[offset + i] = getInt(input); }
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, long[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, array.length, offset);
+        for (int i = 0; i < length; i++) { array[offset + i] = getLong(input); }
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, short[] array, int offset) {
+        ByteBuffer input = byteBuffer.duplicate().order(byteOrder);
+        final int length = valuesIn(input, array.length, offset);
+        for (int i = 0; i < length; i++) { array[offset + i] = getShort(input); }
+        byteBuffer.position(input.position());
+        return length;
+    }
+
+    private static boolean isVarint(PrimitiveType primitiveType) {
+        return primitiveType == PrimitiveType.INT || primitiveType == PrimitiveType.LONG || primitiveType == PrimitiveType.SHORT;
+    }
+
+    private static int valuesIn(ByteBuffer byteBuffer, int arrayLength, int offset) {
+        final int length = varintsIn(byteBuffer);
+        if (offset < 0 || offset > arrayLength || length > arrayLength - offset)
+            throw new IndexOutOfBoundsException(length + " values do not fit at " + offset + " in an array of " + arrayLength);
+        return length;
+    }
+
+    /**
+     * Counts the varints in the remaining bytes: every varint ends with the only one of its bytes
+     * that has the high bit clear.
+     */
+    private static int varintsIn(ByteBuffer byteBuffer) {
+        int count = 0;
+        for (int i = byteBuffer.position(); i < byteBuffer.limit(); i++) {
+            if (byteBuffer.get(i) >= 0)
+                count++;
+        }
+        return count;
+    }
+}
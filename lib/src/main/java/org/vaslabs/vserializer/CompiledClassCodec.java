@@ -0,0 +1,231 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ClassCodec} compiled from a {@link ClassPlan}: one field codec per field,
+ * each specialised for the type of its field, so writing and reading an instance is a straight
+ * run over the fields without resolving types on the way.
+ */
+final class CompiledClassCodec extends ClassCodec<Object> {
+
+    private final FieldCodec[] fieldCodecs;
+
+    CompiledClassCodec(ClassPlan plan) {
+        fieldCodecs = new FieldCodec[plan.fields().length];
+        for (int i = 0; i < fieldCodecs.length; i++) {
+            fieldCodecs[i] = compile(plan.fields()[i]);
+        }
+    }
+
+    @Override
+    protected void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+        for (FieldCodec fieldCodec : fieldCodecs) {
+            fieldCodec.write(serializer, byteBuffer, obj);
+        }
+    }
+
+    @Override
+    protected void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws Exception {
+        for (FieldCodec fieldCodec : fieldCodecs) {
+            fieldCodec.read(serializer, byteBuffer, obj);
+        }
+    }
+
+    private static FieldCodec compile(FieldPlan fieldPlan) {
+        if (fieldPlan.kind != FieldPlan.Kind.PRIMITIVE)
+            return new DelegatingFieldCodec(fieldPlan);
+        switch (fieldPlan.primitiveType) {
+            case INT:
+                return new IntFieldCodec(fieldPlan.accessor);
+            case LONG:
+                return new LongFieldCodec(fieldPlan.accessor);
+            case SHORT:
+                return new ShortFieldCodec(fieldPlan.accessor);
+            case CHAR:
+                return new CharFieldCodec(fieldPlan.accessor);
+            case BYTE:
+                return new ByteFieldCodec(fieldPlan.accessor);
+            case BOOLEAN:
+                return new BooleanFieldCodec(fieldPlan.accessor);
+            case FLOAT:
+                return new FloatFieldCodec(fieldPlan.accessor);
+            case DOUBLE:
+                return new DoubleFieldCodec(fieldPlan.accessor);
+            default:
+                throw new IllegalArgumentException(fieldPlan.type.toString());
+        }
+    }
+
+    private static abstract class FieldCodec {
+        abstract void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException;
+
+        abstract void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws Exception;
+    }
+
+    /**
+     * Strings, enums, arrays and nested objects go through the serializer, which knows how to
+     * encode them and picks the codec of nested classes.
+     */
+    private static final class DelegatingFieldCodec extends FieldCodec {
+        private final FieldPlan fieldPlan;
+
+        DelegatingFieldCodec(FieldPlan fieldPlan) {
+            this.fieldPlan = fieldPlan;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            serializer.putIn(byteBuffer, fieldPlan, obj);
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws Exception {
+            serializer.convert(byteBuffer, fieldPlan, obj);
+        }
+    }
+
+    private static final class IntFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        IntFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.putInt(accessor.getInt(obj));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setInt(obj, byteBuffer.getInt());
+        }
+    }
+
+    private static final class LongFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        LongFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.putLong(accessor.getLong(obj));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setLong(obj, byteBuffer.getLong());
+        }
+    }
+
+    private static final class ShortFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        ShortFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.putShort(accessor.getShort(obj));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setShort(obj, byteBuffer.getShort());
+        }
+    }
+
+    private static final class CharFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        CharFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.putChar(accessor.getChar(obj));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setChar(obj, byteBuffer.getChar());
+        }
+    }
+
+    private static final class ByteFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        ByteFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.put(accessor.getByte(obj));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setByte(obj, byteBuffer.get());
+        }
+    }
+
+    private static final class BooleanFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        BooleanFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.put((byte) (accessor.getBoolean(obj) ? 1 : 0));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setBoolean(obj, byteBuffer.get() == 1);
+        }
+    }
+
+    private static final class FloatFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        FloatFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.putFloat(accessor.getFloat(obj));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setFloat(obj, byteBuffer.getFloat());
+        }
+    }
+
+    private static final class DoubleFieldCodec extends FieldCodec {
+        private final FieldAccessor accessor;
+
+        DoubleFieldCodec(FieldAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            byteBuffer.putDouble(accessor.getDouble(obj));
+        }
+
+        @Override
+        void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Object obj) throws IllegalAccessException {
+            accessor.setDouble(obj, byteBuffer.getDouble());
+        }
+    }
+}
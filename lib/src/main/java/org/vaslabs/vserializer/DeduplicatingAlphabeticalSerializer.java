@@ -0,0 +1,110 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The layout of {@link AlphabeticalSerializer} with every distinct string of a payload written
+ * once. A string equal to one written before in the same payload is replaced by the index of the
+ * first one, and decodes to the very same instance, so repeated identifiers, categories or units
+ * across the elements of an array or list cost a few bytes each and share their memory once read.
+ * <p>
+ * The length ahead of a string is doubled, and an odd value in its place is the index of an
+ * earlier string times two plus one. Null is still -1. The output can only be read back by a
+ * deduplicating serializer.
+ */
+public class DeduplicatingAlphabeticalSerializer extends AlphabeticalSerializer {
+
+    private final ThreadLocal<StringTable> stringTables = new ThreadLocal<>();
+
+    public DeduplicatingAlphabeticalSerializer() {
+    }
+
+    public DeduplicatingAlphabeticalSerializer(ByteOrder byteOrder) {
+        super(byteOrder);
+    }
+
+    @Override
+    protected PayloadState newPayloadState() {
+        return new StringTable();
+    }
+
+    @Override
+    protected PayloadState swapPayloadState(PayloadState state) {
+        final StringTable previousTable = stringTables.get();
+        if (state == null)
+            stringTables.remove();
+        else
+            stringTables.set((StringTable) state);
+        return previousTable;
+    }
+
+    @Override
+    protected void putString(OutputBuffer byteBuffer, String string) {
+        if (string == null) {
+            putLength(byteBuffer, -1);
+            return;
+        }
+        final StringTable stringTable = stringTables.get();
+        if (stringTable != null && !string.isEmpty()) {
+            final Integer index = stringTable.indices.get(string);
+            if (index != null) {
+                putLength(byteBuffer, index << 1 | 1);
+                return;
+            }
+            stringTable.indices.put(string, stringTable.indices.size());
+        }
+        putLength(byteBuffer, string.length() << 1);
+        putChars(byteBuffer, string);
+    }
+
+    @Override
+    protected String getString(ByteBuffer byteBuffer) {
+        final int header = getLength(byteBuffer);
+        if (header == -1)
+            return null;
+        final StringTable stringTable = stringTables.get();
+        if ((header & 1) != 0) {
+            final int index = header >>> 1;
+            if (stringTable == null || index >= stringTable.strings.size())
+                throw new IllegalArgumentException("Reference to unknown string " + index);
+            return stringTable.strings.get(index);
+        }
+        final String string = getChars(byteBuffer, header >>> 1);
+        if (stringTable != null && !string.isEmpty())
+            stringTable.strings.add(string);
+        return string;
+    }
+
+    /**
+     * Strings are decoded even when skipped, so that the strings after them can refer to them.
+     */
+    @Override
+    protected void skipString(ByteBuffer byteBuffer) {
+        getString(byteBuffer);
+    }
+
+    /**
+     * The strings of one payload: their indices when writing, and the strings themselves in the
+     * order they were read when reading.
+     */
+    private static final class StringTable extends PayloadState {
+        final Map<String, Integer> indices = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+        private int markedSize;
+
+        @Override
+        protected void mark() {
+            markedSize = strings.size();
+        }
+
+        @Override
+        protected void reset() {
+            strings.subList(markedSize, strings.size()).clear();
+        }
+    }
+}
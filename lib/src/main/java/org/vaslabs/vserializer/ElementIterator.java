@@ -0,0 +1,86 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a serialized array or list, decoding one element at a time instead of
+ * materializing the whole array.
+ * <p>
+ * Given an instance to reuse, every element is decoded into that same instance, so a full scan
+ * allocates nothing for the elements themselves. The returned instance is then only valid until
+ * the next call to {@link #next()}.
+ */
+public class ElementIterator<T> implements Iterator<T> {
+
+    private final AlphabeticalSerializer serializer;
+    private final ByteBuffer byteBuffer;
+    private final ClassPlan plan;
+    private final T reusedInstance;
+    private final AlphabeticalSerializer.PayloadState payloadState;
+    private final int count;
+    private int read;
+
+    public ElementIterator(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<T> elementType) {
+        this(serializer, byteBuffer, elementType, null);
+    }
+
+    /**
+     * @param byteBuffer the serialized array, from its position to its limit. The buffer itself is
+     *                   not moved.
+     * @param reusedInstance the instance to decode every element into, or null to create a new one
+     *                       for each element
+     * @throws UnsupportedOperationException if the serializer does not support element access
+     */
+    public ElementIterator(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<T> elementType, T reusedInstance) {
+        serializer.requireElementAccess();
+        this.serializer = serializer;
+        this.byteBuffer = byteBuffer.duplicate().order(serializer.byteOrder);
+        this.plan = ClassPlan.of(elementType);
+        if (reusedInstance != null && plan.isValueType())
+            throw new IllegalArgumentException(elementType + " instances cannot be reused");
+        this.reusedInstance = reusedInstance;
+        this.payloadState = serializer.newPayloadState();
+        this.count = this.byteBuffer.hasRemaining() ? serializer.getLength(this.byteBuffer) : 0;
+    }
+
+    /**
+     * The number of elements in the array.
+     */
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return read < count;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        read++;
+        final AlphabeticalSerializer.PayloadState previousState = serializer.swapPayloadState(payloadState);
+        try {
+            if (reusedInstance == null)
+                return (T) serializer.convertElement(byteBuffer, plan);
+            final ClassPlan elementPlan = serializer.getElementPlan(byteBuffer, plan);
+            if (elementPlan == null)
+                return null;
+            if (elementPlan != plan)
+                return (T) serializer.convertElementValue(byteBuffer, elementPlan);
+            return serializer.convert(byteBuffer, plan, reusedInstance);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read element " + (read - 1), e);
+        } finally {
+            serializer.swapPayloadState(previousState);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
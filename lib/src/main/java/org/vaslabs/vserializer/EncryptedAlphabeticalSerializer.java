@@ -1,5 +1,9 @@
 package org.vaslabs.vserializer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+
 /**
  * Created by vnicolaou on 06/05/16.
  */
@@ -20,6 +24,40 @@ public abstract class EncryptedAlphabeticalSerializer extends AlphabeticalSerial
 
     protected abstract byte[] encrypt(byte[] data) throws Exception;
 
+    /**
+     * Ciphers work on whole messages, so the object is encrypted first and then copied into the
+     * buffer.
+     */
+    @Override
+    public <T> int serialize(T obj, ByteBuffer byteBuffer) {
+        byte[] data = serialize(obj);
+        if (data == null)
+            return 0;
+        byteBuffer.put(data);
+        return data.length;
+    }
+
+    /**
+     * The encrypted bytes are copied into the scratch buffer.
+     */
+    @Override
+    public <T> BufferLease serializePooled(T obj) {
+        byte[] data = serialize(obj);
+        OutputBuffer outputBuffer = BufferPool.acquire(byteOrder);
+        if (data != null)
+            outputBuffer.put(data);
+        return new BufferLease(outputBuffer);
+    }
+
+    @Override
+    public <T> int serializeTo(T obj, OutputSink sink) throws IOException {
+        byte[] data = serialize(obj);
+        if (data == null)
+            return 0;
+        sink.write(data, 0, data.length);
+        return data.length;
+    }
+
     public <T> byte[] serialize(T[] objects) {
         byte[] data = super.serialize(objects);
         try {
@@ -30,6 +68,53 @@ public abstract class EncryptedAlphabeticalSerializer extends AlphabeticalSerial
         return data;
     }
 
+    @Override
+    public <T> byte[] serialize(T[] objects, ExecutorService executor) {
+        byte[] data = super.serialize(objects, executor);
+        try {
+            data = encrypt(data);
+        } catch (Exception e) {
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * Every record is encrypted on its own.
+     *
+     * @throws IllegalStateException if the record cannot be encrypted
+     */
+    @Override
+    protected void writeRecord(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+        OutputBuffer record = new OutputBuffer(plan.sizeHint, byteOrder);
+        super.writeRecord(record, plan, obj);
+        try {
+            byteBuffer.put(encrypt(record.toByteArray()));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot encrypt the record", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the record cannot be decrypted
+     */
+    @Override
+    protected <T> T readRecord(ByteBuffer byteBuffer, Class<T> clazz) {
+        final ByteBuffer data = decryptRemaining(byteBuffer);
+        if (data == null)
+            throw new IllegalArgumentException("Cannot decrypt the record");
+        return super.readRecord(data, clazz);
+    }
+
+    /**
+     * Elements cannot be found without decrypting the whole message, so arrays are neither
+     * streamed, iterated over nor indexed, and payloads are not viewed.
+     */
+    @Override
+    protected boolean supportsElementAccess() {
+        return false;
+    }
+
     @Override
     public <T> T deserialise(byte[] data, Class<T> clazz) {
         try {
@@ -40,5 +125,145 @@ public abstract class EncryptedAlphabeticalSerializer extends AlphabeticalSerial
         return super.deserialise(data, clazz);
     }
 
+    /**
+     * Decrypts all the remaining bytes of the buffer.
+     */
+    @Override
+    public <T> T deserialise(ByteBuffer byteBuffer, Class<T> clazz) {
+        byte[] data = new byte[byteBuffer.remaining()];
+        byteBuffer.get(data);
+        return deserialise(data, clazz);
+    }
+
+    /**
+     * Decrypts all the remaining bytes of the buffer, without moving it.
+     */
+    @Override
+    public <T> T deserialise(ByteBuffer byteBuffer, Projection<T> projection) {
+        byte[] data = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(data);
+        try {
+            data = decrypt(data);
+        } catch (Exception e) {
+            return null;
+        }
+        return super.deserialise(wrap(data), projection);
+    }
+
+    /**
+     * Decrypts all the remaining bytes of the buffer.
+     */
+    @Override
+    public <T> T deserialiseInto(ByteBuffer byteBuffer, T target) {
+        byte[] data = new byte[byteBuffer.remaining()];
+        byteBuffer.get(data);
+        try {
+            data = decrypt(data);
+        } catch (Exception e) {
+            return null;
+        }
+        return super.deserialiseInto(wrap(data), target);
+    }
+
+    /**
+     * Decrypts all the remaining bytes of the buffer.
+     */
+    @Override
+    public <T> T[] deserialiseArrayInto(ByteBuffer byteBuffer, T[] reuse) {
+        byte[] data = new byte[byteBuffer.remaining()];
+        byteBuffer.get(data);
+        try {
+            data = decrypt(data);
+        } catch (Exception e) {
+            return null;
+        }
+        return super.deserialiseArrayInto(wrap(data), reuse);
+    }
+
+    /*
+     * Decoding primitive arrays into existing arrays: all the remaining bytes of the buffer are
+     * decrypted and the buffer is moved past them.
+     */
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, int[] array, int offset) {
+        return super.deserialiseInto(decryptValues(byteBuffer), array, offset);
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, long[] array, int offset) {
+        return super.deserialiseInto(decryptValues(byteBuffer), array, offset);
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, short[] array, int offset) {
+        return super.deserialiseInto(decryptValues(byteBuffer), array, offset);
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, char[] array, int offset) {
+        return super.deserialiseInto(decryptValues(byteBuffer), array, offset);
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, float[] array, int offset) {
+        return super.deserialiseInto(decryptValues(byteBuffer), array, offset);
+    }
+
+    @Override
+    public int deserialiseInto(ByteBuffer byteBuffer, double[] array, int offset) {
+        return super.deserialiseInto(decryptValues(byteBuffer), array, offset);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes cannot be decrypted
+     */
+    private ByteBuffer decryptValues(ByteBuffer byteBuffer) {
+        final ByteBuffer data = decryptRemaining(byteBuffer);
+        if (data == null)
+            throw new IllegalArgumentException("Cannot decrypt the values");
+        return data;
+    }
+
+    /**
+     * Decrypts all the remaining bytes of the buffer.
+     */
+    @Override
+    public int[] deserialiseInts(ByteBuffer byteBuffer) {
+        final ByteBuffer data = decryptRemaining(byteBuffer);
+        return data == null ? null : super.deserialiseInts(data);
+    }
+
+    /**
+     * Decrypts all the remaining bytes of the buffer.
+     */
+    @Override
+    public long[] deserialiseLongs(ByteBuffer byteBuffer) {
+        final ByteBuffer data = decryptRemaining(byteBuffer);
+        return data == null ? null : super.deserialiseLongs(data);
+    }
+
+    /**
+     * Decrypts all the remaining bytes of the buffer.
+     */
+    @Override
+    public double[] deserialiseDoubles(ByteBuffer byteBuffer) {
+        final ByteBuffer data = decryptRemaining(byteBuffer);
+        return data == null ? null : super.deserialiseDoubles(data);
+    }
+
+    /**
+     * @return the decrypted bytes, or null if they cannot be decrypted
+     */
+    private ByteBuffer decryptRemaining(ByteBuffer byteBuffer) {
+        byte[] data = new byte[byteBuffer.remaining()];
+        byteBuffer.get(data);
+        try {
+            return wrap(decrypt(data));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     protected abstract byte[] decrypt(byte[] data) throws Exception;
 }
@@ -0,0 +1,93 @@
+package org.vaslabs.vserializer;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes a single field. The field is resolved and made accessible once, when its
+ * {@link FieldPlan} is built, and its accessibility is never reset afterwards, so the same
+ * accessor can be shared between threads and repeated calls do no reflective lookups.
+ * <p>
+ * The accessor works on its own copy of the {@link Field}, so final instance fields can be
+ * written without touching the field's modifiers.
+ */
+final class FieldAccessor {
+
+    private final Field field;
+
+    FieldAccessor(Field field) {
+        this.field = field;
+        this.field.setAccessible(true);
+    }
+
+    Object get(Object obj) throws IllegalAccessException {
+        return field.get(obj);
+    }
+
+    void set(Object obj, Object value) throws IllegalAccessException {
+        field.set(obj, value);
+    }
+
+    int getInt(Object obj) throws IllegalAccessException {
+        return field.getInt(obj);
+    }
+
+    void setInt(Object obj, int value) throws IllegalAccessException {
+        field.setInt(obj, value);
+    }
+
+    long getLong(Object obj) throws IllegalAccessException {
+        return field.getLong(obj);
+    }
+
+    void setLong(Object obj, long value) throws IllegalAccessException {
+        field.setLong(obj, value);
+    }
+
+    short getShort(Object obj) throws IllegalAccessException {
+        return field.getShort(obj);
+    }
+
+    void setShort(Object obj, short value) throws IllegalAccessException {
+        field.setShort(obj, value);
+    }
+
+    char getChar(Object obj) throws IllegalAccessException {
+        return field.getChar(obj);
+    }
+
+    void setChar(Object obj, char value) throws IllegalAccessException {
+        field.setChar(obj, value);
+    }
+
+    byte getByte(Object obj) throws IllegalAccessException {
+        return field.getByte(obj);
+    }
+
+    void setByte(Object obj, byte value) throws IllegalAccessException {
+        field.setByte(obj, value);
+    }
+
+    boolean getBoolean(Object obj) throws IllegalAccessException {
+        return field.getBoolean(obj);
+    }
+
+    void setBoolean(Object obj, boolean value) throws IllegalAccessException {
+        field.setBoolean(obj, value);
+    }
+
+    float getFloat(Object obj) throws IllegalAccessException {
+        return field.getFloat(obj);
+    }
+
+    void setFloat(Object obj, float value) throws IllegalAccessException {
+        field.setFloat(obj, value);
+    }
+
+    double getDouble(Object obj) throws IllegalAccessException {
+        return field.getDouble(obj);
+    }
+
+    void setDouble(Object obj, double value) throws IllegalAccessException {
+        field.setDouble(obj, value);
+    }
+}
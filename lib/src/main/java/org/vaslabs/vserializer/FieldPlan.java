@@ -0,0 +1,88 @@
+package org.vaslabs.vserializer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Serialization metadata of a single field, resolved once when its {@link ClassPlan} is built.
+ */
+public final class FieldPlan {
+
+    enum Kind {
+        PRIMITIVE, PRIMITIVE_ARRAY, ENUM, STRING, OBJECT_ARRAY, COLLECTION, MAP, OBJECT
+    }
+
+    final Field field;
+    final FieldAccessor accessor;
+    final Class type;
+    final Kind kind;
+    final PrimitiveType primitiveType;
+    final int size;
+    /**
+     * The declared type of the keys of a map field, or null for any other field.
+     */
+    final Class keyType;
+    /**
+     * The declared type of the elements of a collection field or of the values of a map field, or
+     * null for any other field. Object when the field does not name it.
+     */
+    final Class elementType;
+
+    FieldPlan(Field field) {
+        this.field = field;
+        this.accessor = new FieldAccessor(field);
+        this.type = field.getType();
+        this.primitiveType = SerializationUtils.enumTypes.get(type);
+        this.size = SerializationUtils.sizeOf(field);
+        this.kind = kindOf(type, primitiveType);
+        this.keyType = kind == Kind.MAP ? typeArgument(field, 0) : null;
+        this.elementType = kind == Kind.COLLECTION ? typeArgument(field, 0) : kind == Kind.MAP ? typeArgument(field, 1) : null;
+    }
+
+    private static Kind kindOf(Class type, PrimitiveType primitiveType) {
+        if (type.isArray())
+            return primitiveType == null ? Kind.OBJECT_ARRAY : Kind.PRIMITIVE_ARRAY;
+        if (primitiveType != null)
+            return Kind.PRIMITIVE;
+        if (type.isEnum())
+            return Kind.ENUM;
+        if (String.class.equals(type))
+            return Kind.STRING;
+        if (Collection.class.isAssignableFrom(type))
+            return Kind.COLLECTION;
+        if (Map.class.isAssignableFrom(type))
+            return Kind.MAP;
+        return Kind.OBJECT;
+    }
+
+    /**
+     * The class of a type argument of the declared type of the field, or Object when it is not a
+     * class, like a wildcard or a type variable, or when the type is raw.
+     */
+    private static Class typeArgument(Field field, int index) {
+        final Type genericType = field.getGenericType();
+        if (!(genericType instanceof ParameterizedType))
+            return Object.class;
+        final Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        if (arguments.length <= index)
+            return Object.class;
+        final Type argument = arguments[index];
+        if (argument instanceof Class)
+            return (Class) argument;
+        if (argument instanceof ParameterizedType)
+            return (Class) ((ParameterizedType) argument).getRawType();
+        return Object.class;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getName() {
+        return field.getName();
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteOrder;
+
+/**
+ * Serializes every class through a {@link ClassCodec}: the one generated at compile time for
+ * {@link VSerializable} classes, or else one compiled from its {@link ClassPlan} at first use,
+ * instead of resolving the type of each field on every call.
+ * The output is byte for byte the same as the one of {@link AlphabeticalSerializer}.
+ */
+public class GeneratedSerializer extends AlphabeticalSerializer {
+
+    public GeneratedSerializer() {
+    }
+
+    public GeneratedSerializer(ByteOrder byteOrder) {
+        super(byteOrder);
+    }
+
+    @Override
+    protected ClassCodec codecFor(ClassPlan plan) {
+        ClassCodec codec = plan.generatedCodec();
+        if (codec != null)
+            return codec;
+        return plan.compiledCodec();
+    }
+}
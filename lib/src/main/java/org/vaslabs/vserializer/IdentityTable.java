@@ -0,0 +1,72 @@
+package org.vaslabs.vserializer;
+
+/**
+ * Assigns sequential handles, starting from 1, to objects by identity. An open addressing hash
+ * table with linear probing on the identity hash codes of the objects, which are compared with
+ * ==, so objects whose hash codes collide still get handles of their own. Absent objects map to 0.
+ */
+final class IdentityTable {
+
+    static final int ABSENT = 0;
+
+    private Object[] keys;
+    private int[] handles;
+    private int size;
+
+    IdentityTable() {
+        keys = new Object[32];
+        handles = new int[32];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(Object key) {
+        final int mask = keys.length - 1;
+        for (int slot = slotOf(key, mask); keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return handles[slot];
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Gives the next handle to an object that has none yet.
+     *
+     * @return the handle
+     */
+    int add(Object key) {
+        final int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != null)
+            slot = (slot + 1) & mask;
+        keys[slot] = key;
+        handles[slot] = ++size;
+        if (size * 2 > keys.length)
+            resize(keys.length << 1);
+        return size;
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldHandles = handles;
+        keys = new Object[capacity];
+        handles = new int[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            int slot = slotOf(oldKeys[i], mask);
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            handles[slot] = oldHandles[i];
+        }
+    }
+
+    private static int slotOf(Object key, int mask) {
+        int hash = System.identityHashCode(key) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
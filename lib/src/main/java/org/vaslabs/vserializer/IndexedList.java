@@ -0,0 +1,71 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of an array serialized with
+ * {@link AlphabeticalSerializer#serializeIndexed(Object[])}, decoding element i on {@code get(i)}
+ * without reading any other element.
+ * <p>
+ * The elements are not kept: every call decodes a new instance, so callers hold on to the ones
+ * they use. The serialized bytes are never moved or modified, so a list can be read by several
+ * threads at once.
+ */
+public class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final AlphabeticalSerializer serializer;
+    private final ByteBuffer byteBuffer;
+    private final ClassPlan plan;
+    private final int size;
+    private final int tableStart;
+
+    /**
+     * @param byteBuffer the serialized array, from its position to its limit. The buffer itself is
+     *                   not moved.
+     * @throws IllegalArgumentException if the bytes do not end with an offset table
+     * @throws UnsupportedOperationException if the serializer does not support element access
+     */
+    public IndexedList(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, Class<T> elementType) {
+        serializer.requireElementAccess();
+        this.serializer = serializer;
+        this.byteBuffer = byteBuffer.slice().order(serializer.byteOrder);
+        this.plan = ClassPlan.of(elementType);
+        final int limit = this.byteBuffer.limit();
+        if (limit == 0) {
+            size = 0;
+            tableStart = 0;
+            return;
+        }
+        size = limit < 4 ? -1 : this.byteBuffer.getInt(limit - 4);
+        if (size < 0 || size > (limit - 4) / 4)
+            throw new IllegalArgumentException("Not an indexed array");
+        tableStart = limit - 4 - 4 * size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " in a list of " + size);
+        final int start = byteBuffer.getInt(tableStart + 4 * index);
+        final int end = index + 1 < size ? byteBuffer.getInt(tableStart + 4 * (index + 1)) : tableStart;
+        if (start < 0 || start > end || end > tableStart)
+            throw new IllegalStateException("Element " + index + " has no valid offset");
+        ByteBuffer input = byteBuffer.duplicate().order(serializer.byteOrder);
+        input.limit(end).position(start);
+        final AlphabeticalSerializer.PayloadState previousState = serializer.swapPayloadState(serializer.newPayloadState());
+        try {
+            return (T) serializer.convertElement(input, plan);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read element " + index, e);
+        } finally {
+            serializer.swapPayloadState(previousState);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.vaslabs.vserializer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A read only list of int values decoded from a serialized Integer array or list. The values are
+ * kept unboxed; {@link #getInt(int)} reads them as they are and {@link #get(int)} boxes only the
+ * value it returns.
+ */
+public final class IntList extends AbstractList<Integer> implements RandomAccess {
+
+    private final int[] values;
+
+    IntList(int[] values) {
+        this.values = values;
+    }
+
+    public int getInt(int index) {
+        if (index < 0 || index >= values.length)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + values.length);
+        return values[index];
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    public int indexOfInt(int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Integer ? indexOfInt((Integer) o) : -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * @return a copy of the values
+     */
+    public int[] toIntArray() {
+        return Arrays.copyOf(values, values.length);
+    }
+}
@@ -0,0 +1,111 @@
+package org.vaslabs.vserializer;
+
+/**
+ * An open addressing hash table from keys to long locations, with linear probing and backward
+ * shift deletion, so lookups never have to skip over deleted slots. Absent keys map to -1.
+ */
+final class KeyIndex<K> {
+
+    static final long ABSENT = -1L;
+
+    private Object[] keys;
+    private long[] locations;
+    private int size;
+
+    KeyIndex() {
+        this(16);
+    }
+
+    KeyIndex(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2)
+            capacity <<= 1;
+        keys = new Object[capacity];
+        locations = new long[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(K key) {
+        final int mask = keys.length - 1;
+        for (int slot = slotOf(key, mask); keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key))
+                return locations[slot];
+        }
+        return ABSENT;
+    }
+
+    /**
+     * @return the previous location of the key, or -1 if it was absent
+     */
+    long put(K key, long location) {
+        final int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        for (; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key)) {
+                long previous = locations[slot];
+                locations[slot] = location;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        locations[slot] = location;
+        if (++size * 2 > keys.length)
+            resize(keys.length << 1);
+        return ABSENT;
+    }
+
+    /**
+     * @return the location the key was removed from, or -1 if it was absent
+     */
+    long remove(K key) {
+        final int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        for (; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key))
+                break;
+        }
+        if (keys[slot] == null)
+            return ABSENT;
+        final long previous = locations[slot];
+        int emptied = slot;
+        for (int next = (emptied + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            boolean movable = emptied <= next
+                    ? home <= emptied || home > next
+                    : home <= emptied && home > next;
+            if (movable) {
+                keys[emptied] = keys[next];
+                locations[emptied] = locations[next];
+                emptied = next;
+            }
+        }
+        keys[emptied] = null;
+        size--;
+        return previous;
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        long[] oldLocations = locations;
+        keys = new Object[capacity];
+        locations = new long[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            int slot = slotOf(oldKeys[i], mask);
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            locations[slot] = oldLocations[i];
+        }
+    }
+
+    private static int slotOf(Object key, int mask) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
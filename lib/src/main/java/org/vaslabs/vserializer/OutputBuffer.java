@@ -0,0 +1,296 @@
+package org.vaslabs.vserializer;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The output serializers write into. It has the relative put methods of a {@link ByteBuffer} but
+ * grows as it is written, doubling its capacity when it runs out of room, so an object graph can be
+ * serialized in a single traversal without computing its size first.
+ */
+public class OutputBuffer {
+
+    static final int DEFAULT_CAPACITY = 64;
+
+    private ByteBuffer byteBuffer;
+
+    public OutputBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public OutputBuffer(int initialCapacity) {
+        this(initialCapacity, ByteOrder.BIG_ENDIAN);
+    }
+
+    public OutputBuffer(int initialCapacity, ByteOrder byteOrder) {
+        this(ByteBuffer.allocate(Math.max(initialCapacity, 1)).order(byteOrder));
+    }
+
+    protected OutputBuffer(ByteBuffer byteBuffer) {
+        this.byteBuffer = byteBuffer;
+    }
+
+    /**
+     * An output that writes in place into the remaining bytes of the given buffer, in the given byte
+     * order, without moving its position. It does not grow: running out of room throws a
+     * {@link BufferOverflowException}.
+     */
+    static OutputBuffer wrap(ByteBuffer byteBuffer, ByteOrder byteOrder) {
+        return new OutputBuffer(byteBuffer.slice().order(byteOrder)) {
+            @Override
+            protected void grow(int bytes) {
+                throw new BufferOverflowException();
+            }
+        };
+    }
+
+    public OutputBuffer put(byte value) {
+        ensureRemaining(1);
+        byteBuffer.put(value);
+        return this;
+    }
+
+    public OutputBuffer put(byte[] bytes) {
+        return put(bytes, 0, bytes.length);
+    }
+
+    public OutputBuffer put(byte[] bytes, int offset, int length) {
+        ensureRemaining(length);
+        byteBuffer.put(bytes, offset, length);
+        return this;
+    }
+
+    public OutputBuffer putShort(short value) {
+        ensureRemaining(2);
+        byteBuffer.putShort(value);
+        return this;
+    }
+
+    public OutputBuffer putChar(char value) {
+        ensureRemaining(2);
+        byteBuffer.putChar(value);
+        return this;
+    }
+
+    public OutputBuffer putInt(int value) {
+        ensureRemaining(4);
+        byteBuffer.putInt(value);
+        return this;
+    }
+
+    public OutputBuffer putLong(long value) {
+        ensureRemaining(8);
+        byteBuffer.putLong(value);
+        return this;
+    }
+
+    public OutputBuffer putFloat(float value) {
+        ensureRemaining(4);
+        byteBuffer.putFloat(value);
+        return this;
+    }
+
+    public OutputBuffer putDouble(double value) {
+        ensureRemaining(8);
+        byteBuffer.putDouble(value);
+        return this;
+    }
+
+    /**
+     * Writes an unsigned varint: seven bits per byte, least significant first, with the high bit
+     * set on every byte but the last. Values below 128 take a single byte, negative ones five.
+     */
+    public OutputBuffer putVarInt(int value) {
+        ensureRemaining(varIntSize(value));
+        while ((value & ~0x7F) != 0) {
+            byteBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        byteBuffer.put((byte) value);
+        return this;
+    }
+
+    /**
+     * Writes an unsigned varint of up to ten bytes.
+     */
+    public OutputBuffer putVarLong(long value) {
+        ensureRemaining(varLongSize(value));
+        while ((value & ~0x7FL) != 0) {
+            byteBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        byteBuffer.put((byte) value);
+        return this;
+    }
+
+    static int varIntSize(int value) {
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    static int varLongSize(long value) {
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * Writes the chars of a string that are all below 256 as one byte each.
+     */
+    @SuppressWarnings("deprecation")
+    void putLatin1(String string) {
+        final int length = string.length();
+        ensureRemaining(length);
+        if (byteBuffer.hasArray()) {
+            // copies the low bytes of the chars straight out of the string
+            final int position = byteBuffer.position();
+            string.getBytes(0, length, byteBuffer.array(), byteBuffer.arrayOffset() + position);
+            byteBuffer.position(position + length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            byteBuffer.put((byte) string.charAt(i));
+        }
+    }
+
+    /**
+     * Writes the chars of a string in UTF-8, each char of a surrogate pair on its own.
+     *
+     * @param utf8Length the number of bytes this takes
+     */
+    void putUtf8(String string, int utf8Length) {
+        ensureRemaining(utf8Length);
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                byteBuffer.put((byte) c);
+            } else if (c < 0x800) {
+                byteBuffer.put((byte) (0xC0 | (c >> 6)));
+                byteBuffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                byteBuffer.put((byte) (0xE0 | (c >> 12)));
+                byteBuffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                byteBuffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Writes the chars of a string two bytes each, in bulk through a view of the buffer.
+     */
+    void putUtf16(String string) {
+        final int length = string.length();
+        ensureRemaining(length * 2);
+        byteBuffer.asCharBuffer().put(string);
+        byteBuffer.position(byteBuffer.position() + length * 2);
+    }
+
+    /**
+     * Writes the values in bulk through a view of the buffer, in its byte order.
+     */
+    public OutputBuffer putInts(int[] values, int offset, int length) {
+        ensureRemaining(length * 4);
+        byteBuffer.asIntBuffer().put(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 4);
+        return this;
+    }
+
+    public OutputBuffer putLongs(long[] values, int offset, int length) {
+        ensureRemaining(length * 8);
+        byteBuffer.asLongBuffer().put(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 8);
+        return this;
+    }
+
+    public OutputBuffer putShorts(short[] values, int offset, int length) {
+        ensureRemaining(length * 2);
+        byteBuffer.asShortBuffer().put(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 2);
+        return this;
+    }
+
+    public OutputBuffer putChars(char[] values, int offset, int length) {
+        ensureRemaining(length * 2);
+        byteBuffer.asCharBuffer().put(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 2);
+        return this;
+    }
+
+    public OutputBuffer putFloats(float[] values, int offset, int length) {
+        ensureRemaining(length * 4);
+        byteBuffer.asFloatBuffer().put(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 4);
+        return this;
+    }
+
+    public OutputBuffer putDoubles(double[] values, int offset, int length) {
+        ensureRemaining(length * 8);
+        byteBuffer.asDoubleBuffer().put(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 8);
+        return this;
+    }
+
+    public ByteOrder order() {
+        return byteBuffer.order();
+    }
+
+    /**
+     * The number of bytes written so far.
+     */
+    public int position() {
+        return byteBuffer.position();
+    }
+
+    /**
+     * The bytes written so far. When they fill the buffer exactly, its backing array is returned
+     * without copying.
+     */
+    public byte[] toByteArray() {
+        final byte[] array = byteBuffer.array();
+        final int length = byteBuffer.position();
+        if (byteBuffer.arrayOffset() == 0 && length == array.length)
+            return array;
+        return Arrays.copyOfRange(array, byteBuffer.arrayOffset(), byteBuffer.arrayOffset() + length);
+    }
+
+    /**
+     * The number of bytes the buffer can hold before it has to grow.
+     */
+    int capacity() {
+        return byteBuffer.capacity();
+    }
+
+    /**
+     * Discards the bytes written so far, keeping the memory that held them, and switches to the
+     * given byte order.
+     */
+    void reset(ByteOrder byteOrder) {
+        byteBuffer.clear();
+        byteBuffer.order(byteOrder);
+    }
+
+    /**
+     * The buffer currently written into.
+     */
+    protected ByteBuffer byteBuffer() {
+        return byteBuffer;
+    }
+
+    /**
+     * Makes room for the given number of bytes to be written.
+     */
+    protected void ensureRemaining(int bytes) {
+        if (byteBuffer.remaining() < bytes)
+            grow(bytes);
+    }
+
+    /**
+     * Replaces the buffer with one at least twice as large, holding the bytes written so far.
+     */
+    protected void grow(int bytes) {
+        final int capacity = Math.max(byteBuffer.capacity() << 1, byteBuffer.position() + bytes);
+        ByteBuffer grownByteBuffer = ByteBuffer.allocate(capacity).order(byteBuffer.order());
+        byteBuffer.flip();
+        grownByteBuffer.put(byteBuffer);
+        byteBuffer = grownByteBuffer;
+    }
+}
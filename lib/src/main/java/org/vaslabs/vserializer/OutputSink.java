@@ -0,0 +1,13 @@
+package org.vaslabs.vserializer;
+
+import java.io.IOException;
+
+/**
+ * Receives the bytes of an object serialized by
+ * {@link AlphabeticalSerializer#serializeTo(Object, OutputSink)}. The array is a scratch buffer
+ * that is reused once the call returns, so the bytes have to be consumed or copied before then.
+ */
+public interface OutputSink {
+
+    void write(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,96 @@
+package org.vaslabs.vserializer;
+
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The layout of {@link AlphabeticalSerializer} for models with subclasses and interface typed
+ * fields. Wherever the declared type of a nested object or an array element is not final, the
+ * null marker is replaced by a varint tag of the class of the value: 0 for null, 1 for the
+ * declared type itself and 2 onwards for the classes of a {@link ClassRegistry}, so values of the
+ * declared type take no more room than with the plain serializer. Values of final types, strings,
+ * boxed primitives and enums are written as usual.
+ * <p>
+ * Codecs generated for {@link VSerializable} classes write untagged nested objects, so every class
+ * is encoded field by field.
+ */
+public class PolymorphicAlphabeticalSerializer extends AlphabeticalSerializer {
+
+    private static final int NULL_TAG = 0;
+    private static final int DECLARED_TYPE_TAG = 1;
+    private static final int FIRST_REGISTERED_TAG = 2;
+
+    private final ClassRegistry registry;
+
+    public PolymorphicAlphabeticalSerializer(ClassRegistry registry) {
+        this.registry = registry;
+    }
+
+    public PolymorphicAlphabeticalSerializer(ClassRegistry registry, ByteOrder byteOrder) {
+        super(byteOrder);
+        this.registry = registry;
+    }
+
+    @Override
+    protected ClassCodec codecFor(ClassPlan plan) {
+        return null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the declared type is not known, or if the value is an
+     * instance of a class that is neither the declared type nor registered
+     */
+    @Override
+    protected void putElementIn(OutputBuffer byteBuffer, Class declaredType, ClassPlan plan, Object object) throws IllegalAccessException {
+        if (declaredType == null)
+            throw new IllegalArgumentException("The declared type of " + object + " is needed to tag it");
+        if (!isTagged(declaredType)) {
+            super.putElementIn(byteBuffer, declaredType, plan, object);
+            return;
+        }
+        if (object == null) {
+            byteBuffer.putVarInt(NULL_TAG);
+            return;
+        }
+        byteBuffer.putVarInt(tagOf(declaredType, object));
+        putElementValue(byteBuffer, plan, object);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the tag is unknown or names a class that is not a
+     * subtype of the declared one
+     */
+    @Override
+    protected ClassPlan getElementPlan(ByteBuffer byteBuffer, ClassPlan declaredPlan) {
+        if (!isTagged(declaredPlan.type))
+            return super.getElementPlan(byteBuffer, declaredPlan);
+        final int tag = SerializationUtils.getVarInt(byteBuffer);
+        if (tag == NULL_TAG)
+            return null;
+        if (tag == DECLARED_TYPE_TAG)
+            return declaredPlan;
+        final Class type = registry.classOf(tag - FIRST_REGISTERED_TAG);
+        if (!declaredPlan.type.isAssignableFrom(type))
+            throw new IllegalArgumentException(type + " is not a " + declaredPlan.type);
+        return ClassPlan.of(type);
+    }
+
+    private int tagOf(Class declaredType, Object object) {
+        final Class type = object instanceof Enum ? ((Enum) object).getDeclaringClass() : object.getClass();
+        if (type == declaredType)
+            return DECLARED_TYPE_TAG;
+        final int id = registry.idOf(type);
+        if (id < 0)
+            throw new IllegalArgumentException(type + " is not registered");
+        return FIRST_REGISTERED_TAG + id;
+    }
+
+    /**
+     * Values of final types, primitives, strings, boxed primitives and enums can only be of their
+     * declared type.
+     */
+    private static boolean isTagged(Class declaredType) {
+        return !Modifier.isFinal(declaredType.getModifiers()) && !declaredType.isPrimitive() && !ClassPlan.of(declaredType).isValueType();
+    }
+}
@@ -0,0 +1,46 @@
+package org.vaslabs.vserializer;
+
+/**
+ * The fields of a class to decode, for readers that need only some of them. The other fields are
+ * skipped over without being decoded, and no field after the last selected one is read at all.
+ * Nested objects and arrays of selected fields are decoded whole.
+ * <p>
+ * A projection is immutable and can be built once and shared.
+ */
+public final class Projection<T> {
+
+    final ClassPlan plan;
+    private final boolean[] selected;
+    /**
+     * The number of fields to go through: up to and including the last selected one.
+     */
+    final int fieldCount;
+
+    /**
+     * @throws IllegalArgumentException if the class has no fields of its own to select, or no field
+     * with one of the given names
+     */
+    public Projection(Class<T> type, String... fields) {
+        this.plan = ClassPlan.of(type);
+        if (plan.isValueType() || type.isArray())
+            throw new IllegalArgumentException(type + " has no fields to select");
+        this.selected = new boolean[plan.getFieldCount()];
+        int count = 0;
+        for (String field : fields) {
+            final int index = plan.fieldIndex(field);
+            if (index < 0)
+                throw new IllegalArgumentException(type + " has no field " + field);
+            selected[index] = true;
+            count = Math.max(count, index + 1);
+        }
+        this.fieldCount = count;
+    }
+
+    boolean isSelected(int index) {
+        return selected[index];
+    }
+
+    public Class<T> getType() {
+        return plan.type;
+    }
+}
@@ -1,210 +1,317 @@
 package org.vaslabs.vserializer;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
 
-import static org.vaslabs.vserializer.SerializationUtils.arrangeField;
-import static org.vaslabs.vserializer.SerializationUtils.getAllFields;
-import static org.vaslabs.vserializer.SerializationUtils.skipField;
 
 /**
  * Created by vnicolaou on 22/05/16.
+ * <p>
+ * Objects are given sequential handles, starting from 1 for the root, in the order they are first
+ * met. An object is written as its handle, a varint, followed by its fields the first time only,
+ * so shared and circular references are kept. Null is handle 0.
+ * <p>
+ * The handles of a payload are kept in a {@link PayloadState} swapped in for each top level call.
+ * It is looked up once when the call starts, or once for each element of an array or a collection
+ * that holds objects, and is passed down from there to the objects the fields refer to.
+ * <p>
+ * The state stays on a thread local rather than being passed in from the top level call because
+ * the walks of {@link AlphabeticalSerializer} reach this class through hooks that take only the
+ * buffer: {@link #putIn(OutputBuffer, ClassPlan, Object)} and
+ * {@link #convert(ByteBuffer, ClassPlan, Object)} for the elements of arrays, collections and
+ * maps, as called by putElementIn and convertElementValue, and the per field
+ * {@link #convert(ByteBuffer, FieldPlan, Object)}, {@link #convertInto(ByteBuffer, FieldPlan, Object)}
+ * and {@link #skip(ByteBuffer, FieldPlan)}, as called by convertInto and convertProjected. Array
+ * streams, element iterators and indexed lists also keep a state per payload across calls and swap
+ * it in with {@link #swapPayloadState(PayloadState)} around each element, with no call chain to
+ * pass it down.
  */
 public class ReferenceSensitiveAlphabeticalSerializer extends AlphabeticalSerializer{
 
-    private final ThreadLocal<ByteBufferPutter> byteBufferPutterThreadLocal;
-    private final ThreadLocal<Map<Integer, Object>> mappingThreadLocal;
+    private final ThreadLocal<References> referencesThreadLocal;
 
     protected ReferenceSensitiveAlphabeticalSerializer() {
-        byteBufferPutterThreadLocal = new ThreadLocal<>();
-        mappingThreadLocal = new ThreadLocal<>();
+        referencesThreadLocal = new ThreadLocal<>();
     }
 
     @Override
-    public <T> byte[] serialize(T obj) {
-        if (obj == null)
-            return new byte[0];
-        if (obj.getClass().isArray()) {
-            boolean isPrimitive = SerializationUtils.enumTypes.containsKey(obj.getClass());
-            if (isPrimitive) {
-                return SerializationUtils.toBytes(obj);
-            }
-        }
-        if (obj instanceof String)
-            return super.serialize(obj);
-        final Field[] fields = getAllFields(obj);
-        final int size = computeSize(fields, obj);
+    protected PayloadState newPayloadState() {
+        return new References();
+    }
 
-        ByteBuffer byteBuffer = ByteBuffer.allocate(size);
+    @Override
+    protected PayloadState swapPayloadState(PayloadState state) {
+        final References previousReferences = referencesThreadLocal.get();
+        if (state == null)
+            referencesThreadLocal.remove();
+        else
+            referencesThreadLocal.set((References) state);
+        return previousReferences;
+    }
 
-        try {
-            byteBuffer.putInt(System.identityHashCode(obj));
-            putIn(byteBuffer, fields, obj);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new byte[0];
+    /**
+     * Objects are written after their handle; values and arrays are written as usual.
+     */
+    @Override
+    protected void putRootIn(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+        if (plan.isValueType() || plan.type.isArray()) {
+            super.putRootIn(byteBuffer, plan, obj);
+            return;
         }
-        byteBufferPutterThreadLocal.remove();
-        return byteBuffer.array();
+        final IdentityTable identities = referencesThreadLocal.get().identities();
+        byteBuffer.putVarInt(identities.add(obj));
+        putFields(byteBuffer, plan, obj, identities);
     }
 
     @Override
-    public <T> T deserialise(byte[] data, Class<T> clazz) {
-        if (clazz.equals(String.class))
-            return super.deserialise(data, clazz);
-        Field[] fields = getAllFields(clazz);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+    protected <T> T convertRoot(ByteBuffer byteBuffer, Class<T> clazz) {
+        if (ClassPlan.of(clazz).isValueType() || clazz.isArray())
+            return super.convertRoot(byteBuffer, clazz);
         T obj = null;
-        int instanceSignature = byteBuffer.getInt();
-        if (instanceSignature == 0)
+        final References references = referencesThreadLocal.get();
+        if (!references.isNew(SerializationUtils.getVarInt(byteBuffer)))
             return null;
         try {
             obj = SerializationUtils.instantiate(clazz);
-            setUpThreadLocalIfMappingDoesNotExist();
-            seen(instanceSignature, obj);
-            obj = convert(byteBuffer, fields, obj);
+            references.add(obj);
+            obj = convertFields(byteBuffer, ClassPlan.of(clazz), obj, references);
         } catch (Exception e) {
             return obj;
         }
-        mappingThreadLocal.remove();
         return obj;
     }
 
     @Override
-    protected <T> void convert(ByteBuffer byteBuffer, Field field, T obj) throws IllegalAccessException, NoSuchMethodException, InstantiationException, InvocationTargetException, NoSuchFieldException {
-        Class fieldType = field.getType();
-        if (skipField(field))
-            return;
-        if (fieldType.isArray()) {
-            super.convertArray(byteBuffer, field, obj);
-            return;
-        }
-        if (fieldType.isEnum()) {
-            super.convert(byteBuffer, field, obj);
-            return;
+    protected <T> T convertRootInto(ByteBuffer byteBuffer, ClassPlan plan, T target) {
+        final References references = referencesThreadLocal.get();
+        if (!references.isNew(SerializationUtils.getVarInt(byteBuffer)))
+            return null;
+        references.add(target);
+        for (FieldPlan fieldPlan : plan.fields()) {
+            try {
+                if (fieldPlan.kind == FieldPlan.Kind.OBJECT)
+                    fieldPlan.accessor.set(target, getReference(byteBuffer, fieldPlan.type, references));
+                else
+                    super.convertInto(byteBuffer, fieldPlan, target);
+            } catch (BufferUnderflowException e) {
+                throw e;
+            } catch (Exception e) {
+                return null;
+            }
         }
+        return target;
+    }
 
-        PrimitiveType primitiveType = SerializationUtils.enumTypes.get(fieldType);
-        if (primitiveType == null) {
-            if (String.class.equals(field.getType())) {
-                this.convertString(byteBuffer, field, obj);
-            }
-            int signature = byteBuffer.getInt();
-            if (signature == 0) {
-                field.set(obj, null);
-            } else {
-                final Object innerObject;
-                if (seen(signature))
-                    innerObject = getFromMapping(signature);
-                else {
-                    innerObject = SerializationUtils.instantiate(field.getType());
-                    seen(signature, innerObject);
+    @Override
+    protected <T> T convertRoot(ByteBuffer byteBuffer, Projection<T> projection) {
+        final References references = referencesThreadLocal.get();
+        if (!references.isNew(SerializationUtils.getVarInt(byteBuffer)))
+            return null;
+        T obj = null;
+        try {
+            obj = (T) projection.plan.newInstance();
+            references.add(obj);
+            final FieldPlan[] fieldPlans = projection.plan.fields();
+            for (int i = 0; i < projection.fieldCount; i++) {
+                final FieldPlan fieldPlan = fieldPlans[i];
+                if (fieldPlan.kind == FieldPlan.Kind.OBJECT) {
+                    final Object fieldObject = getReference(byteBuffer, fieldPlan.type, references);
+                    if (projection.isSelected(i))
+                        fieldPlan.accessor.set(obj, fieldObject);
+                } else if (projection.isSelected(i)) {
+                    super.convert(byteBuffer, fieldPlan, obj);
+                } else {
+                    super.skip(byteBuffer, fieldPlan);
                 }
-                field.set(obj, innerObject);
-                convert(byteBuffer, getAllFields(obj), innerObject);
             }
-            return;
+            return obj;
+        } catch (Exception e) {
+            return obj;
         }
-        super.convert(byteBuffer, field, obj);
     }
 
-    private void seen(int signature, Object innerObject) {
-        Map<Integer, Object> signatureToObjectMap = mappingThreadLocal.get();
-        signatureToObjectMap.put(signature, innerObject);
+    /**
+     * Objects reached through arrays and collections start a walk of their own.
+     */
+    @Override
+    protected <T> T convert(ByteBuffer byteBuffer, ClassPlan plan, T obj) {
+        return convertFields(byteBuffer, plan, obj, referencesThreadLocal.get());
     }
 
-    private Object getFromMapping(int signature) {
-        Map<Integer, Object> signatureToObjectMap = mappingThreadLocal.get();
-        return signatureToObjectMap.get(signature);
+    private <T> T convertFields(ByteBuffer byteBuffer, ClassPlan plan, T obj, References references) {
+        for (FieldPlan fieldPlan : plan.fields()) {
+            try {
+                if (fieldPlan.kind == FieldPlan.Kind.OBJECT)
+                    fieldPlan.accessor.set(obj, getReference(byteBuffer, fieldPlan.type, references));
+                else
+                    super.convert(byteBuffer, fieldPlan, obj);
+            } catch (BufferUnderflowException e) {
+                throw e;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return obj;
     }
 
-    private boolean seen(int signature) {
-        setUpThreadLocalIfMappingDoesNotExist();
-        Map<Integer, Object> signatureToObjectMap = mappingThreadLocal.get();
-        if (signatureToObjectMap.containsKey(signature))
-            return true;
-        return false;
+    /**
+     * Nested objects may be references to objects read before, so they are never decoded into.
+     */
+    @Override
+    protected <T> void convertInto(ByteBuffer byteBuffer, FieldPlan fieldPlan, T obj) throws IllegalAccessException, NoSuchMethodException, InstantiationException, InvocationTargetException, NoSuchFieldException {
+        if (fieldPlan.kind == FieldPlan.Kind.OBJECT)
+            convert(byteBuffer, fieldPlan, obj);
+        else
+            super.convertInto(byteBuffer, fieldPlan, obj);
     }
 
-    private void setUpThreadLocalIfMappingDoesNotExist() {
-        Map<Integer, Object> signatureToObjectMap = mappingThreadLocal.get();
-        if (signatureToObjectMap == null) {
-            signatureToObjectMap = new HashMap<>();
-            mappingThreadLocal.set(signatureToObjectMap);
+    @Override
+    protected <T> void convert(ByteBuffer byteBuffer, FieldPlan fieldPlan, T obj) throws IllegalAccessException, NoSuchMethodException, InstantiationException, InvocationTargetException, NoSuchFieldException {
+        if (fieldPlan.kind != FieldPlan.Kind.OBJECT) {
+            super.convert(byteBuffer, fieldPlan, obj);
+            return;
         }
+        fieldPlan.accessor.set(obj, getReference(byteBuffer, fieldPlan.type, referencesThreadLocal.get()));
     }
 
+    /**
+     * Objects are decoded even when skipped, so that the handles after them stay in step.
+     */
     @Override
-    protected int computeSize(Field[] fields, Object obj) {
-        SizeComputer sizeComputer = new SizeComputer(obj);
-        return sizeComputer.calculateSize(fields, obj);
+    protected void skip(ByteBuffer byteBuffer, FieldPlan fieldPlan) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        if (fieldPlan.kind == FieldPlan.Kind.OBJECT)
+            getReference(byteBuffer, fieldPlan.type, referencesThreadLocal.get());
+        else
+            super.skip(byteBuffer, fieldPlan);
+    }
+
+    /**
+     * Reads a handle and, the first time the object is met, the object itself.
+     */
+    private Object getReference(ByteBuffer byteBuffer, Class type, References references) throws IllegalAccessException, NoSuchMethodException, InvocationTargetException, InstantiationException {
+        final int handle = SerializationUtils.getVarInt(byteBuffer);
+        if (handle == IdentityTable.ABSENT)
+            return null;
+        if (!references.isNew(handle))
+            return references.get(handle);
+        final ClassPlan plan = ClassPlan.of(type);
+        final Object innerObject = plan.newInstance();
+        references.add(innerObject);
+        convertFields(byteBuffer, plan, innerObject, references);
+        return innerObject;
     }
 
+    /**
+     * Objects start with a handle of variable length, so fields have no fixed offsets.
+     */
     @Override
-    protected void putIn(ByteBuffer byteBuffer, Field[] fields, Object obj) throws IllegalAccessException {
-        ByteBufferPutter byteBufferPutter = new ByteBufferPutter(obj);
-        byteBufferPutterThreadLocal.set(byteBufferPutter);
-        super.putIn(byteBuffer, fields, obj);
+    public <T> VView<T> view(Class<T> type) {
+        throw new UnsupportedOperationException("Reference sensitive payloads have no fixed offsets");
     }
 
+    /**
+     * Codecs write nested objects without references, so every class is encoded field by field.
+     */
     @Override
-    protected void putIn(ByteBuffer byteBuffer, Field field, Object obj) throws IllegalAccessException {
+    protected ClassCodec codecFor(ClassPlan plan) {
+        return null;
+    }
+
+    /**
+     * Objects reached through arrays and collections start a walk of their own.
+     */
+    @Override
+    protected void putIn(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+        putFields(byteBuffer, plan, obj, referencesThreadLocal.get().identities());
+    }
+
+    @Override
+    protected void putIn(OutputBuffer byteBuffer, FieldPlan fieldPlan, Object obj) throws IllegalAccessException {
         if (obj == null)
             return;
-        Class type = field.getType();
-        if (type.isPrimitive() || type.isEnum()) {
-            super.putIn(byteBuffer, field, obj);
+        if (fieldPlan.kind != FieldPlan.Kind.OBJECT) {
+            super.putIn(byteBuffer, fieldPlan, obj);
             return;
         }
-        ByteBufferPutter byteBufferPutter = byteBufferPutterThreadLocal.get();
-        try {
-            arrangeField(field, obj);
-        } catch (Exception e) {
-        }
-        byteBufferPutter.put(byteBuffer, field, obj);
+        putReference(byteBuffer, fieldPlan.accessor.get(obj), referencesThreadLocal.get().identities());
     }
 
+    private void putFields(OutputBuffer byteBuffer, ClassPlan plan, Object obj, IdentityTable identities) throws IllegalAccessException {
+        for (FieldPlan fieldPlan : plan.fields()) {
+            if (fieldPlan.kind == FieldPlan.Kind.OBJECT)
+                putReference(byteBuffer, fieldPlan.accessor.get(obj), identities);
+            else
+                super.putIn(byteBuffer, fieldPlan, obj);
+        }
+    }
 
+    /**
+     * Writes the handle of an object and, the first time it is met, the object itself.
+     */
+    private void putReference(OutputBuffer byteBuffer, Object fieldObject, IdentityTable identities) throws IllegalAccessException {
+        if (fieldObject == null) {
+            byteBuffer.putVarInt(IdentityTable.ABSENT);
+            return;
+        }
+        final int handle = identities.get(fieldObject);
+        if (handle != IdentityTable.ABSENT) {
+            byteBuffer.putVarInt(handle);
+            return;
+        }
+        byteBuffer.putVarInt(identities.add(fieldObject));
+        putFields(byteBuffer, ClassPlan.of(fieldObject.getClass()), fieldObject, identities);
+    }
 
-        private class ByteBufferPutter {
-
-            private Set<Integer> seenObject;
+    /**
+     * The objects of one payload: their handles when writing, and the objects themselves indexed
+     * by handle when reading.
+     */
+    private static final class References extends PayloadState {
+        private IdentityTable identities;
+        private Object[] objects = new Object[16];
+        private int count;
+        private int markedCount;
 
-            private ByteBufferPutter(Object parent) {
-                seenObject = new HashSet<>();
-                seenObject.add(System.identityHashCode(parent));
-            }
+        IdentityTable identities() {
+            if (identities == null)
+                identities = new IdentityTable();
+            return identities;
+        }
 
-            public void put(ByteBuffer byteBuffer, Field field, Object obj) throws IllegalAccessException {
+        /**
+         * @return true if the handle is the one of the next new object, false if it is null or an
+         * object read before
+         * @throws IllegalArgumentException if it is neither
+         */
+        boolean isNew(int handle) {
+            if (handle == count + 1)
+                return true;
+            if (handle < 0 || handle > count)
+                throw new IllegalArgumentException("Unknown object handle " + handle);
+            return false;
+        }
 
+        void add(Object obj) {
+            if (count == objects.length)
+                objects = Arrays.copyOf(objects, count << 1);
+            objects[count++] = obj;
+        }
 
-                Object fieldObject = field.get(obj);
-                if (fieldObject != null)
-                    byteBuffer.putInt(System.identityHashCode(fieldObject));
-                if (seen(fieldObject) || fieldObject == null) {
-                    return;
-                } else {
-                    putIn(byteBuffer, getAllFields(fieldObject), fieldObject);
-                    return;
-                }
+        Object get(int handle) {
+            return objects[handle - 1];
+        }
 
-            }
+        @Override
+        protected void mark() {
+            markedCount = count;
+        }
 
-            private boolean seen(Object fieldObject) {
-                final int signature;
-                if (fieldObject == null)
-                    signature = 0;
-                else
-                    signature = System.identityHashCode(fieldObject);
-                if (seenObject.contains(signature))
-                    return true;
-                seenObject.add(signature);
-                return false;
-            }
+        @Override
+        protected void reset() {
+            Arrays.fill(objects, markedCount, count, null);
+            count = markedCount;
         }
+    }
 }
@@ -1,15 +1,31 @@
 package org.vaslabs.vserializer;
 
-import java.lang.ref.WeakReference;
-import java.lang.reflect.Constructor;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.WeakHashMap;
 
 /**
@@ -77,143 +93,177 @@ public class SerializationUtils {
     }
 
     public static <T> T instantiate(Class<T> clazz) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-
-        Constructor<T> constructor = clazz.getDeclaredConstructor();
-        constructor.setAccessible(true);
-        return constructor.newInstance(null);
+        return (T) ClassPlan.of(clazz).newInstance();
     }
 
+    /**
+     * @deprecated the fields argument is ignored: the size is computed from the {@link ClassPlan}
+     * of obj's class, with all its serializable fields, whichever fields are passed. Use
+     * {@link #calculateSize(ClassPlan, Object)}.
+     */
+    @Deprecated
     public static int calculateSize(Field[] fields, Object obj) {
-        int size = 0;
-        for (Field field : fields) {
-            if (skipField(field))
-                continue;
-            if (field.getType().isArray()) {
-                size += 4 + sizeOfArray(field, obj);
-                continue;
-            }
-            else if (!field.getType().isPrimitive()) {
-                if (field.getType().equals(String.class)) {
-                    try {
-                        try {
-                            arrangeField(field, obj);
-                        } catch (NoSuchFieldException e) {
-                            e.printStackTrace();
-                        }
-                        String string = (String) field.get(obj);
-                        if (string == null)
-                            size += 4;
-                        else
-                            size += 4 + string.length()*2;
-                        continue;
-                    } catch (IllegalAccessException e) {
-                        return 0;
-                    }
-                }
-                size += 1;
-                try {
-                    field.setAccessible(true);
-                    final Object newObj = field.get(obj);
-                    if (newObj != null && !field.getType().isEnum())
-                        size += calculateSize(getAllFields(newObj), newObj);
-                    field.setAccessible(false);
-                } catch (IllegalAccessException e) {
+        return calculateSize(ClassPlan.of(obj.getClass()), obj);
+    }
 
-                }
+    /**
+     * Only the strings, arrays and objects are visited; the primitive and enum fields are counted
+     * with the size the plan computed once for the class.
+     */
+    public static int calculateSize(ClassPlan plan, Object obj) {
+        int size = plan.fixedFieldsSize();
+        for (FieldPlan fieldPlan : plan.variableFields()) {
+            try {
+                size += sizeOf(fieldPlan, obj);
+            } catch (IllegalAccessException e) {
+                return 0;
             }
-            size += sizeOf(field);
         }
         return size;
     }
 
-    protected static int sizeOfArray(Field field, Object obj) {
-        try {
-
-            field.setAccessible(true);
-            Class type = field.getType();
-            if (field.get(obj) == null)
-                return 0;
-            final int consistentTypeSize;
-            if (!sizes.containsKey(type)) {
-                return sizeOfArrayType(field, obj);
+    static int sizeOf(FieldPlan fieldPlan, Object obj) throws IllegalAccessException {
+        switch (fieldPlan.kind) {
+            case STRING:
+                return sizeOfString((String) fieldPlan.accessor.get(obj));
+            case PRIMITIVE_ARRAY:
+            case OBJECT_ARRAY:
+                return 4 + sizeOfArray(fieldPlan, obj);
+            case COLLECTION:
+                return 4 + sizeOfCollection(fieldPlan.elementType, (Collection) fieldPlan.accessor.get(obj));
+            case MAP: {
+                final Map map = (Map) fieldPlan.accessor.get(obj);
+                return 4 + (map == null ? 0 : sizeOfValues(fieldPlan.keyType, map.keySet()) + sizeOfValues(fieldPlan.elementType, map.values()));
             }
-            else {
-                consistentTypeSize = sizes.get(type);
+            default: {
+                final Object newObj = fieldPlan.accessor.get(obj);
+                if (newObj == null)
+                    return 1;
+                return 1 + sizeOfElement(ClassPlan.of(newObj.getClass()), newObj);
             }
-            int arraySize = findArrayLength(field, obj);
-            field.setAccessible(false);
-            return arraySize*consistentTypeSize;
-        } catch (IllegalAccessException e) {
-            return 0;
         }
     }
 
-    private static int sizeOfArrayType(Field field, Object obj) throws IllegalAccessException {
-        Object[] objects = (Object[]) field.get(obj);
-        if (objects == null || objects.length == 0) {
+    protected static int sizeOfString(String string) {
+        if (string == null || string.isEmpty())
+            return 4;
+        return 4 + 1 + StringSerializer.encodedLength(string);
+    }
+
+    protected static int sizeOfArray(FieldPlan fieldPlan, Object obj) throws IllegalAccessException {
+        Object array = fieldPlan.accessor.get(obj);
+        if (array == null)
             return 0;
-        }
-        int sizeSum = 0;
+        if (fieldPlan.kind == FieldPlan.Kind.PRIMITIVE_ARRAY)
+            return Array.getLength(array)*fieldPlan.size;
+        return sizeOfElements((Object[]) array);
+    }
+
+    /**
+     * Elements of the component type are counted and sized with one multiplication when the type
+     * has a fixed size; nulls take their marker only and other elements are sized one by one.
+     */
+    private static int sizeOfElements(Object[] objects) {
+        final ClassPlan componentPlan = ClassPlan.of(objects.getClass().getComponentType());
+        final int fixedSize = componentPlan.fixedSize();
+        final Class fixedType = fixedSize < 0 ? null : componentPlan.type;
+        int sizeSum = objects.length;
+        int fixedElements = 0;
+        ClassPlan plan = null;
         for (Object object : objects) {
-            if (object == null) {
+            if (object == null)
+                continue;
+            if (object.getClass() == fixedType) {
+                fixedElements++;
                 continue;
             }
-            Class type = object.getClass();
-            final boolean isEnum = type.getEnclosingClass().isEnum();
-            if (isEnum)
-                sizeSum += 1;
-            else
-                sizeSum += calculateSize(getAllFields(type), object);
+            if (plan == null || plan.type != object.getClass())
+                plan = ClassPlan.of(object.getClass());
+            sizeSum += sizeOfElement(plan, object);
         }
-        return sizeSum + objects.length;
+        return sizeSum + fixedElements * fixedSize;
     }
 
+    protected static int sizeOfElement(ClassPlan plan, Object object) {
+        if (plan.isEnum)
+            return 1;
+        if (plan.boxedType != null)
+            return plan.boxedSize;
+        if (plan.isString)
+            return sizeOfString((String) object);
+        return calculateSize(plan, object);
+    }
 
-    protected static int findArrayLength(Field field, Object obj) throws IllegalAccessException {
-        if (!enumTypes.containsKey(field.getType())) {
-            return findArrayLengthNonPrimitive(field, obj);
-        }
-        switch (enumTypes.get(field.getType())) {
-            case INT: {
-                int[] array = (int[]) field.get(obj);
-                return array.length;
-            }
-            case LONG: {
-                long[] array = (long[])field.get(obj);
-                return array.length;
-            }
-            case BYTE: {
-                byte[] array = (byte[])field.get(obj);
-                return array.length;
-            }
-            case CHAR: {
-                char[] array = (char[])field.get(obj);
-                return array.length;
-            }
-            case BOOLEAN: {
-                boolean[] array = (boolean[]) field.get(obj);
-                return array.length;
-            }
-            case SHORT: {
-                short[] array = (short[]) field.get(obj);
-                return array.length;
-            }
-            case FLOAT: {
-                float[] array = (float[]) field.get(obj);
-                return array.length;
+    protected static int sizeOfCollection(Class elementType, Collection collection) {
+        return collection == null ? 0 : sizeOfValues(elementType, collection);
+    }
+
+    /**
+     * The size of the elements of a collection, or of the keys or the values of a map, declared of
+     * the given type: boxed primitives without nulls are packed after a single marker.
+     */
+    private static int sizeOfValues(Class declaredType, Collection values) {
+        final ClassPlan declaredPlan = ClassPlan.of(declaredType);
+        final int fixedSize = declaredPlan.fixedSize();
+        int sizeSum = values.size();
+        int fixedElements = 0;
+        boolean hasNull = false;
+        ClassPlan plan = null;
+        for (Object value : values) {
+            if (value == null) {
+                hasNull = true;
+                continue;
             }
-            case DOUBLE: {
-                double[] array = (double[]) field.get(obj);
-                return array.length;
+            if (fixedSize >= 0 && value.getClass() == declaredType) {
+                fixedElements++;
+                continue;
             }
-            default:
-                return 0;
+            if (plan == null || plan.type != value.getClass())
+                plan = ClassPlan.of(value.getClass());
+            sizeSum += sizeOfElement(plan, value);
         }
+        if (declaredPlan.boxedType != null)
+            sizeSum = hasNull ? sizeSum + 1 : 1;
+        return sizeSum + fixedElements * fixedSize;
+    }
+
+    /**
+     * An empty collection of the given type with room for the given number of elements. Interfaces
+     * get the implementation that keeps the order the elements were written in.
+     */
+    protected static <C> C newCollection(Class<C> type, int size) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        if (type == ArrayList.class || type == Collection.class || type == List.class)
+            return (C) new ArrayList(size);
+        if (type == HashSet.class)
+            return (C) new HashSet(hashCapacity(size));
+        if (type == LinkedHashSet.class || type == Set.class)
+            return (C) new LinkedHashSet(hashCapacity(size));
+        if (type == ArrayDeque.class || (type.isInterface() && Queue.class.isAssignableFrom(type)))
+            return (C) new ArrayDeque(size);
+        if (type == SortedSet.class || type == NavigableSet.class)
+            return (C) new TreeSet();
+        return instantiate(type);
     }
 
-    private static int findArrayLengthNonPrimitive(Field field, Object obj) throws IllegalAccessException {
-        Object[] objects = (Object[]) field.get(obj);
-        return objects.length;
+    /**
+     * An empty map of the given type with room for the given number of entries.
+     */
+    protected static <M> M newMap(Class<M> type, int size) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        if (type == HashMap.class)
+            return (M) new HashMap(hashCapacity(size));
+        if (type == LinkedHashMap.class || type == Map.class)
+            return (M) new LinkedHashMap(hashCapacity(size));
+        if (type == SortedMap.class || type == NavigableMap.class)
+            return (M) new TreeMap();
+        return instantiate(type);
+    }
+
+    /**
+     * The capacity that holds the given number of entries without rehashing at the default load
+     * factor.
+     */
+    private static int hashCapacity(int size) {
+        return size < 3 ? size + 1 : (int) (size / 0.75f + 1.0f);
     }
 
     public static int sizeOf(Field field) {
@@ -224,27 +274,26 @@ public class SerializationUtils {
         return size;
     }
 
+    /**
+     * @deprecated fields are made accessible once by their {@link ClassPlan}; there is no need to
+     * prepare them before every access. Final instance fields are writable through an accessible
+     * field, so the modifiers are left untouched.
+     */
+    @Deprecated
     public static <T> void arrangeField(Field field, T obj) throws NoSuchFieldException, IllegalAccessException {
         field.setAccessible(true);
-        Field modifiersField = Field.class.getDeclaredField("modifiers");
-        modifiersField.setAccessible(true);
-        modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
     }
 
+    /**
+     * @deprecated see {@link #arrangeField(Field, Object)}.
+     */
+    @Deprecated
     public static void houseKeeping(Field field) throws IllegalAccessException, NoSuchFieldException {
         field.setAccessible(false);
     }
 
     public static <T> int calculateNonPrimitiveArraySize(T[] objects) {
-        final Field[] fields = getAllFields(objects[0]);
-        final int sizeOfSingleObject = SerializationUtils.calculateSize(fields, objects[0]);
-
-        int totalSize = objects.length + 4;
-        for (T object : objects) {
-            if (object != null)
-                totalSize += sizeOfSingleObject;
-        }
-        return totalSize;
+        return 4 + sizeOfElements(objects);
     }
 
     protected static boolean skipField(Field field) {
@@ -258,102 +307,151 @@ public class SerializationUtils {
         if (!SerializationUtils.enumTypes.containsKey(type)) {
             throw new IllegalArgumentException("Must be a primitive array");
         }
-        final ByteBuffer byteBuffer;
-        int size = sizes.get(type);
+        if (type == byte[].class)
+            return (byte[]) obj;
+        final OutputBuffer outputBuffer = new OutputBuffer(Array.getLength(obj) * sizes.get(type));
         switch (SerializationUtils.enumTypes.get(type)) {
             case INT: {
                 int[] array = (int[]) obj;
-                byteBuffer = ByteBuffer.allocate(array.length*size);
-                for (int i : array) { byteBuffer.putInt(i); }
-                return byteBuffer.array();
+                outputBuffer.putInts(array, 0, array.length);
+                break;
             }
             case LONG: {
                 long[] array = (long[]) obj;
-                byteBuffer = ByteBuffer.allocate(array.length*size);
-                for (long l : array) {
-                    byteBuffer.putLong(l);
-                }
-                return byteBuffer.array();
+                outputBuffer.putLongs(array, 0, array.length);
+                break;
             }
             case SHORT: {
                 short[] array = (short[]) obj;
-                byteBuffer = ByteBuffer.allocate(array.length*size);
-                for (short s : array) { byteBuffer.putShort(s); }
-                return byteBuffer.array();
+                outputBuffer.putShorts(array, 0, array.length);
+                break;
             }
             case BOOLEAN: {
                 boolean[] array = (boolean[]) obj;
-                byteBuffer = ByteBuffer.allocate(array.length*size);
                 for (boolean b : array) {
-                    byteBuffer.put((byte) (b ? 1 : 0));
+                    outputBuffer.put((byte) (b ? 1 : 0));
                 }
-                return byteBuffer.array();
-            }
-            case BYTE: {
-                byte[] array = (byte[])obj;
-                return array;
+                break;
             }
             case CHAR: {
                 char[] array = (char[]) obj;
-                byteBuffer = ByteBuffer.allocate(array.length*size);
-                for (char c : array) {byteBuffer.putChar(c);}
-                return byteBuffer.array();
+                outputBuffer.putChars(array, 0, array.length);
+                break;
             }
             case FLOAT: {
                 float[] array = (float[])obj;
-                byteBuffer = ByteBuffer.allocate(array.length*size);
-                for (float s : array) { byteBuffer.putFloat(s); }
-                return byteBuffer.array();
+                outputBuffer.putFloats(array, 0, array.length);
+                break;
             }
             case DOUBLE: {
                 double[] array = (double[])obj;
-                byteBuffer = ByteBuffer.allocate(array.length*size);
-                for (double d : array) { byteBuffer.putDouble(d); }
-                return byteBuffer.array();
+                outputBuffer.putDoubles(array, 0, array.length);
+                break;
             }
         }
-        return null;
+        return outputBuffer.toByteArray();
     }
 
     protected static void fromBytes(byte[] data, int[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.getInt();}
+        getInts(ByteBuffer.wrap(data), preAllocatedValues, 0, preAllocatedValues.length);
     }
 
     protected static void fromBytes(byte[] data, long[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.getLong();}
+        getLongs(ByteBuffer.wrap(data), preAllocatedValues, 0, preAllocatedValues.length);
     }
 
     protected static void fromBytes(byte[] data, short[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.getShort();}
+        getShorts(ByteBuffer.wrap(data), preAllocatedValues, 0, preAllocatedValues.length);
     }
 
     protected static void fromBytes(byte[] data, char[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.getChar();}
+        getChars(ByteBuffer.wrap(data), preAllocatedValues, 0, preAllocatedValues.length);
     }
 
     protected static void fromBytes(byte[] data, boolean[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.get() == 1;}
+        getBooleans(ByteBuffer.wrap(data), preAllocatedValues, 0, preAllocatedValues.length);
     }
 
     protected static void fromBytes(byte[] data, byte[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.get(); }
+        System.arraycopy(data, 0, preAllocatedValues, 0, preAllocatedValues.length);
     }
 
     protected static void fromBytes(byte[] data, double[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.getDouble(); }
-
+        getDoubles(ByteBuffer.wrap(data), preAllocatedValues, 0, preAllocatedValues.length);
     }
 
     public static void fromBytes(byte[] data, float[] preAllocatedValues) {
-        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        for (int i = 0; i<preAllocatedValues.length; i++) { preAllocatedValues[i] = byteBuffer.getFloat(); }
+        getFloats(ByteBuffer.wrap(data), preAllocatedValues, 0, preAllocatedValues.length);
+    }
+
+    /*
+     * Bulk reads through a view of the buffer, in its byte order. The position of the buffer only
+     * moves once all the values have been read, so a short buffer throws a
+     * BufferUnderflowException and is left as it was.
+     */
+
+    static void getInts(ByteBuffer byteBuffer, int[] values, int offset, int length) {
+        byteBuffer.asIntBuffer().get(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 4);
+    }
+
+    static void getLongs(ByteBuffer byteBuffer, long[] values, int offset, int length) {
+        byteBuffer.asLongBuffer().get(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 8);
+    }
+
+    static void getShorts(ByteBuffer byteBuffer, short[] values, int offset, int length) {
+        byteBuffer.asShortBuffer().get(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 2);
+    }
+
+    static void getChars(ByteBuffer byteBuffer, char[] values, int offset, int length) {
+        byteBuffer.asCharBuffer().get(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 2);
+    }
+
+    static void getFloats(ByteBuffer byteBuffer, float[] values, int offset, int length) {
+        byteBuffer.asFloatBuffer().get(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 4);
+    }
+
+    static void getDoubles(ByteBuffer byteBuffer, double[] values, int offset, int length) {
+        byteBuffer.asDoubleBuffer().get(values, offset, length);
+        byteBuffer.position(byteBuffer.position() + length * 8);
+    }
+
+    static void getBooleans(ByteBuffer byteBuffer, boolean[] values, int offset, int length) {
+        if (byteBuffer.remaining() < length)
+            throw new BufferUnderflowException();
+        for (int i = offset; i < offset + length; i++) { values[i] = byteBuffer.get() == 1; }
+    }
+
+    /**
+     * Reads an unsigned varint written by {@link OutputBuffer#putVarInt(int)}.
+     */
+    static int getVarInt(ByteBuffer byteBuffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = byteBuffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Reads an unsigned varint written by {@link OutputBuffer#putVarLong(long)}.
+     */
+    static long getVarLong(ByteBuffer byteBuffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = byteBuffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
     }
 
     private static Map<Class, Field[]> classToFieldMap = new WeakHashMap<>();
@@ -389,29 +487,190 @@ public class SerializationUtils {
 
     }
 
+    protected static void putPrimitiveWrapper(OutputBuffer byteBuffer, PrimitiveType primitiveType, Object value) {
+        switch (primitiveType) {
+            case INT:
+                byteBuffer.putInt((Integer) value);
+                return;
+            case SHORT:
+                byteBuffer.putShort((Short) value);
+                return;
+            case LONG:
+                byteBuffer.putLong((Long) value);
+                return;
+            case FLOAT:
+                byteBuffer.putFloat((Float) value);
+                return;
+            case BOOLEAN:
+                byteBuffer.put((byte) ((Boolean) value ? 1 : 0));
+                return;
+            case BYTE:
+                byteBuffer.put((Byte) value);
+                return;
+            case CHAR:
+                byteBuffer.putChar((Character) value);
+                return;
+            case DOUBLE:
+                byteBuffer.putDouble((Double) value);
+                return;
+        }
+    }
+
     protected static <T> T instantiatePrimitiveWrapper(Class<T> clazz, ByteBuffer byteBuffer) throws InvocationTargetException, IllegalAccessException {
-        Method valueOfMethod = primitiveWrappers.get(clazz);
-        Class parameterType = valueOfMethod.getParameterTypes()[0];
-        PrimitiveType enumType = enumTypes.get(parameterType);
-        switch (enumType) {
+        return (T) getPrimitiveWrapper(byteBuffer, ClassPlan.of(clazz).boxedType);
+    }
+
+    /**
+     * Reads a boxed primitive of the given type, boxing it with valueOf directly rather than
+     * reflectively.
+     */
+    protected static Object getPrimitiveWrapper(ByteBuffer byteBuffer, PrimitiveType primitiveType) {
+        switch (primitiveType) {
             case INT:
-                return (T) valueOfMethod.invoke(null, byteBuffer.getInt());
+                return byteBuffer.getInt();
             case SHORT:
-                return (T) valueOfMethod.invoke(null, byteBuffer.getShort());
+                return byteBuffer.getShort();
             case LONG:
-                return (T) valueOfMethod.invoke(null, byteBuffer.getLong());
+                return byteBuffer.getLong();
             case FLOAT:
-                return (T) valueOfMethod.invoke(null, byteBuffer.getFloat());
+                return byteBuffer.getFloat();
             case BOOLEAN:
-                return (T) valueOfMethod.invoke(null, byteBuffer.get() == 1);
+                return byteBuffer.get() == 1;
             case BYTE:
-                return (T) valueOfMethod.invoke(null, byteBuffer.get());
+                return byteBuffer.get();
             case CHAR:
-                return (T) valueOfMethod.invoke(null, byteBuffer.getChar());
+                return byteBuffer.getChar();
+            case DOUBLE:
+                return byteBuffer.getDouble();
+            default:
+                throw new IllegalArgumentException(primitiveType.toString());
+        }
+    }
+
+    /**
+     * Copies boxed values of the given type into a new primitive array.
+     *
+     * @return the array, or null if one of the values is null
+     */
+    protected static Object unbox(Collection values, PrimitiveType primitiveType) {
+        final int size = values.size();
+        final Iterator iterator = values.iterator();
+        switch (primitiveType) {
+            case INT: {
+                final int[] array = new int[size];
+                for (int i = 0; i < size; i++) {
+                    final Integer value = (Integer) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            case LONG: {
+                final long[] array = new long[size];
+                for (int i = 0; i < size; i++) {
+                    final Long value = (Long) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            case SHORT: {
+                final short[] array = new short[size];
+                for (int i = 0; i < size; i++) {
+                    final Short value = (Short) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            case CHAR: {
+                final char[] array = new char[size];
+                for (int i = 0; i < size; i++) {
+                    final Character value = (Character) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            case BYTE: {
+                final byte[] array = new byte[size];
+                for (int i = 0; i < size; i++) {
+                    final Byte value = (Byte) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            case BOOLEAN: {
+                final boolean[] array = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    final Boolean value = (Boolean) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            case FLOAT: {
+                final float[] array = new float[size];
+                for (int i = 0; i < size; i++) {
+                    final Float value = (Float) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            case DOUBLE: {
+                final double[] array = new double[size];
+                for (int i = 0; i < size; i++) {
+                    final Double value = (Double) iterator.next();
+                    if (value == null)
+                        return null;
+                    array[i] = value;
+                }
+                return array;
+            }
+            default:
+                throw new IllegalArgumentException(primitiveType.toString());
+        }
+    }
+
+    /**
+     * Adds the values of a primitive array, boxed, to the collection.
+     */
+    protected static void addBoxed(Collection values, Object array) {
+        switch (enumTypes.get(array.getClass())) {
+            case INT:
+                for (int value : (int[]) array) { values.add(value); }
+                return;
+            case LONG:
+                for (long value : (long[]) array) { values.add(value); }
+                return;
+            case SHORT:
+                for (short value : (short[]) array) { values.add(value); }
+                return;
+            case CHAR:
+                for (char value : (char[]) array) { values.add(value); }
+                return;
+            case BYTE:
+                for (byte value : (byte[]) array) { values.add(value); }
+                return;
+            case BOOLEAN:
+                for (boolean value : (boolean[]) array) { values.add(value); }
+                return;
+            case FLOAT:
+                for (float value : (float[]) array) { values.add(value); }
+                return;
             case DOUBLE:
-                return (T)valueOfMethod.invoke(null, byteBuffer.getDouble());
+                for (double value : (double[]) array) { values.add(value); }
+                return;
         }
-        return null;
     }
 
 }
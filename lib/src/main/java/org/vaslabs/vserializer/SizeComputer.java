@@ -1,100 +1,65 @@
 package org.vaslabs.vserializer;
 
 import java.lang.reflect.Field;
-import java.util.HashSet;
-import java.util.Set;
-
-import static org.vaslabs.vserializer.SerializationUtils.arrangeField;
-import static org.vaslabs.vserializer.SerializationUtils.getAllFields;
-import static org.vaslabs.vserializer.SerializationUtils.sizeOf;
 
 /**
  * Created by vnicolaou on 22/05/16.
  */
 public class SizeComputer {
 
-    private Set<Integer> seenSet;
-    int size = 4;
+    private final IdentityTable identities;
+    int size;
     public SizeComputer(Object obj) {
-        seenSet = new HashSet<Integer>();
-        seenSet.add(System.identityHashCode(obj));
-    }
-
-    private SizeComputer() {
-        size = 0;
-        seenSet = new HashSet<Integer>();
+        identities = new IdentityTable();
+        size = OutputBuffer.varIntSize(identities.add(obj));
     }
 
+    /**
+     * @deprecated the fields argument is ignored: the size is computed from the {@link ClassPlan}
+     * of obj's class. Use {@link #calculateSize(ClassPlan, Object)}.
+     */
+    @Deprecated
     public int calculateSize(Field[] fields, Object obj) {
-        for (Field field : fields) {
-            if (SerializationUtils.skipField(field))
-                continue;
-            if (field.getType().isArray()) {
-                size += 4 + SerializationUtils.sizeOfArray(field, obj);
-                continue;
-            }
-            else if (!field.getType().isPrimitive()) {
-                if (seen(field, obj)) {
-                    size += 4;
-                    continue;
-                }
-                if (field.getType().equals(String.class)) {
-                    try {
-                        try {
-                            arrangeField(field, obj);
-                        } catch (NoSuchFieldException e) {
-                            e.printStackTrace();
-                        }
-                        String string = (String) field.get(obj);
-                        if (string == null)
-                            size += 4;
-                        else
-                            size += 4 + string.length()*2;
-                        continue;
-                    } catch (IllegalAccessException e) {
-                        return 0;
-                    }
-                }
-                if (field.getType().isEnum())
-                    size +=1;
-                else
-                    size += 4;
-                try {
-                    arrangeField(field, obj);
-                    final Object newObj = field.get(obj);
-                    if (newObj != null && !newObj.getClass().getEnclosingClass().isEnum()) {
-                        SizeComputer sizeComputer = new SizeComputer();
-                        size += sizeComputer.calculateSize(getAllFields(newObj), newObj);
-                    }
-                } catch (Exception e) {
+        return calculateSize(ClassPlan.of(obj.getClass()), obj);
+    }
 
-                }
-            } else {
-                size += sizeOf(field);
-            }
+    public int calculateSize(ClassPlan plan, Object obj) {
+        try {
+            size += sizeOfFields(plan, obj);
+        } catch (IllegalAccessException e) {
+            return 0;
         }
         return size;
     }
 
-    private boolean seen(Field field, Object obj) {
-        Object fieldObject = null;
-        try {
-            arrangeField(field, obj);
-            fieldObject = field.get(obj);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    private int sizeOfFields(ClassPlan plan, Object obj) throws IllegalAccessException {
+        int fieldsSize = plan.fixedFieldsSize();
+        for (FieldPlan fieldPlan : plan.variableFields()) {
+            fieldsSize += sizeOf(fieldPlan, obj);
         }
-        final int objectReference;
-        if (fieldObject == null)
-            objectReference = 0;
-        else
-            objectReference = System.identityHashCode(fieldObject);
-
-        if (this.seenSet.contains(objectReference))
-            return true;
-        seenSet.add(objectReference);
-        return false;
+        return fieldsSize;
     }
 
+    private int sizeOf(FieldPlan fieldPlan, Object obj) throws IllegalAccessException {
+        switch (fieldPlan.kind) {
+            case STRING:
+                return SerializationUtils.sizeOfString((String) fieldPlan.accessor.get(obj));
+            case PRIMITIVE_ARRAY:
+            case OBJECT_ARRAY:
+                return 4 + SerializationUtils.sizeOfArray(fieldPlan, obj);
+            case COLLECTION:
+            case MAP:
+                return SerializationUtils.sizeOf(fieldPlan, obj);
+            default: {
+                final Object newObj = fieldPlan.accessor.get(obj);
+                if (newObj == null)
+                    return OutputBuffer.varIntSize(IdentityTable.ABSENT);
+                final int handle = identities.get(newObj);
+                if (handle != IdentityTable.ABSENT)
+                    return OutputBuffer.varIntSize(handle);
+                return OutputBuffer.varIntSize(identities.add(newObj)) + sizeOfFields(ClassPlan.of(newObj.getClass()), newObj);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,59 @@
+package org.vaslabs.vserializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An output that writes its bytes to a stream whenever its fixed size chunk fills up, instead of
+ * growing, so the memory it holds stays bounded however much is written through it.
+ */
+class StreamOutputBuffer extends OutputBuffer {
+
+    static final int CHUNK_SIZE = 8192;
+
+    private final OutputStream outputStream;
+
+    StreamOutputBuffer(OutputStream outputStream, ByteOrder byteOrder) {
+        super(CHUNK_SIZE, byteOrder);
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream.
+     */
+    void flush() throws IOException {
+        ByteBuffer byteBuffer = byteBuffer();
+        outputStream.write(byteBuffer.array(), byteBuffer.arrayOffset(), byteBuffer.position());
+        byteBuffer.clear();
+    }
+
+    /**
+     * Empties the chunk into the stream, and only grows it for a single value larger than the chunk.
+     */
+    @Override
+    protected void grow(int bytes) {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new StreamException(e);
+        }
+        if (byteBuffer().remaining() < bytes)
+            super.grow(bytes);
+    }
+
+    /**
+     * Carries an {@link IOException} out of the put methods, which cannot throw it.
+     */
+    static final class StreamException extends RuntimeException {
+        StreamException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
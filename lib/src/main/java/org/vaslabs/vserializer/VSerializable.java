@@ -0,0 +1,19 @@
+package org.vaslabs.vserializer;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the vserializer annotation processor generates a {@link ClassCodec}
+ * at compile time. Serializers find the generated codec on their own and use it instead of
+ * reflection; the wire layout stays the one of {@link AlphabeticalSerializer}.
+ * <p>
+ * Serializable fields of an annotated class must not be private or final, and the class needs a
+ * no-arg constructor.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface VSerializable {
+}
@@ -1,5 +1,6 @@
 package org.vaslabs.vserializer;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -9,12 +10,16 @@ public interface VSerializer {
 
     <T> byte[] serialize(T obj);
 
+    <T> int serialize(T obj, ByteBuffer byteBuffer);
+
     <T> byte[] serialize(List<T> list);
 
     <T> byte[] serialize(T[] objects);
 
     <T> T deserialise(byte[] data, Class<T> clazz);
 
+    <T> T deserialise(ByteBuffer byteBuffer, Class<T> clazz);
+
 
     <T> List<T> deserialise(byte[] data, Class<List> listClass, Class<T> parametarizedClass);
 }
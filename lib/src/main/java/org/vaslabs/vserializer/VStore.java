@@ -0,0 +1,446 @@
+package org.vaslabs.vserializer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persistent key value store. Values are serialized straight into memory mapped segment files,
+ * which are only ever appended to, and read back straight from the mapped regions. An in memory
+ * hash index maps every key to the location of its latest record, so reads take a single lookup.
+ * <p>
+ * Overwritten and removed records stay in their segment until it is compacted: once more than half
+ * of the bytes written are garbage, the live records of the older segments are copied to the end of
+ * the log in the background, one segment at a time, and the emptied segment files are deleted.
+ * A background compaction that fails is reported by the next call to put, remove or flush, and
+ * is tried again once more garbage has been written.
+ * <p>
+ * Every record is a type byte, the lengths of the key and the value, then the serialized key and
+ * value. The type byte is written last, so a record cut short by a crash reads as the end of its
+ * segment. The index is rebuilt by scanning the segments when the store is opened.
+ * <p>
+ * Keys are compared with {@link Object#equals(Object)} and neither keys nor values may be null.
+ * All the methods are thread safe.
+ */
+public class VStore<K, V> implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4 << 20;
+
+    static final byte END = 0;
+    static final byte PUT = 1;
+    static final byte REMOVAL = 2;
+    static final int HEADER_SIZE = 9;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".vlog";
+
+    private final File directory;
+    private final Class<K> keyType;
+    private final Class<V> valueType;
+    private final AlphabeticalSerializer serializer;
+    private final int segmentSize;
+    private final KeyIndex<K> index = new KeyIndex<>();
+    private final Map<Integer, Segment> segments = new HashMap<>();
+    private Segment activeSegment;
+    private long writtenBytes;
+    private long deadBytes;
+    private ExecutorService compactionExecutor;
+    private boolean compactionScheduled;
+    private IOException compactionFailure;
+    private boolean closed;
+
+    public VStore(File directory, Class<K> keyType, Class<V> valueType) throws IOException {
+        this(directory, keyType, valueType, new AlphabeticalSerializer(), DEFAULT_SEGMENT_SIZE);
+    }
+
+    public VStore(File directory, Class<K> keyType, Class<V> valueType, AlphabeticalSerializer serializer, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE)
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        this.directory = directory;
+        this.keyType = keyType;
+        this.valueType = valueType;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        recover();
+    }
+
+    public synchronized V get(K key) {
+        checkOpen();
+        final long location = index.get(key);
+        if (location == KeyIndex.ABSENT)
+            return null;
+        final Segment segment = segments.get(segmentOf(location));
+        final int offset = offsetOf(location);
+        final int keyLength = segment.buffer.getInt(offset + 1);
+        final int valueLength = segment.buffer.getInt(offset + 5);
+        final int valueOffset = offset + HEADER_SIZE + keyLength;
+        ByteBuffer value = segment.buffer.duplicate();
+        value.limit(valueOffset + valueLength);
+        value.position(valueOffset);
+        return serializer.deserialise(value, valueType);
+    }
+
+    public synchronized boolean containsKey(K key) {
+        checkOpen();
+        return index.get(key) != KeyIndex.ABSENT;
+    }
+
+    /**
+     * The number of keys in the store.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @throws IOException if the record cannot be written, or if the last background compaction
+     * failed
+     */
+    public synchronized void put(K key, V value) throws IOException {
+        checkOpen();
+        throwCompactionFailure();
+        if (key == null || value == null)
+            throw new NullPointerException("Keys and values cannot be null");
+        final long location = append(PUT, key, value);
+        discard(index.put(key, location));
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * @return true if the key was in the store
+     */
+    public synchronized boolean remove(K key) throws IOException {
+        checkOpen();
+        throwCompactionFailure();
+        final long location = index.get(key);
+        if (location == KeyIndex.ABSENT)
+            return false;
+        final long removalLocation = append(REMOVAL, key, null);
+        discard(index.remove(key));
+        discard(removalLocation);
+        scheduleCompactionIfNeeded();
+        return true;
+    }
+
+    /**
+     * Writes the mapped segments through to the disk.
+     *
+     * @throws IOException if the last background compaction failed
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        throwCompactionFailure();
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Copies the live records of every segment but the one being written to the end of the log and
+     * deletes the segments, oldest first. Each segment is compacted under the lock of the store,
+     * so reads and writes go on between segments.
+     */
+    public void compact() throws IOException {
+        try {
+            for (Integer segmentId : segmentsToCompact()) {
+                synchronized (this) {
+                    if (closed)
+                        return;
+                    Segment segment = segments.get(segmentId);
+                    if (segment != null)
+                        compact(segment);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                compactionScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Waits for a running compaction to finish, flushes and releases the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        ExecutorService executor;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            executor = compactionExecutor;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.file.close();
+            }
+            segments.clear();
+        }
+    }
+
+    /**
+     * Throws the failure of the last background compaction, once.
+     */
+    private void throwCompactionFailure() throws IOException {
+        final IOException failure = compactionFailure;
+        if (failure == null)
+            return;
+        compactionFailure = null;
+        throw new IOException("Background compaction failed", failure);
+    }
+
+    private synchronized void compactionFailed(Exception e) {
+        compactionFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("The store is closed");
+    }
+
+    private long append(byte type, K key, V value) throws IOException {
+        final int offset = activeSegment.position;
+        if (activeSegment.buffer.capacity() - offset >= HEADER_SIZE) {
+            ByteBuffer record = activeSegment.buffer.duplicate();
+            record.position(offset + HEADER_SIZE);
+            try {
+                final int keyLength = serializer.serialize(key, record);
+                final int valueLength = value == null ? 0 : serializer.serialize(value, record);
+                return commit(activeSegment, offset, type, keyLength, valueLength);
+            } catch (BufferOverflowException e) {
+                // does not fit in what is left of the segment
+            }
+        }
+        return appendToNewSegment(type, serializer.serialize(key), value == null ? new byte[0] : serializer.serialize(value));
+    }
+
+    private long appendToNewSegment(byte type, byte[] key, byte[] value) throws IOException {
+        roll(HEADER_SIZE + key.length + value.length);
+        final int offset = activeSegment.position;
+        ByteBuffer record = activeSegment.buffer.duplicate();
+        record.position(offset + HEADER_SIZE);
+        record.put(key);
+        record.put(value);
+        return commit(activeSegment, offset, type, key.length, value.length);
+    }
+
+    /**
+     * Completes a record whose key and value have been written: marks the end of the segment after
+     * it, so bytes left over by an interrupted write are never read as a record, then writes its
+     * header, type byte last.
+     */
+    private long commit(Segment segment, int offset, byte type, int keyLength, int valueLength) {
+        final int recordSize = HEADER_SIZE + keyLength + valueLength;
+        if (offset + recordSize < segment.buffer.capacity())
+            segment.buffer.put(offset + recordSize, END);
+        segment.buffer.putInt(offset + 1, keyLength);
+        segment.buffer.putInt(offset + 5, valueLength);
+        segment.buffer.put(offset, type);
+        segment.position = offset + recordSize;
+        writtenBytes += recordSize;
+        return locationOf(segment.id, offset);
+    }
+
+    /**
+     * Accounts for the record at the given location as garbage.
+     */
+    private void discard(long location) {
+        if (location == KeyIndex.ABSENT)
+            return;
+        final Segment segment = segments.get(segmentOf(location));
+        final int recordSize = recordSize(segment.buffer, offsetOf(location));
+        segment.deadBytes += recordSize;
+        deadBytes += recordSize;
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (compactionScheduled || deadBytes * 2 <= writtenBytes || deadBytes < segmentSize)
+            return;
+        compactionScheduled = true;
+        if (compactionExecutor == null)
+            compactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "VStore compaction");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        compactionExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    compactionFailed(e);
+                }
+            }
+        });
+    }
+
+    private synchronized List<Integer> segmentsToCompact() {
+        List<Integer> segmentIds = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment != activeSegment && segment.deadBytes > 0)
+                segmentIds.add(segment.id);
+        }
+        Collections.sort(segmentIds);
+        return segmentIds;
+    }
+
+    /**
+     * Copies the records the index still points at to the end of the log and deletes the segment.
+     * Removal records are dropped: the records they shadow are in older segments, which have been
+     * compacted already.
+     */
+    private void compact(Segment segment) throws IOException {
+        final ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset <= segment.position - HEADER_SIZE && buffer.get(offset) != END) {
+            final int recordSize = recordSize(buffer, offset);
+            if (buffer.get(offset) == PUT) {
+                final K key = readKey(buffer, offset);
+                if (index.get(key) == locationOf(segment.id, offset)) {
+                    if (activeSegment.buffer.capacity() - activeSegment.position < recordSize)
+                        roll(recordSize);
+                    final int copyOffset = activeSegment.position;
+                    ByteBuffer record = buffer.duplicate();
+                    record.limit(offset + recordSize);
+                    record.position(offset + HEADER_SIZE);
+                    ByteBuffer copy = activeSegment.buffer.duplicate();
+                    copy.position(copyOffset + HEADER_SIZE);
+                    copy.put(record);
+                    final int keyLength = buffer.getInt(offset + 1);
+                    index.put(key, commit(activeSegment, copyOffset, PUT, keyLength, recordSize - HEADER_SIZE - keyLength));
+                }
+            }
+            offset += recordSize;
+        }
+        writtenBytes -= segment.position;
+        deadBytes -= segment.deadBytes;
+        segments.remove(segment.id);
+        activeSegment.buffer.force();
+        segment.file.close();
+        if (!segmentFile(segment.id).delete())
+            throw new IOException("Cannot delete " + segmentFile(segment.id));
+    }
+
+    private void roll(int recordSize) throws IOException {
+        final int segmentId = activeSegment == null ? 0 : activeSegment.id + 1;
+        activeSegment = openSegment(segmentId, Math.max(segmentSize, recordSize));
+        segments.put(segmentId, activeSegment);
+    }
+
+    /**
+     * Maps the existing segments in order and replays their records into the index.
+     */
+    private void recover() throws IOException {
+        String[] names = directory.list();
+        List<Integer> segmentIds = new ArrayList<>();
+        for (String name : names == null ? new String[0] : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                segmentIds.add(Integer.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+        }
+        Collections.sort(segmentIds);
+        for (Integer segmentId : segmentIds) {
+            Segment segment = openSegment(segmentId, 0);
+            segments.put(segmentId, segment);
+            activeSegment = segment;
+            replay(segment);
+        }
+        if (activeSegment == null)
+            roll(segmentSize);
+    }
+
+    private void replay(Segment segment) {
+        final ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset <= buffer.capacity() - HEADER_SIZE && buffer.get(offset) != END) {
+            final byte type = buffer.get(offset);
+            final int recordSize = recordSize(buffer, offset);
+            final K key = readKey(buffer, offset);
+            segment.position = offset + recordSize;
+            writtenBytes += recordSize;
+            final long location = locationOf(segment.id, offset);
+            if (type == PUT) {
+                discard(index.put(key, location));
+            } else {
+                discard(index.remove(key));
+                discard(location);
+            }
+            offset += recordSize;
+        }
+    }
+
+    private K readKey(ByteBuffer buffer, int offset) {
+        ByteBuffer key = buffer.duplicate();
+        key.limit(offset + HEADER_SIZE + buffer.getInt(offset + 1));
+        key.position(offset + HEADER_SIZE);
+        return serializer.deserialise(key, keyType);
+    }
+
+    private Segment openSegment(int segmentId, int size) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segmentFile(segmentId), "rw");
+        final long length = Math.max(file.length(), size);
+        MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        return new Segment(segmentId, file, buffer);
+    }
+
+    private File segmentFile(int segmentId) {
+        return new File(directory, SEGMENT_PREFIX + String.format("%08d", segmentId) + SEGMENT_SUFFIX);
+    }
+
+    private static int recordSize(ByteBuffer buffer, int offset) {
+        return HEADER_SIZE + buffer.getInt(offset + 1) + buffer.getInt(offset + 5);
+    }
+
+    private static long locationOf(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    private static final class Segment {
+        final int id;
+        final RandomAccessFile file;
+        final MappedByteBuffer buffer;
+        int position;
+        long deadBytes;
+
+        Segment(int id, RandomAccessFile file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
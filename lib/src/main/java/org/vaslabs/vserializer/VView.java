@@ -0,0 +1,160 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads single fields of a serialized object straight from its bytes, without creating the object.
+ * Fields are written in alphabetical order, so every primitive and enum field that no string,
+ * array or nested object comes before sits at the same offset in every instance; those are the
+ * fields a view can read.
+ * <p>
+ * A view is a flyweight: it is pointed at one serialized instance after another with
+ * {@link #wrap(ByteBuffer)} and is not safe to share between threads. Looking fields up by index,
+ * with the index from {@link #fieldIndex(String)}, skips the name lookup on every read.
+ */
+public class VView<T> {
+
+    private final ClassPlan plan;
+    private final ByteOrder byteOrder;
+    private final int minimumSize;
+    private ByteBuffer byteBuffer;
+    private int start;
+
+    VView(Class<T> type, ByteOrder byteOrder) {
+        this.plan = ClassPlan.of(type);
+        if (plan.isValueType() || type.isArray())
+            throw new IllegalArgumentException(type + " has no fields to view");
+        this.byteOrder = byteOrder;
+        int size = 0;
+        for (int i = 0; i < plan.getFieldCount(); i++) {
+            final int offset = plan.fieldOffset(i);
+            if (offset >= 0)
+                size = offset + sizeOf(plan.getField(i));
+        }
+        this.minimumSize = size;
+    }
+
+    public VView<T> wrap(byte[] data) {
+        return wrap(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Points the view at the instance serialized at the position of the buffer. The buffer itself
+     * is not moved, and the view reads it until it is pointed somewhere else.
+     *
+     * @throws IllegalArgumentException if fewer bytes remain than the fields at fixed offsets take
+     */
+    public VView<T> wrap(ByteBuffer byteBuffer) {
+        if (byteBuffer.remaining() < minimumSize)
+            throw new IllegalArgumentException(byteBuffer.remaining() + " bytes are too few for " + plan.type);
+        this.byteBuffer = byteBuffer.order() == byteOrder ? byteBuffer : byteBuffer.duplicate().order(byteOrder);
+        this.start = byteBuffer.position();
+        return this;
+    }
+
+    /**
+     * @return the index of the field, to be passed to the typed getters
+     * @throws IllegalArgumentException if the class has no such field or it has no fixed offset
+     */
+    public int fieldIndex(String name) {
+        final int index = plan.fieldIndex(name);
+        if (index < 0)
+            throw new IllegalArgumentException(plan.type + " has no field " + name);
+        if (plan.fieldOffset(index) < 0)
+            throw new IllegalArgumentException(name + " has no fixed offset in " + plan.type);
+        return index;
+    }
+
+    public int getInt(String name) {
+        return getInt(fieldIndex(name));
+    }
+
+    public int getInt(int fieldIndex) {
+        return byteBuffer.getInt(offsetOf(fieldIndex, PrimitiveType.INT));
+    }
+
+    public long getLong(String name) {
+        return getLong(fieldIndex(name));
+    }
+
+    public long getLong(int fieldIndex) {
+        return byteBuffer.getLong(offsetOf(fieldIndex, PrimitiveType.LONG));
+    }
+
+    public short getShort(String name) {
+        return getShort(fieldIndex(name));
+    }
+
+    public short getShort(int fieldIndex) {
+        return byteBuffer.getShort(offsetOf(fieldIndex, PrimitiveType.SHORT));
+    }
+
+    public char getChar(String name) {
+        return getChar(fieldIndex(name));
+    }
+
+    public char getChar(int fieldIndex) {
+        return byteBuffer.getChar(offsetOf(fieldIndex, PrimitiveType.CHAR));
+    }
+
+    public byte getByte(String name) {
+        return getByte(fieldIndex(name));
+    }
+
+    public byte getByte(int fieldIndex) {
+        return byteBuffer.get(offsetOf(fieldIndex, PrimitiveType.BYTE));
+    }
+
+    public boolean getBoolean(String name) {
+        return getBoolean(fieldIndex(name));
+    }
+
+    public boolean getBoolean(int fieldIndex) {
+        return byteBuffer.get(offsetOf(fieldIndex, PrimitiveType.BOOLEAN)) == 1;
+    }
+
+    public float getFloat(String name) {
+        return getFloat(fieldIndex(name));
+    }
+
+    public float getFloat(int fieldIndex) {
+        return byteBuffer.getFloat(offsetOf(fieldIndex, PrimitiveType.FLOAT));
+    }
+
+    public double getDouble(String name) {
+        return getDouble(fieldIndex(name));
+    }
+
+    public double getDouble(int fieldIndex) {
+        return byteBuffer.getDouble(offsetOf(fieldIndex, PrimitiveType.DOUBLE));
+    }
+
+    public <E extends Enum<E>> E getEnum(String name) {
+        return this.<E>getEnum(fieldIndex(name));
+    }
+
+    /**
+     * @return the value of an enum field, or null
+     */
+    public <E extends Enum<E>> E getEnum(int fieldIndex) {
+        final FieldPlan fieldPlan = plan.getField(fieldIndex);
+        if (fieldPlan.kind != FieldPlan.Kind.ENUM)
+            throw new IllegalArgumentException(fieldPlan.getName() + " is not an enum");
+        final byte ordinal = byteBuffer.get(start + plan.fieldOffset(fieldIndex));
+        if (ordinal == -1)
+            return null;
+        return (E) fieldPlan.type.getEnumConstants()[ordinal];
+    }
+
+    private int offsetOf(int fieldIndex, PrimitiveType primitiveType) {
+        final FieldPlan fieldPlan = plan.getField(fieldIndex);
+        if (fieldPlan.kind != FieldPlan.Kind.PRIMITIVE || fieldPlan.primitiveType != primitiveType)
+            throw new IllegalArgumentException(fieldPlan.getName() + " is not of type " + primitiveType);
+        return start + plan.fieldOffset(fieldIndex);
+    }
+
+    private static int sizeOf(FieldPlan fieldPlan) {
+        return fieldPlan.kind == FieldPlan.Kind.ENUM ? 1 : fieldPlan.size;
+    }
+}
@@ -205,11 +205,11 @@ public class TestAlphabeticalSerializer {
         internalStrings.myOtherMessage = "My Other Message";
         internalStrings.myNumber = -255;
 
-        assertEquals(internalStrings.myMessage.length()*2 + internalStrings.myOtherMessage.length()*2 + 4 + 8,
+        assertEquals(internalStrings.myMessage.length() + internalStrings.myOtherMessage.length() + 2 + 4 + 8,
                 SerializationUtils.calculateSize(TestUtils.InternalStrings.class.getDeclaredFields(), internalStrings));
 
         byte[] data = vSerializer.serialize(internalStrings);
-        assertEquals(internalStrings.myMessage.length()*2 + internalStrings.myOtherMessage.length()*2 + 4 + 8, data.length);
+        assertEquals(internalStrings.myMessage.length() + internalStrings.myOtherMessage.length() + 2 + 4 + 8, data.length);
         TestUtils.InternalStrings recoveredInternalStrings = vSerializer.deserialise(data, TestUtils.InternalStrings.class);
         assertEquals(internalStrings.myMessage, recoveredInternalStrings.myMessage);
         assertEquals(internalStrings.myOtherMessage, recoveredInternalStrings.myOtherMessage);
@@ -0,0 +1,140 @@
+package org.vaslabs.vserializer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vaslabs.vserializer.processor.VSerializableProcessor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles a {@link VSerializable} class with the annotation processor and round-trips it through
+ * the codec that was generated for it.
+ */
+public class TestAnnotationProcessor {
+
+    private static final String SOURCE =
+            "package sample;\n" +
+            "\n" +
+            "import java.util.List;\n" +
+            "import java.util.concurrent.TimeUnit;\n" +
+            "\n" +
+            "@org.vaslabs.vserializer.VSerializable\n" +
+            "public class Sample {\n" +
+            "    public int count;\n" +
+            "    public long[] values;\n" +
+            "    public String name;\n" +
+            "    public List<String> tags;\n" +
+            "    public TimeUnit unit;\n" +
+            "    public boolean valid;\n" +
+            "}\n";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("processor", "");
+        directory.delete();
+        new File(directory, "sample").mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void test_generated_codec_round_trips() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("The tests must run on a JDK", compiler);
+        File sourceFile = new File(directory, "sample/Sample.java");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(sourceFile), "UTF-8");
+        try {
+            writer.write(SOURCE);
+        } finally {
+            writer.close();
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        List<String> options = Arrays.asList("-classpath", classPathOf(VSerializable.class), "-d", directory.getPath());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                fileManager.getJavaFileObjects(sourceFile));
+        task.setProcessors(Collections.singletonList(new VSerializableProcessor()));
+        boolean compiled = task.call();
+        fileManager.close();
+        assertTrue(diagnostics.getDiagnostics().toString(), compiled);
+        assertTrue(new File(directory, "sample/Sample_VCodec.class").isFile());
+
+        CompiledClassLoader classLoader = new CompiledClassLoader(directory, getClass().getClassLoader());
+        Class<?> type = classLoader.loadClass("sample.Sample");
+        Object sample = type.newInstance();
+        type.getField("count").setInt(sample, 7);
+        type.getField("values").set(sample, new long[] {1L, -2L});
+        type.getField("name").set(sample, "sample");
+        type.getField("tags").set(sample, Arrays.asList("a", "b"));
+        type.getField("unit").set(sample, TimeUnit.SECONDS);
+        type.getField("valid").setBoolean(sample, true);
+
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        byte[] data = vSerializer.serialize(sample);
+        assertNotNull(classLoader.loaded("sample.Sample_VCodec"));
+        byte[] reflectiveData = new ReferenceSensitiveAlphabeticalSerializer().serialize(sample);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(reflectiveData, 1, reflectiveData.length), data));
+
+        Object recovered = vSerializer.deserialise(data, type);
+        assertEquals(7, type.getField("count").getInt(recovered));
+        assertTrue(Arrays.equals(new long[] {1L, -2L}, (long[]) type.getField("values").get(recovered)));
+        assertEquals("sample", type.getField("name").get(recovered));
+        assertEquals(Arrays.asList("a", "b"), type.getField("tags").get(recovered));
+        assertEquals(TimeUnit.SECONDS, type.getField("unit").get(recovered));
+        assertTrue(type.getField("valid").getBoolean(recovered));
+    }
+
+    private static String classPathOf(Class type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files)
+                delete(child);
+        }
+        file.delete();
+    }
+
+    /**
+     * Loads the compiled classes and tells which of them were loaded.
+     */
+    private static class CompiledClassLoader extends URLClassLoader {
+
+        CompiledClassLoader(File directory, ClassLoader parent) throws IOException {
+            super(new URL[] {directory.toURI().toURL()}, parent);
+        }
+
+        Class<?> loaded(String name) {
+            return findLoadedClass(name);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestArrayStreams {
+
+    AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_streamed_array_has_the_array_format() throws IOException {
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        encapsulatedDatas[3] = null;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ArrayStreamWriter<TestUtils.EncapsulatedData> writer = new ArrayStreamWriter<>(vSerializer, outputStream, encapsulatedDatas.length);
+        writer.write(Arrays.asList(encapsulatedDatas).iterator());
+        writer.close();
+
+        assertTrue(Arrays.equals(vSerializer.serialize(encapsulatedDatas), outputStream.toByteArray()));
+    }
+
+    @Test
+    public void test_many_elements_are_read_back_one_at_a_time() throws IOException {
+        final int count = 100000;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ArrayStreamWriter<TestUtils.EncapsulatedData> writer = new ArrayStreamWriter<>(vSerializer, outputStream, count);
+        for (int i = 0; i < count; i++) {
+            TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+            encapsulatedData.a = i;
+            encapsulatedData.b = (short) i;
+            writer.write(i % 1000 == 0 ? null : encapsulatedData);
+        }
+        writer.close();
+
+        ArrayStreamReader<TestUtils.EncapsulatedData> reader =
+                new ArrayStreamReader<>(vSerializer, new TrickleInputStream(outputStream.toByteArray()), TestUtils.EncapsulatedData.class);
+        assertEquals(count, reader.size());
+        for (int i = 0; i < count; i++) {
+            TestUtils.EncapsulatedData encapsulatedData = reader.read();
+            if (i % 1000 == 0) {
+                assertNull(encapsulatedData);
+            } else {
+                assertEquals(i, encapsulatedData.a);
+                assertEquals((short) i, encapsulatedData.b);
+            }
+        }
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    @Test
+    public void test_elements_larger_than_the_window() throws IOException {
+        char[] characters = new char[ArrayStreamReader.WINDOW_SIZE];
+        Arrays.fill(characters, 'v');
+        String[] strings = new String[] {"a", new String(characters), null};
+        byte[] data = vSerializer.serialize(strings);
+
+        ArrayStreamReader<String> reader = new ArrayStreamReader<>(vSerializer, new ByteArrayInputStream(data), String.class);
+        assertEquals("a", reader.read());
+        assertEquals(strings[1], reader.read());
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void test_empty_and_truncated_streams() throws IOException {
+        ArrayStreamReader<String> reader = new ArrayStreamReader<>(vSerializer, new ByteArrayInputStream(new byte[0]), String.class);
+        assertFalse(reader.hasNext());
+
+        byte[] data = vSerializer.serialize(new String[] {"abc", "def"});
+        reader = new ArrayStreamReader<>(vSerializer, new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1)), String.class);
+        assertEquals("abc", reader.read());
+        try {
+            reader.read();
+            fail();
+        } catch (EOFException e) {
+        }
+    }
+
+    @Test
+    public void test_writer_checks_the_element_count() throws IOException {
+        ArrayStreamWriter<String> writer = new ArrayStreamWriter<>(vSerializer, new ByteArrayOutputStream(), 2);
+        writer.write("abc");
+        try {
+            writer.close();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    /**
+     * Hands out at most a few bytes per read, so elements straddle reads.
+     */
+    private static class TrickleInputStream extends FilterInputStream {
+        TrickleInputStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 7));
+        }
+    }
+}
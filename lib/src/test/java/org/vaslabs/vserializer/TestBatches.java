@@ -0,0 +1,132 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBatches {
+
+    private static TestUtils.EncapsulatedData encapsulatedData(long a) {
+        TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+        encapsulatedData.a = a;
+        return encapsulatedData;
+    }
+
+    private static byte[] batch(AlphabeticalSerializer vSerializer) {
+        BatchWriter batchWriter = new BatchWriter(vSerializer, TestUtils.EncapsulatedData.class, String.class, TimeUnit.class);
+        batchWriter.write(encapsulatedData(1));
+        batchWriter.write("first");
+        batchWriter.write(TimeUnit.HOURS);
+        batchWriter.write(encapsulatedData(2));
+        batchWriter.write("");
+        batchWriter.write("first");
+        assertEquals(6, batchWriter.size());
+        return batchWriter.toByteArray();
+    }
+
+    @Test
+    public void test_records_are_read_in_order() {
+        AlphabeticalSerializer[] serializers = new AlphabeticalSerializer[] {
+                new AlphabeticalSerializer(), new CompactAlphabeticalSerializer(), new DeduplicatingAlphabeticalSerializer()
+        };
+        for (AlphabeticalSerializer vSerializer : serializers) {
+            BatchReader batchReader = new BatchReader(vSerializer, batch(vSerializer), String.class, TimeUnit.class, TestUtils.EncapsulatedData.class);
+            assertSame(TestUtils.EncapsulatedData.class, batchReader.nextType());
+            assertEquals(1, ((TestUtils.EncapsulatedData) batchReader.read()).a);
+            assertEquals("first", batchReader.read());
+            assertSame(TimeUnit.HOURS, batchReader.read());
+            batchReader.skip();
+            assertEquals("", batchReader.read());
+            assertEquals("first", batchReader.read());
+            assertFalse(batchReader.hasNext());
+        }
+    }
+
+    @Test
+    public void test_other_records_are_skipped() {
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        BatchReader batchReader = new BatchReader(vSerializer, batch(vSerializer), TestUtils.EncapsulatedData.class);
+        assertNull(new BatchReader(vSerializer, batch(vSerializer), String.class).nextType());
+        List<TestUtils.EncapsulatedData> records = batchReader.readAll(TestUtils.EncapsulatedData.class);
+        assertEquals(2, records.size());
+        assertEquals(2, records.get(1).a);
+        assertFalse(batchReader.hasNext());
+
+        batchReader = new BatchReader(vSerializer, batch(vSerializer), TestUtils.EncapsulatedData.class);
+        batchReader.skip();
+        try {
+            batchReader.read();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertTrue(batchReader.hasNext());
+    }
+
+    @Test
+    public void test_only_registered_classes_are_written() {
+        BatchWriter batchWriter = new BatchWriter(new AlphabeticalSerializer(), String.class);
+        try {
+            batchWriter.write(TimeUnit.DAYS);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            batchWriter.write(null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new BatchWriter(new AlphabeticalSerializer(), String.class, String.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new BatchReader(new AlphabeticalSerializer(), new byte[] {0, 0, 0}, String.class).nextType();
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_records_are_written_and_read_through_the_serializer() {
+        MarkingSerializer vSerializer = new MarkingSerializer();
+        byte[] data = batch(vSerializer);
+        assertEquals(6, vSerializer.written);
+        BatchReader batchReader = new BatchReader(vSerializer, data, String.class, TimeUnit.class, TestUtils.EncapsulatedData.class);
+        assertEquals(1, ((TestUtils.EncapsulatedData) batchReader.read()).a);
+        assertEquals("first", batchReader.read());
+        assertEquals(2, vSerializer.read);
+    }
+
+    /**
+     * Writes a marker ahead of every record and checks it when reading.
+     */
+    private static class MarkingSerializer extends AlphabeticalSerializer {
+        private static final byte MARKER = 0x5a;
+        int written;
+        int read;
+
+        @Override
+        protected void writeRecord(OutputBuffer byteBuffer, ClassPlan plan, Object obj) throws IllegalAccessException {
+            byteBuffer.put(MARKER);
+            super.writeRecord(byteBuffer, plan, obj);
+            written++;
+        }
+
+        @Override
+        protected <T> T readRecord(ByteBuffer byteBuffer, Class<T> clazz) {
+            assertEquals(MARKER, byteBuffer.get());
+            read++;
+            return super.readRecord(byteBuffer, clazz);
+        }
+    }
+}
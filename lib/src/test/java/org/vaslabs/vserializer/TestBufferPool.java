@@ -0,0 +1,87 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBufferPool {
+
+    private final AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+
+    private static TestUtils.AllEncapsulatedData data(int value) {
+        TestUtils.AllEncapsulatedData allEncapsulatedData = new TestUtils.AllEncapsulatedData();
+        allEncapsulatedData.a = value;
+        allEncapsulatedData.b = value * 2;
+        allEncapsulatedData.aDouble = value / 2.0;
+        return allEncapsulatedData;
+    }
+
+    @Test
+    public void test_released_buffers_are_reused() {
+        TestUtils.AllEncapsulatedData allEncapsulatedData = data(3);
+        BufferLease lease = vSerializer.serializePooled(allEncapsulatedData);
+        byte[] array = lease.array();
+        assertTrue(Arrays.equals(vSerializer.serialize(allEncapsulatedData), lease.toByteArray()));
+        byte[] copy = lease.toByteArray();
+        lease.release();
+        lease.release();
+        try {
+            lease.array();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+
+        BufferLease nextLease = vSerializer.serializePooled(data(4));
+        assertSame(array, nextLease.array());
+        // a second lease taken while the first is held gets a buffer of its own
+        BufferLease concurrentLease = vSerializer.serializePooled(data(5));
+        assertNotSame(array, concurrentLease.array());
+        TestUtils.AllEncapsulatedData recoveredData = vSerializer.deserialise(nextLease.asByteBuffer(), TestUtils.AllEncapsulatedData.class);
+        assertEquals(4, recoveredData.a);
+        assertEquals(8, recoveredData.b);
+        concurrentLease.release();
+        nextLease.release();
+        assertEquals(3, vSerializer.deserialise(copy, TestUtils.AllEncapsulatedData.class).a);
+    }
+
+    @Test
+    public void test_serializing_to_a_sink() throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[][] arrays = new byte[2][];
+        for (int i = 0; i < 2; i++) {
+            final int call = i;
+            int written = vSerializer.serializeTo(data(i), new OutputSink() {
+                @Override
+                public void write(byte[] data, int offset, int length) {
+                    arrays[call] = data;
+                    outputStream.write(data, offset, length);
+                }
+            });
+            assertEquals(vSerializer.serialize(data(i)).length, written);
+        }
+        assertSame(arrays[0], arrays[1]);
+        byte[] data = outputStream.toByteArray();
+        int size = data.length / 2;
+        assertEquals(1, vSerializer.deserialise(Arrays.copyOfRange(data, size, data.length), TestUtils.AllEncapsulatedData.class).a);
+    }
+
+    @Test
+    public void test_large_buffers_are_not_kept() {
+        int[] numbers = new int[BufferPool.MAX_POOLED_CAPACITY / 2];
+        BufferLease lease = vSerializer.serializePooled(numbers);
+        byte[] array = lease.array();
+        assertEquals(numbers.length * 4, lease.length());
+        lease.release();
+        BufferLease nextLease = vSerializer.serializePooled(numbers);
+        assertNotSame(array, nextLease.array());
+        nextLease.release();
+    }
+}
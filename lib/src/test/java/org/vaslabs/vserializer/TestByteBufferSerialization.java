@@ -0,0 +1,106 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestByteBufferSerialization {
+
+    VSerializer vSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_heap_buffer_holds_the_same_bytes_as_the_array() {
+        TestUtils.AllEncapsulatedData allEncapsulatedData = allEncapsulatedData();
+        byte[] data = vSerializer.serialize(allEncapsulatedData);
+
+        ByteBuffer byteBuffer = ByteBuffer.allocate(data.length + 3);
+        byteBuffer.position(3);
+        assertEquals(data.length, vSerializer.serialize(allEncapsulatedData, byteBuffer));
+        assertEquals(data.length + 3, byteBuffer.position());
+        assertTrue(Arrays.equals(data, Arrays.copyOfRange(byteBuffer.array(), 3, data.length + 3)));
+
+        byteBuffer.position(3);
+        TestUtils.AllEncapsulatedData recoveredData = vSerializer.deserialise(byteBuffer, TestUtils.AllEncapsulatedData.class);
+        assertEquals(data.length + 3, byteBuffer.position());
+        assertEquals(allEncapsulatedData.a, recoveredData.a);
+        assertEquals(allEncapsulatedData.f, recoveredData.f);
+    }
+
+    @Test
+    public void test_direct_little_endian_buffer_with_consecutive_objects() {
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(256).order(ByteOrder.LITTLE_ENDIAN);
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        int written = vSerializer.serialize(encapsulatedDatas[1], byteBuffer);
+        written += vSerializer.serialize(new int[] {1, 2, 3}, byteBuffer);
+        assertEquals(byteBuffer.position(), written);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, byteBuffer.order());
+
+        byteBuffer.flip();
+        TestUtils.EncapsulatedData recoveredData = vSerializer.deserialise(byteBuffer, TestUtils.EncapsulatedData.class);
+        assertEquals(encapsulatedDatas[1].a, recoveredData.a);
+        assertEquals(encapsulatedDatas[1].b, recoveredData.b);
+        int[] numbers = vSerializer.deserialise(byteBuffer, int[].class);
+        assertTrue(Arrays.equals(new int[] {1, 2, 3}, numbers));
+        assertEquals(0, byteBuffer.remaining());
+    }
+
+    @Test
+    public void test_overflow_leaves_the_buffer_untouched() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(10);
+        byteBuffer.put((byte) 7);
+        try {
+            vSerializer.serialize(allEncapsulatedData(), byteBuffer);
+            fail();
+        } catch (BufferOverflowException e) {
+            assertEquals(1, byteBuffer.position());
+        }
+    }
+
+    @Test
+    public void test_mapped_buffer_and_references() throws IOException {
+        File file = File.createTempFile("vserializer", ".bin");
+        file.deleteOnExit();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            MappedByteBuffer mappedByteBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 128);
+            TestUtils.ComplexDataStructure cds = new TestUtils.ComplexDataStructure();
+            cds.somethingElse = cds;
+            cds.b = 5;
+            VSerializer referenceSensitiveSerializer = new ReferenceSensitiveAlphabeticalSerializer();
+            int written = referenceSensitiveSerializer.serialize(cds, mappedByteBuffer);
+            written += referenceSensitiveSerializer.serialize("mapped", mappedByteBuffer);
+
+            mappedByteBuffer.flip();
+            TestUtils.ComplexDataStructure recoveredCds = referenceSensitiveSerializer.deserialise(mappedByteBuffer, TestUtils.ComplexDataStructure.class);
+            assertEquals(5, recoveredCds.b);
+            assertTrue(recoveredCds == recoveredCds.somethingElse);
+            assertEquals("mapped", referenceSensitiveSerializer.deserialise(mappedByteBuffer, String.class));
+            assertEquals(written, mappedByteBuffer.position());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static TestUtils.AllEncapsulatedData allEncapsulatedData() {
+        TestUtils.AllEncapsulatedData allEncapsulatedData = new TestUtils.AllEncapsulatedData();
+        allEncapsulatedData.a = -1L;
+        allEncapsulatedData.b = 1;
+        allEncapsulatedData.c = 127;
+        allEncapsulatedData.d = -32768;
+        allEncapsulatedData.e = true;
+        allEncapsulatedData.f = 'h';
+        return allEncapsulatedData;
+    }
+}
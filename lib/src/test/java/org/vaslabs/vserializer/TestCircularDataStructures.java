@@ -6,6 +6,9 @@ import org.junit.Test;
 import java.nio.ByteBuffer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * Created by vnicolaou on 22/05/16.
@@ -26,15 +29,15 @@ public class TestCircularDataStructures {
         withNumber(5);
         withInternalItself();
         byte[] bytes = thenRunSerializer();
-        //4 bytes reference, 4 bytes internal int, 4 bytes to circle itself
-        assertEquals(12, bytes.length);
+        //1 byte handle, 4 bytes internal int, 1 byte handle to circle itself
+        assertEquals(6, bytes.length);
         ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-        assertEquals(System.identityHashCode(circularDS), byteBuffer.getInt());
+        assertEquals(1, byteBuffer.get());
         assertEquals(5, byteBuffer.getInt());
-        assertEquals(System.identityHashCode(circularDS), byteBuffer.getInt());
+        assertEquals(1, byteBuffer.get());
         CircularDS recoveredCircularDS = vSerializer.deserialise(bytes, CircularDS.class);
         assertEquals(circularDS.justANumber, recoveredCircularDS.justANumber);
-        assertEquals(circularDS.pointsTo.justANumber, recoveredCircularDS.pointsTo.justANumber);
+        assertSame(recoveredCircularDS, recoveredCircularDS.pointsTo);
     }
 
     @Test
@@ -47,9 +50,9 @@ public class TestCircularDataStructures {
         cds.somethingElse.b = 5;
         SizeComputer sizeComputer = new SizeComputer(cds);
         int computedSize = sizeComputer.calculateSize(SerializationUtils.getAllFields(cds), cds);
-        assertEquals(4 + (8+4)*2+ 4 + 4, computedSize);
+        assertEquals(1 + (8+4)*2+ 1 + 1, computedSize);
         byte[] data = vSerializer.serialize(cds);
-        assertEquals(4 + (8+4)*2+ 4 + 4, data.length );
+        assertEquals(1 + (8+4)*2+ 1 + 1, data.length );
         TestUtils.ComplexDataStructure recoveredCds = vSerializer.deserialise(data, TestUtils.ComplexDataStructure.class);
         assertEquals(cds.a, recoveredCds.a);
         assertEquals(cds.b, recoveredCds.b);
@@ -58,6 +61,68 @@ public class TestCircularDataStructures {
         assertEquals(cds.somethingElse.somethingElse, recoveredCds.somethingElse.somethingElse);
     }
 
+    @Test
+    public void test_cycles_through_other_objects_are_kept() {
+        Left left = new Left();
+        left.right = new Right();
+        left.right.left = left;
+        left.right.value = 7;
+        byte[] data = vSerializer.serialize(left);
+        assertEquals(new SizeComputer(left).calculateSize(ClassPlan.of(Left.class), left), data.length);
+        Left recoveredLeft = vSerializer.deserialise(data, Left.class);
+        assertEquals(7, recoveredLeft.right.value);
+        assertSame(recoveredLeft, recoveredLeft.right.left);
+
+        Left target = new Left();
+        assertSame(target, ((AlphabeticalSerializer) vSerializer).deserialiseInto(data, target));
+        assertSame(target, target.right.left);
+    }
+
+    @Test
+    public void test_large_graphs_with_shared_objects() {
+        final int depth = 17;
+        Right shared = new Right();
+        shared.value = -1;
+        Tree tree = tree(depth, shared);
+        byte[] data = vSerializer.serialize(tree);
+        assertEquals(new SizeComputer(tree).calculateSize(ClassPlan.of(Tree.class), tree), data.length);
+        Tree recoveredTree = vSerializer.deserialise(data, Tree.class);
+        Tree leftMost = recoveredTree;
+        Tree rightMost = recoveredTree;
+        for (int i = 0; i < depth; i++) {
+            assertSame(recoveredTree.shared, leftMost.shared);
+            leftMost = leftMost.left;
+            rightMost = rightMost.right;
+        }
+        assertEquals(-1, recoveredTree.shared.value);
+        assertSame(recoveredTree.shared, rightMost.shared);
+        assertEquals(0, leftMost.depth);
+        assertEquals(0, rightMost.depth);
+    }
+
+    @Test
+    public void test_unknown_handles_are_rejected() {
+        CircularDS recoveredCircularDS = vSerializer.deserialise(new byte[] {1, 0, 0, 0, 5, 0}, CircularDS.class);
+        assertEquals(5, recoveredCircularDS.justANumber);
+        assertNull(recoveredCircularDS.pointsTo);
+        try {
+            vSerializer.deserialise(new byte[] {3, 0, 0, 0, 5, 1}, CircularDS.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private static Tree tree(int depth, Right shared) {
+        Tree tree = new Tree();
+        tree.depth = depth;
+        tree.shared = shared;
+        if (depth > 0) {
+            tree.left = tree(depth - 1, shared);
+            tree.right = tree(depth - 1, shared);
+        }
+        return tree;
+    }
+
     private byte[] thenRunSerializer() {
         return vSerializer.serialize(circularDS);
     }
@@ -82,4 +147,20 @@ public class TestCircularDataStructures {
         private int justANumber;
 
     }
+
+    public static class Left {
+        private Right right;
+    }
+
+    public static class Right {
+        private Left left;
+        private int value;
+    }
+
+    public static class Tree {
+        private int depth;
+        private Tree left;
+        private Tree right;
+        private Right shared;
+    }
 }
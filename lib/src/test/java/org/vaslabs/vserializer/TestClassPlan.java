@@ -0,0 +1,89 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestClassPlan {
+
+    @Test
+    public void test_plan_is_built_once_per_class() {
+        ClassPlan plan = ClassPlan.of(TestUtils.EncapsulatedData.class);
+        assertSame(plan, ClassPlan.of(TestUtils.EncapsulatedData.class));
+    }
+
+    @Test
+    public void test_plan_fields_are_sorted_and_filtered() {
+        ClassPlan plan = ClassPlan.of(TestUtils.AllEncapsulatedData.class);
+        assertEquals(8, plan.getFieldCount());
+        String[] expectedOrder = new String[] {"a", "aDouble", "aFloat", "b", "c", "d", "e", "f"};
+        for (int i = 0; i < expectedOrder.length; i++) {
+            assertEquals(expectedOrder[i], plan.getField(i).getName());
+        }
+
+        assertEquals(1, ClassPlan.of(TestUtils.TransientData.class).getFieldCount());
+        assertEquals(1, ClassPlan.of(TestUtils.StaticData.class).getFieldCount());
+    }
+
+    @Test
+    public void test_plan_merges_inherited_fields() {
+        ClassPlan plan = ClassPlan.of(TestInheritedSerialization.EncapsulatedDataSubclass.class);
+        assertEquals(5, plan.getFieldCount());
+        assertEquals("a", plan.getField(0).getName());
+        assertEquals("myMessage", plan.getField(4).getName());
+    }
+
+    @Test
+    public void test_nested_object_of_different_type_is_deserialised_with_its_own_plan() {
+        VSerializer vSerializer = new AlphabeticalSerializer();
+        Wrapper wrapper = new Wrapper();
+        wrapper.id = 7;
+        wrapper.data = new TestUtils.EncapsulatedData();
+        TestUtils.initWithData(wrapper.data);
+
+        byte[] data = vSerializer.serialize(wrapper);
+        assertEquals(4 + 1 + 15, data.length);
+
+        Wrapper recoveredWrapper = vSerializer.deserialise(data, Wrapper.class);
+        assertEquals(7, recoveredWrapper.id);
+        assertNotNull(recoveredWrapper.data);
+        assertEquals(wrapper.data.a, recoveredWrapper.data.a);
+        assertEquals(wrapper.data.b, recoveredWrapper.data.b);
+        assertEquals(wrapper.data.c, recoveredWrapper.data.c);
+        assertEquals(wrapper.data.d, recoveredWrapper.data.d);
+    }
+
+    @Test
+    public void test_size_hint_is_not_kept_for_large_instances() {
+        VSerializer vSerializer = new AlphabeticalSerializer();
+        ClassPlan plan = ClassPlan.of(Message.class);
+        Message message = new Message();
+        message.text = "small";
+        byte[] data = vSerializer.serialize(message);
+        assertEquals(data.length, plan.sizeHint);
+
+        char[] characters = new char[2 * BufferPool.MAX_POOLED_CAPACITY];
+        Arrays.fill(characters, 'v');
+        message.text = new String(characters);
+        assertEquals(message.text, vSerializer.deserialise(vSerializer.serialize(message), Message.class).text);
+        assertEquals(OutputBuffer.DEFAULT_CAPACITY, plan.sizeHint);
+
+        message.text = "small";
+        assertTrue(Arrays.equals(data, vSerializer.serialize(message)));
+        assertEquals(data.length, plan.sizeHint);
+    }
+
+    public static class Message {
+        private String text;
+    }
+
+    public static class Wrapper {
+        private TestUtils.EncapsulatedData data;
+        private int id;
+    }
+}
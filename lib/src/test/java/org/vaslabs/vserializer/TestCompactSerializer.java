@@ -0,0 +1,153 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestCompactSerializer {
+
+    @Test
+    public void test_small_values_take_a_byte() {
+        VSerializer vSerializer = new CompactAlphabeticalSerializer();
+        TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+        encapsulatedData.a = -3L;
+        encapsulatedData.b = 60;
+        encapsulatedData.d = -64;
+        encapsulatedData.c = 7;
+        byte[] data = vSerializer.serialize(encapsulatedData);
+        assertEquals(4, data.length);
+        assertEquals(15, new AlphabeticalSerializer().serialize(encapsulatedData).length);
+
+        TestUtils.EncapsulatedData recoveredData = vSerializer.deserialise(data, TestUtils.EncapsulatedData.class);
+        assertEquals(-3L, recoveredData.a);
+        assertEquals(60, recoveredData.b);
+        assertEquals(-64, recoveredData.d);
+        assertEquals(7, recoveredData.c);
+    }
+
+    @Test
+    public void test_extreme_values() {
+        VSerializer vSerializer = new CompactAlphabeticalSerializer();
+        TestUtils.AllEncapsulatedData allEncapsulatedData = new TestUtils.AllEncapsulatedData();
+        allEncapsulatedData.a = Long.MIN_VALUE;
+        allEncapsulatedData.b = Integer.MAX_VALUE;
+        allEncapsulatedData.d = Short.MIN_VALUE;
+        allEncapsulatedData.c = -1;
+        allEncapsulatedData.e = true;
+        allEncapsulatedData.f = 'x';
+        allEncapsulatedData.aFloat = 1.5f;
+        allEncapsulatedData.aDouble = -2.25;
+        byte[] data = vSerializer.serialize(allEncapsulatedData);
+        // 10 + 5 + 3 varint bytes, then byte, boolean, char, float and double
+        assertEquals(10 + 5 + 3 + 1 + 1 + 2 + 4 + 8, data.length);
+
+        TestUtils.AllEncapsulatedData recoveredData = vSerializer.deserialise(data, TestUtils.AllEncapsulatedData.class);
+        assertEquals(allEncapsulatedData.a, recoveredData.a);
+        assertEquals(allEncapsulatedData.b, recoveredData.b);
+        assertEquals(allEncapsulatedData.d, recoveredData.d);
+        assertEquals(allEncapsulatedData.c, recoveredData.c);
+        assertEquals(allEncapsulatedData.e, recoveredData.e);
+        assertEquals(allEncapsulatedData.f, recoveredData.f);
+        assertEquals(allEncapsulatedData.aFloat, recoveredData.aFloat, 0);
+        assertEquals(allEncapsulatedData.aDouble, recoveredData.aDouble, 0);
+    }
+
+    @Test
+    public void test_strings_and_arrays() {
+        VSerializer vSerializer = new CompactAlphabeticalSerializer();
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "hi";
+        internalStrings.myNumber = 1;
+        byte[] data = vSerializer.serialize(internalStrings);
+        // length, encoding and chars, number, null
+        assertEquals(1 + 1 + 2 + 1 + 1, data.length);
+        TestUtils.InternalStrings recoveredStrings = vSerializer.deserialise(data, TestUtils.InternalStrings.class);
+        assertEquals("hi", recoveredStrings.myMessage);
+        assertEquals(1, recoveredStrings.myNumber);
+        assertNull(recoveredStrings.myOtherMessage);
+
+        TestUtils.AllEncapsulatedArrayData arrayData = new TestUtils.AllEncapsulatedArrayData();
+        arrayData.a = new long[] {0, -1, Long.MAX_VALUE};
+        arrayData.b = new int[] {Integer.MIN_VALUE, 300, -300};
+        arrayData.d = new short[] {Short.MAX_VALUE, 0};
+        arrayData.f = new char[] {'a', 'b'};
+        arrayData.doubles = new double[0];
+        TestUtils.AllEncapsulatedArrayData recoveredArrays =
+                vSerializer.deserialise(vSerializer.serialize(arrayData), TestUtils.AllEncapsulatedArrayData.class);
+        assertArrayEquals(arrayData.a, recoveredArrays.a);
+        assertArrayEquals(arrayData.b, recoveredArrays.b);
+        assertArrayEquals(arrayData.d, recoveredArrays.d);
+        assertNull(recoveredArrays.c);
+        assertNull(recoveredArrays.e);
+        assertArrayEquals(arrayData.f, recoveredArrays.f);
+        assertNull(recoveredArrays.floats);
+        assertEquals(0, recoveredArrays.doubles.length);
+    }
+
+    @Test
+    public void test_top_level_values() {
+        AlphabeticalSerializer vSerializer = new CompactAlphabeticalSerializer();
+        int[] numbers = new int[] {1, -1, 1 << 20, Integer.MIN_VALUE};
+        byte[] data = vSerializer.serialize(numbers);
+        assertEquals(1 + 1 + 4 + 5, data.length);
+        assertArrayEquals(numbers, vSerializer.deserialise(data, int[].class));
+
+        int[] into = new int[6];
+        assertEquals(4, vSerializer.deserialiseInto(data, into, 2));
+        assertArrayEquals(numbers, Arrays.copyOfRange(into, 2, 6));
+        try {
+            vSerializer.deserialiseInto(data, into, 3);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+
+        assertEquals(Long.valueOf(-5L), vSerializer.deserialise(vSerializer.serialize(-5L), Long.class));
+        assertEquals(1, vSerializer.serialize(-5L).length);
+
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        TestUtils.EncapsulatedData[] recoveredDatas = vSerializer.deserialise(vSerializer.serialize(encapsulatedDatas), TestUtils.EncapsulatedData[].class);
+        assertEquals(encapsulatedDatas.length, recoveredDatas.length);
+        for (int i = 0; i < recoveredDatas.length; i++) {
+            assertEquals(encapsulatedDatas[i].a, recoveredDatas[i].a);
+            assertEquals(encapsulatedDatas[i].b, recoveredDatas[i].b);
+        }
+
+        List<Integer> list = Arrays.asList(1, null, -70000);
+        data = vSerializer.serialize(list);
+        assertEquals(list, vSerializer.deserialise(data, List.class, Integer.class));
+        ElementIterator<Integer> iterator = vSerializer.iterate(data, Integer.class);
+        assertEquals(3, iterator.size());
+        assertEquals(Integer.valueOf(1), iterator.next());
+    }
+
+    @Test
+    public void test_streams() throws Exception {
+        AlphabeticalSerializer vSerializer = new CompactAlphabeticalSerializer();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ArrayStreamWriter<TestUtils.EncapsulatedData> writer = new ArrayStreamWriter<>(vSerializer, outputStream, 200);
+        for (int i = 0; i < 200; i++) {
+            TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+            encapsulatedData.b = i * 1000;
+            writer.write(encapsulatedData);
+        }
+        writer.close();
+
+        ArrayStreamReader<TestUtils.EncapsulatedData> reader = new ArrayStreamReader<>(vSerializer,
+                new ByteArrayInputStream(outputStream.toByteArray()), TestUtils.EncapsulatedData.class);
+        assertEquals(200, reader.size());
+        int i = 0;
+        while (reader.hasNext()) {
+            assertEquals(i++ * 1000, reader.read().b);
+        }
+        assertTrue(i == 200);
+    }
+}
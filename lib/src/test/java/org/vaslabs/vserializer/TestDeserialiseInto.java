@@ -0,0 +1,140 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDeserialiseInto {
+
+    private final AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_nested_objects_are_decoded_in_place() {
+        TestUtils.ComplexDataStructure cds = new TestUtils.ComplexDataStructure();
+        cds.a = 1;
+        cds.b = 2;
+        cds.somethingElse = new TestUtils.ComplexDataStructure();
+        cds.somethingElse.a = 3;
+        byte[] data = vSerializer.serialize(cds);
+
+        TestUtils.ComplexDataStructure target = new TestUtils.ComplexDataStructure();
+        TestUtils.ComplexDataStructure nested = new TestUtils.ComplexDataStructure();
+        nested.somethingElse = new TestUtils.ComplexDataStructure();
+        target.somethingElse = nested;
+        assertSame(target, vSerializer.deserialiseInto(data, target));
+        assertEquals(1, target.a);
+        assertEquals(2, target.b);
+        assertSame(nested, target.somethingElse);
+        assertEquals(3, nested.a);
+        assertNull(nested.somethingElse);
+    }
+
+    @Test
+    public void test_arrays_of_the_same_length_are_reused() {
+        TestUtils.DataStructureWithArray dataStructureWithArray = new TestUtils.DataStructureWithArray();
+        dataStructureWithArray.numbers = new int[] {4, 5, 6};
+        dataStructureWithArray.value = 7L;
+        byte[] data = vSerializer.serialize(dataStructureWithArray);
+
+        TestUtils.DataStructureWithArray target = new TestUtils.DataStructureWithArray();
+        int[] numbers = new int[3];
+        target.numbers = numbers;
+        vSerializer.deserialiseInto(data, target);
+        assertSame(numbers, target.numbers);
+        assertTrue(Arrays.equals(new int[] {4, 5, 6}, numbers));
+        assertEquals(7L, target.value);
+
+        target.numbers = new int[2];
+        vSerializer.deserialiseInto(data, target);
+        assertTrue(Arrays.equals(new int[] {4, 5, 6}, target.numbers));
+
+        TestUtils.DataStructureWithObjectArray dsObjectArray = new TestUtils.DataStructureWithObjectArray();
+        dsObjectArray.encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        data = vSerializer.serialize(dsObjectArray);
+        TestUtils.DataStructureWithObjectArray objectArrayTarget = new TestUtils.DataStructureWithObjectArray();
+        objectArrayTarget.encapsulatedDatas = new TestUtils.EncapsulatedData[dsObjectArray.encapsulatedDatas.length];
+        TestUtils.EncapsulatedData element = new TestUtils.EncapsulatedData();
+        objectArrayTarget.encapsulatedDatas[4] = element;
+        TestUtils.EncapsulatedData[] elements = objectArrayTarget.encapsulatedDatas;
+        vSerializer.deserialiseInto(data, objectArrayTarget);
+        assertSame(elements, objectArrayTarget.encapsulatedDatas);
+        assertSame(element, elements[4]);
+        for (int i = 0; i < elements.length; i++) {
+            assertEquals(dsObjectArray.encapsulatedDatas[i].b, elements[i].b);
+            assertEquals(dsObjectArray.encapsulatedDatas[i].a, elements[i].a);
+        }
+    }
+
+    @Test
+    public void test_array_elements_are_reused() {
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        byte[] data = vSerializer.serialize(encapsulatedDatas);
+
+        TestUtils.EncapsulatedData[] reuse = new TestUtils.EncapsulatedData[encapsulatedDatas.length];
+        for (int i = 0; i < reuse.length; i++) {
+            reuse[i] = new TestUtils.EncapsulatedData();
+        }
+        TestUtils.EncapsulatedData first = reuse[0];
+        assertSame(reuse, vSerializer.deserialiseArrayInto(data, reuse));
+        assertSame(first, reuse[0]);
+        for (int i = 0; i < reuse.length; i++) {
+            assertEquals(encapsulatedDatas[i].b, reuse[i].b);
+        }
+
+        TestUtils.EncapsulatedData[] shorter = new TestUtils.EncapsulatedData[] {first};
+        TestUtils.EncapsulatedData[] recovered = vSerializer.deserialiseArrayInto(data, shorter);
+        assertNotSame(shorter, recovered);
+        assertEquals(encapsulatedDatas.length, recovered.length);
+        assertSame(first, recovered[0]);
+        assertEquals(encapsulatedDatas[9].b, recovered[9].b);
+    }
+
+    @Test
+    public void test_strings_and_nulls_are_overwritten() {
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "new";
+        TestUtils.InternalStrings target = new TestUtils.InternalStrings();
+        target.myMessage = "old";
+        target.myOtherMessage = "old";
+        target.myNumber = 5;
+        new CompactAlphabeticalSerializer().deserialiseInto(new CompactAlphabeticalSerializer().serialize(internalStrings), target);
+        assertEquals("new", target.myMessage);
+        assertNull(target.myOtherMessage);
+        assertEquals(0, target.myNumber);
+
+        try {
+            vSerializer.deserialiseInto(vSerializer.serialize("text"), "target");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_failed_elements_are_reported() {
+        NoDefaultConstructor[] objects = new NoDefaultConstructor[] {new NoDefaultConstructor(1), new NoDefaultConstructor(2)};
+        byte[] data = vSerializer.serialize(objects);
+        NoDefaultConstructor[] reuse = new NoDefaultConstructor[] {new NoDefaultConstructor(0), null};
+        try {
+            vSerializer.deserialiseArrayInto(data, reuse);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Cannot read element 1", e.getMessage());
+        }
+        assertEquals(1, reuse[0].value);
+    }
+
+    private static class NoDefaultConstructor {
+        int value;
+
+        NoDefaultConstructor(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestElementIterator {
+
+    AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_iterating_over_a_list() {
+        List<TestUtils.EncapsulatedData> encapsulatedDataList = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+            encapsulatedData.b = i;
+            encapsulatedDataList.add(encapsulatedData);
+        }
+        encapsulatedDataList.add(null);
+        byte[] data = vSerializer.serialize(encapsulatedDataList);
+
+        ElementIterator<TestUtils.EncapsulatedData> iterator = vSerializer.iterate(data, TestUtils.EncapsulatedData.class);
+        assertEquals(6, iterator.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, iterator.next().b);
+        }
+        assertNull(iterator.next());
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail();
+        } catch (NoSuchElementException e) {
+        }
+    }
+
+    @Test
+    public void test_reusing_one_instance() {
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(vSerializer.serialize(encapsulatedDatas));
+
+        TestUtils.EncapsulatedData reusedInstance = new TestUtils.EncapsulatedData();
+        ElementIterator<TestUtils.EncapsulatedData> iterator =
+                new ElementIterator<>(vSerializer, byteBuffer, TestUtils.EncapsulatedData.class, reusedInstance);
+        int i = 0;
+        while (iterator.hasNext()) {
+            TestUtils.EncapsulatedData encapsulatedData = iterator.next();
+            assertSame(reusedInstance, encapsulatedData);
+            assertEquals(encapsulatedDatas[i].a, encapsulatedData.a);
+            assertEquals(encapsulatedDatas[i].b, encapsulatedData.b);
+            i++;
+        }
+        assertEquals(encapsulatedDatas.length, i);
+        assertEquals(0, byteBuffer.position());
+    }
+
+    @Test
+    public void test_iterating_over_strings_and_empty_arrays() {
+        ElementIterator<String> iterator = vSerializer.iterate(vSerializer.serialize(new String[] {"a", null, "bc"}), String.class);
+        assertEquals("a", iterator.next());
+        assertNull(iterator.next());
+        assertEquals("bc", iterator.next());
+        assertFalse(iterator.hasNext());
+
+        assertFalse(vSerializer.iterate(vSerializer.serialize(new String[0]), String.class).hasNext());
+        try {
+            new ElementIterator<>(vSerializer, ByteBuffer.allocate(0), String.class, "reused");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("String"));
+        }
+    }
+}
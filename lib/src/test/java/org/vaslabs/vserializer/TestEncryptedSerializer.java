@@ -3,6 +3,9 @@ package org.vaslabs.vserializer;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
@@ -10,8 +13,10 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Created by vnicolaou on 06/05/16.
@@ -84,6 +89,82 @@ public class TestEncryptedSerializer {
 
     }
 
+    @Test
+    public void test_arrays_are_not_streamed_in_plain_text() throws IOException {
+        try {
+            new ArrayStreamWriter<>(localEncryptedAlphabeticalSerializer, new ByteArrayOutputStream(), 1);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            new ArrayStreamReader<>(remoteEncryptedAlphabeticalSerializer, new ByteArrayInputStream(new byte[4]), TestUtils.EncapsulatedData.class);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    @Test
+    public void test_batch_records_are_encrypted() {
+        TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+        encapsulatedData.a = 42;
+        BatchWriter batchWriter = new BatchWriter(localEncryptedAlphabeticalSerializer, TestUtils.EncapsulatedData.class, String.class);
+        batchWriter.write(encapsulatedData);
+        batchWriter.write("secret");
+        byte[] data = batchWriter.toByteArray();
+
+        BatchWriter plainBatchWriter = new BatchWriter(new AlphabeticalSerializer(), TestUtils.EncapsulatedData.class, String.class);
+        plainBatchWriter.write(encapsulatedData);
+        plainBatchWriter.write("secret");
+        assertTrue(plainBatchWriter.toByteArray().length < data.length);
+
+        BatchReader batchReader = new BatchReader(remoteEncryptedAlphabeticalSerializer, data, TestUtils.EncapsulatedData.class, String.class);
+        assertEquals(42, ((TestUtils.EncapsulatedData) batchReader.read()).a);
+        assertEquals("secret", batchReader.read());
+        assertFalse(batchReader.hasNext());
+    }
+
+    @Test
+    public void test_elements_of_encrypted_arrays_are_not_accessed_on_their_own() {
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        byte[] data = localEncryptedAlphabeticalSerializer.serialize(encapsulatedDatas);
+        assertEquals(encapsulatedDatas.length, remoteEncryptedAlphabeticalSerializer.deserialise(data, TestUtils.EncapsulatedData[].class).length);
+        try {
+            remoteEncryptedAlphabeticalSerializer.iterate(data, TestUtils.EncapsulatedData.class);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            localEncryptedAlphabeticalSerializer.serializeIndexed(encapsulatedDatas);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            remoteEncryptedAlphabeticalSerializer.indexedList(data, TestUtils.EncapsulatedData.class);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            remoteEncryptedAlphabeticalSerializer.view(TestUtils.EncapsulatedData.class);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
 
+    @Test
+    public void test_decoding_encrypted_values_into_arrays() {
+        byte[] data = localEncryptedAlphabeticalSerializer.serialize(new int[] {1, 2, 3});
+        int[] values = new int[4];
+        assertEquals(3, remoteEncryptedAlphabeticalSerializer.deserialiseInto(data, values, 1));
+        assertEquals(3, values[3]);
+        double[] doubles = new double[2];
+        data = localEncryptedAlphabeticalSerializer.serialize(new double[] {0.5, -2});
+        assertEquals(2, remoteEncryptedAlphabeticalSerializer.deserialiseInto(data, doubles, 0));
+        assertEquals(-2, doubles[1], 0);
+        try {
+            localEncryptedAlphabeticalSerializer.deserialiseInto(data, doubles, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
 
 }
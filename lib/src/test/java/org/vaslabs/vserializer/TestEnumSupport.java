@@ -91,7 +91,7 @@ public class TestEnumSupport {
         vSerializer = new ReferenceSensitiveAlphabeticalSerializer();
         whenInstantiatingClassWithEnums();
         serializeIt();
-        shouldHaveSize(7);
+        shouldHaveSize(4);
         andDeserialize();
         shouldBeEquals();
     }
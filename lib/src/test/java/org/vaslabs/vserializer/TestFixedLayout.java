@@ -0,0 +1,56 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestFixedLayout {
+
+    private final AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_fixed_size_is_computed_once_per_class() {
+        ClassPlan plan = ClassPlan.of(TestUtils.EncapsulatedData.class);
+        assertEquals(8 + 4 + 2 + 1, plan.fixedSize());
+        assertEquals(0, plan.variableFields().length);
+        assertEquals(1, ClassPlan.of(TimeUnit.class).fixedSize());
+        assertEquals(8, ClassPlan.of(Long.class).fixedSize());
+        assertEquals(-1, ClassPlan.of(String.class).fixedSize());
+
+        ClassPlan mixedPlan = ClassPlan.of(Mixed.class);
+        assertEquals(-1, mixedPlan.fixedSize());
+        assertEquals(4 + 1, mixedPlan.fixedFieldsSize());
+        assertEquals(2, mixedPlan.variableFields().length);
+        assertEquals("label", mixedPlan.variableFields()[0].getName());
+        assertEquals("others", mixedPlan.variableFields()[1].getName());
+    }
+
+    @Test
+    public void test_sizes_match_the_serialized_data() {
+        Mixed mixed = new Mixed();
+        mixed.label = "mixed";
+        mixed.others = TestUtils.initEncapsulatedDataArray();
+        mixed.others[2] = new Subclass();
+        mixed.others[5] = null;
+        mixed.unit = TimeUnit.HOURS;
+        assertEquals(vSerializer.serialize(mixed).length, SerializationUtils.calculateSize(ClassPlan.of(Mixed.class), mixed));
+        assertEquals(vSerializer.serialize(mixed.others).length, SerializationUtils.calculateNonPrimitiveArraySize(mixed.others));
+
+        TimeUnit[] units = new TimeUnit[] {TimeUnit.DAYS, null, TimeUnit.SECONDS};
+        assertEquals(vSerializer.serialize(units).length, SerializationUtils.calculateNonPrimitiveArraySize(units));
+    }
+
+    private static class Mixed implements Serializable {
+        private String label;
+        private int number;
+        private TestUtils.EncapsulatedData[] others;
+        private TimeUnit unit;
+    }
+
+    private static class Subclass extends TestUtils.EncapsulatedData {
+        private long extra;
+    }
+}
@@ -228,6 +228,27 @@ public class TestFringeCases {
         }
     }
 
+    @Test
+    public void test_boxed_primitive_fields() {
+        BoxedData boxedData = new BoxedData();
+        boxedData.number = 42;
+        boxedData.flag = true;
+        byte[] data = vSerializer.serialize(boxedData);
+        assertEquals((1 + 1) + (1 + 4) + 1 + (1 + 2), data.length);
+        BoxedData recoveredBoxedData = vSerializer.deserialise(data, BoxedData.class);
+        assertEquals(boxedData.flag, recoveredBoxedData.flag);
+        assertEquals(boxedData.number, recoveredBoxedData.number);
+        assertNull(recoveredBoxedData.total);
+        assertEquals(boxedData.value, recoveredBoxedData.value);
+    }
+
+    static class BoxedData {
+        private Boolean flag;
+        private Integer number;
+        private Long total;
+        private Character value = 'v';
+    }
+
     @Test
     public void test_array_of_strings() {
         String[] strings = new String[] {"s1", "s2", "s3"};
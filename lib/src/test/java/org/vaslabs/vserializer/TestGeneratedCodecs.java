@@ -0,0 +1,55 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestGeneratedCodecs {
+
+    VSerializer vSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_generated_codec_is_found_and_used() {
+        Point point = new Point();
+        point.x = 3;
+        point.y = -4;
+        point.label = "origin";
+
+        int writes = TestGeneratedCodecs_Point_VCodec.writes;
+        byte[] data = vSerializer.serialize(point);
+        assertEquals(writes + 1, TestGeneratedCodecs_Point_VCodec.writes);
+
+        int reads = TestGeneratedCodecs_Point_VCodec.reads;
+        Point recoveredPoint = vSerializer.deserialise(data, Point.class);
+        assertEquals(reads + 1, TestGeneratedCodecs_Point_VCodec.reads);
+        assertEquals(point.x, recoveredPoint.x);
+        assertEquals(point.y, recoveredPoint.y);
+        assertEquals(point.label, recoveredPoint.label);
+    }
+
+    @Test
+    public void test_generated_codec_has_the_alphabetical_layout() {
+        Point point = new Point();
+        point.x = 3;
+        point.y = -4;
+        point.label = "origin";
+        byte[] data = vSerializer.serialize(point);
+        byte[] reflectiveData = new ReferenceSensitiveAlphabeticalSerializer().serialize(point);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(reflectiveData, 1, reflectiveData.length), data));
+
+        Point[] points = new Point[] {point, null, point};
+        Point[] recoveredPoints = vSerializer.deserialise(vSerializer.serialize(points), Point[].class);
+        assertEquals(3, recoveredPoints.length);
+        assertEquals(point.label, recoveredPoints[2].label);
+    }
+
+    @VSerializable
+    public static class Point {
+        String label;
+        int x;
+        int y;
+    }
+}
@@ -0,0 +1,34 @@
+package org.vaslabs.vserializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * What the annotation processor generates for {@link TestGeneratedCodecs.Point}, with counters
+ * to tell whether the serializer picked it up.
+ */
+public final class TestGeneratedCodecs_Point_VCodec extends ClassCodec<TestGeneratedCodecs.Point> {
+
+    static int writes;
+    static int reads;
+
+    @Override
+    protected TestGeneratedCodecs.Point newInstance() {
+        return new TestGeneratedCodecs.Point();
+    }
+
+    @Override
+    protected void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, TestGeneratedCodecs.Point obj) throws IllegalAccessException {
+        writes++;
+        writeString(serializer, byteBuffer, obj.label);
+        byteBuffer.putInt(obj.x);
+        byteBuffer.putInt(obj.y);
+    }
+
+    @Override
+    protected void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, TestGeneratedCodecs.Point obj) throws Exception {
+        reads++;
+        obj.label = readString(serializer, byteBuffer);
+        obj.x = byteBuffer.getInt();
+        obj.y = byteBuffer.getInt();
+    }
+}
@@ -0,0 +1,85 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestGeneratedSerializer {
+
+    VSerializer vSerializer = new GeneratedSerializer();
+    VSerializer alphabeticalSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_output_is_identical_to_alphabetical_serializer() {
+        TestUtils.AllEncapsulatedData allEncapsulatedData = new TestUtils.AllEncapsulatedData();
+        allEncapsulatedData.a = -1L;
+        allEncapsulatedData.b = 1;
+        allEncapsulatedData.c = 127;
+        allEncapsulatedData.d = -32768;
+        allEncapsulatedData.e = true;
+        allEncapsulatedData.f = 'h';
+        allEncapsulatedData.aFloat = 2.4f;
+        allEncapsulatedData.aDouble = 3.54;
+        assertSameOutput(allEncapsulatedData);
+
+        TestUtils.ComplexDataStructure cds = new TestUtils.ComplexDataStructure();
+        cds.a = 0xff;
+        cds.b = -1;
+        cds.somethingElse = new TestUtils.ComplexDataStructure();
+        cds.somethingElse.b = 5;
+        assertSameOutput(cds);
+
+        TestUtils.DataStructureWithObjectArray dsObjectArray = new TestUtils.DataStructureWithObjectArray();
+        dsObjectArray.encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        dsObjectArray.encapsulatedDatas[3] = null;
+        dsObjectArray.value = 48204431L;
+        assertSameOutput(dsObjectArray);
+
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "My Message";
+        internalStrings.myNumber = -255;
+        assertSameOutput(internalStrings);
+
+        TestEnumSupport.EnumEncapsulator enumEncapsulator = new TestEnumSupport.EnumEncapsulator();
+        enumEncapsulator.timeUnitDays = TimeUnit.DAYS;
+        assertSameOutput(enumEncapsulator);
+
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        assertTrue(Arrays.equals(alphabeticalSerializer.serialize(encapsulatedDatas), vSerializer.serialize(encapsulatedDatas)));
+    }
+
+    @Test
+    public void test_generated_serialization_deserialization() {
+        TestUtils.ComplexDataStructure cds = new TestUtils.ComplexDataStructure();
+        cds.a = 0xff;
+        cds.b = -1;
+        cds.somethingElse = new TestUtils.ComplexDataStructure();
+        cds.somethingElse.a = -2;
+        cds.somethingElse.b = 5;
+
+        byte[] data = vSerializer.serialize(cds);
+        TestUtils.ComplexDataStructure recoveredCds = vSerializer.deserialise(data, TestUtils.ComplexDataStructure.class);
+        assertEquals(cds.a, recoveredCds.a);
+        assertEquals(cds.b, recoveredCds.b);
+        assertEquals(cds.somethingElse.a, recoveredCds.somethingElse.a);
+        assertEquals(cds.somethingElse.b, recoveredCds.somethingElse.b);
+        assertNull(recoveredCds.somethingElse.somethingElse);
+
+        TestUtils.FinalEncapsulatedData finalEncapsulatedData = new TestUtils.FinalEncapsulatedData(1L, 2, (short)3, (byte)4);
+        data = vSerializer.serialize(finalEncapsulatedData);
+        TestUtils.FinalEncapsulatedData recoveredFinalData = vSerializer.deserialise(data, TestUtils.FinalEncapsulatedData.class);
+        assertEquals(1L, recoveredFinalData.a);
+        assertEquals(2, recoveredFinalData.b);
+        assertEquals(4, recoveredFinalData.c);
+        assertEquals(3, recoveredFinalData.d);
+    }
+
+    private void assertSameOutput(Object obj) {
+        assertTrue(Arrays.equals(alphabeticalSerializer.serialize(obj), vSerializer.serialize(obj)));
+    }
+}
@@ -0,0 +1,75 @@
+package org.vaslabs.vserializer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TestIndexedArrays {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void test_elements_are_decoded_on_demand() {
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        TestUtils.EncapsulatedData[] encapsulatedDatas = TestUtils.initEncapsulatedDataArray();
+        encapsulatedDatas[4] = null;
+        byte[] data = vSerializer.serializeIndexed(encapsulatedDatas);
+        // the elements of serialize, without the count, then the offset table and the count
+        byte[] sequentialData = vSerializer.serialize(encapsulatedDatas);
+        assertEquals(sequentialData.length - 4 + 4 * 10 + 4, data.length);
+
+        IndexedList<TestUtils.EncapsulatedData> list = vSerializer.indexedList(data, TestUtils.EncapsulatedData.class);
+        assertEquals(10, list.size());
+        assertEquals(encapsulatedDatas[9].a, list.get(9).a);
+        assertEquals(encapsulatedDatas[9].d, list.get(9).d);
+        assertNull(list.get(4));
+        assertNotSame(list.get(0), list.get(0));
+        try {
+            list.get(10);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+        }
+        assertEquals(0, vSerializer.indexedList(new byte[0], String.class).size());
+        try {
+            vSerializer.indexedList(new byte[] {0, 0, 0, 9}, String.class);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_every_element_is_a_payload_of_its_own() {
+        DeduplicatingAlphabeticalSerializer vSerializer = new DeduplicatingAlphabeticalSerializer();
+        List<String> strings = Arrays.asList("repeated", "repeated", null, "other", "repeated");
+        List<String> list = vSerializer.indexedList(vSerializer.serializeIndexed(strings), String.class);
+        assertEquals(strings, list);
+        assertEquals("repeated", list.get(4));
+    }
+
+    @Test
+    public void test_parallel_decode() {
+        CompactAlphabeticalSerializer vSerializer = new CompactAlphabeticalSerializer();
+        Integer[] numbers = new Integer[AlphabeticalSerializer.PARALLEL_CHUNK_LENGTH * 3 + 5];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = i % 7 == 0 ? null : i;
+        }
+        byte[] data = vSerializer.serializeIndexed(numbers);
+        Integer[] recoveredNumbers = vSerializer.deserialiseIndexed(data, Integer.class, executor);
+        assertEquals(Arrays.asList(numbers), Arrays.asList(recoveredNumbers));
+        assertEquals(0, vSerializer.deserialiseIndexed(vSerializer.serializeIndexed(new Integer[0]), Integer.class, executor).length);
+    }
+}
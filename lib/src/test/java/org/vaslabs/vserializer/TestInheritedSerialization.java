@@ -27,7 +27,7 @@ public class TestInheritedSerialization {
         TestUtils.initWithData(encapsulatedDataSubclass);
         byte[] data = vSerializer.serialize(encapsulatedDataSubclass);
         ByteBuffer byteBuffer = ByteBuffer.wrap(data);
-        assertEquals(encapsulatedDataSubclass.myMessage.length()*2 + 4 + 15, data.length);
+        assertEquals(encapsulatedDataSubclass.myMessage.length() + 4 + 1 + 15, data.length);
         assertEquals(encapsulatedDataSubclass.a, byteBuffer.getLong());
 
         EncapsulatedDataSubclass recoveredEncapsulatedDataSubclass = vSerializer.deserialise(data, EncapsulatedDataSubclass.class);
@@ -2,11 +2,27 @@ package org.vaslabs.vserializer;
 
 import org.junit.Test;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Created by vnicolaou on 09/06/16.
@@ -49,6 +65,169 @@ public class TestJavaCollectionsSerialization {
         assertEquals(encapsulatedDataList.get(1).a, recoveredList.get(1).a);
     }
 
+    @Test
+    public void test_collection_and_map_fields_are_serialized() {
+        AlphabeticalSerializer[] serializers = new AlphabeticalSerializer[] {
+                new AlphabeticalSerializer(), new CompactAlphabeticalSerializer(), new DeduplicatingAlphabeticalSerializer(),
+                new ReferenceSensitiveAlphabeticalSerializer()
+        };
+        for (AlphabeticalSerializer serializer : serializers) {
+            Inventory inventory = inventory();
+            Inventory recoveredInventory = serializer.deserialise(serializer.serialize(inventory), Inventory.class);
+            assertEquals(inventory.names, recoveredInventory.names);
+            assertSame(ArrayList.class, recoveredInventory.names.getClass());
+            assertEquals(inventory.counts, recoveredInventory.counts);
+            assertSame(HashMap.class, recoveredInventory.counts.getClass());
+            assertEquals(inventory.ids, recoveredInventory.ids);
+            assertSame(HashSet.class, recoveredInventory.ids.getClass());
+            assertEquals(Arrays.asList(inventory.items.keySet().toArray()), Arrays.asList(recoveredInventory.items.keySet().toArray()));
+            assertEquals(3, recoveredInventory.items.get("first").a);
+            assertNull(recoveredInventory.items.get("missing"));
+            assertEquals(Arrays.asList(inventory.readings.toArray()), Arrays.asList(recoveredInventory.readings.toArray()));
+            assertEquals(inventory.scores, recoveredInventory.scores);
+            assertSame(ArrayList.class, recoveredInventory.scores.getClass());
+            assertEquals(inventory.tags, recoveredInventory.tags);
+            assertSame(LinkedHashSet.class, recoveredInventory.tags.getClass());
+            assertEquals(inventory.units, recoveredInventory.units);
+            assertSame(LinkedHashMap.class, recoveredInventory.units.getClass());
+            assertNull(recoveredInventory.empty);
+            assertEquals(7, recoveredInventory.number);
+        }
+    }
+
+    @Test
+    public void test_sizes_of_collection_fields() {
+        AlphabeticalSerializer serializer = new AlphabeticalSerializer();
+        Inventory inventory = inventory();
+        assertEquals(serializer.serialize(inventory).length, SerializationUtils.calculateSize(ClassPlan.of(Inventory.class), inventory));
+    }
+
+    @Test
+    public void test_boxed_elements_are_packed() {
+        AlphabeticalSerializer serializer = new AlphabeticalSerializer();
+        Scores scores = new Scores();
+        scores.values = new ArrayList<>(Arrays.asList(1, 2, 3));
+        byte[] data = serializer.serialize(scores);
+        assertEquals(4 + 1 + 3 * 4, data.length);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        assertEquals(3, byteBuffer.getInt());
+        assertEquals(1, byteBuffer.get());
+        assertEquals(1, byteBuffer.getInt());
+
+        scores.values.set(1, null);
+        data = serializer.serialize(scores);
+        assertEquals(4 + 1 + 1 + 4 + 1 + 1 + 4, data.length);
+        assertEquals(Arrays.asList(1, null, 3), serializer.deserialise(data, Scores.class).values);
+
+        scores.values.clear();
+        assertEquals(0, serializer.deserialise(serializer.serialize(scores), Scores.class).values.size());
+    }
+
+    @Test
+    public void test_collection_fields_are_skipped_by_projections() {
+        AlphabeticalSerializer[] serializers = new AlphabeticalSerializer[] {
+                new AlphabeticalSerializer(), new CompactAlphabeticalSerializer(), new ReferenceSensitiveAlphabeticalSerializer()
+        };
+        for (AlphabeticalSerializer serializer : serializers) {
+            byte[] data = serializer.serialize(inventory());
+            Inventory recoveredInventory = serializer.deserialise(data, Inventory.class, "number", "empty");
+            assertEquals(7, recoveredInventory.number);
+            assertNull(recoveredInventory.names);
+            assertNull(recoveredInventory.units);
+        }
+    }
+
+    @Test
+    public void test_boxed_lists_are_decoded_unboxed() {
+        AlphabeticalSerializer[] serializers = new AlphabeticalSerializer[] {
+                new AlphabeticalSerializer(), new CompactAlphabeticalSerializer(), new DeduplicatingAlphabeticalSerializer(),
+                new ReferenceSensitiveAlphabeticalSerializer(), new PolymorphicAlphabeticalSerializer(new ClassRegistry())
+        };
+        for (AlphabeticalSerializer serializer : serializers) {
+            List<Integer> ints = Arrays.asList(1, -1, Integer.MAX_VALUE, 0);
+            assertArrayEquals(new int[] {1, -1, Integer.MAX_VALUE, 0}, serializer.deserialiseInts(serializer.serialize(ints)));
+            assertArrayEquals(new int[] {1, -1, Integer.MAX_VALUE, 0}, serializer.deserialiseInts(serializer.serialize(new ArrayList<>(ints))));
+            assertArrayEquals(new int[] {1, -1, Integer.MAX_VALUE, 0}, serializer.deserialiseInts(serializer.serialize(ints, Integer.class)));
+            List<Long> longs = Arrays.asList(Long.MIN_VALUE, 3L);
+            assertArrayEquals(new long[] {Long.MIN_VALUE, 3L}, serializer.deserialiseLongs(serializer.serialize(longs)));
+            List<Double> doubles = Arrays.asList(0.5, -1e300);
+            assertArrayEquals(new double[] {0.5, -1e300}, serializer.deserialiseDoubles(serializer.serialize(doubles)), 0);
+            assertEquals(0, serializer.deserialiseInts(serializer.serialize(new ArrayList<Integer>())).length);
+
+            IntList intList = serializer.intList(serializer.serialize(ints));
+            assertEquals(ints, intList);
+            assertEquals(Integer.MAX_VALUE, intList.getInt(2));
+            assertTrue(intList.contains(-1));
+            assertFalse(intList.contains(2));
+        }
+    }
+
+    @Test
+    public void test_unboxed_decoding_advances_the_buffer() {
+        AlphabeticalSerializer serializer = new AlphabeticalSerializer();
+        byte[] data = serializer.serialize(Arrays.asList(7, 8));
+        ByteBuffer byteBuffer = ByteBuffer.allocate(data.length + 1);
+        byteBuffer.put(data).put((byte) 9).flip();
+        assertArrayEquals(new int[] {7, 8}, serializer.deserialiseInts(byteBuffer));
+        assertEquals(9, byteBuffer.get());
+    }
+
+    @Test
+    public void test_null_elements_are_not_decoded_unboxed() {
+        AlphabeticalSerializer serializer = new AlphabeticalSerializer();
+        byte[] data = serializer.serialize(Arrays.asList(1, null));
+        try {
+            serializer.deserialiseInts(data);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            serializer.deserialiseInts(new byte[] {0, 0, 0, 100, 1});
+            fail();
+        } catch (BufferUnderflowException e) {
+        }
+    }
+
+    private static Inventory inventory() {
+        Inventory inventory = new Inventory();
+        inventory.counts = new HashMap<>();
+        inventory.counts.put("a", 1);
+        inventory.counts.put("b", null);
+        inventory.ids = new HashSet<>(Arrays.asList(5L, 50000000000L, -1L));
+        inventory.items = new LinkedHashMap<>();
+        TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+        encapsulatedData.a = 3;
+        inventory.items.put("first", encapsulatedData);
+        inventory.items.put("missing", null);
+        inventory.items.put("αβγ", new TestUtils.EncapsulatedData());
+        inventory.names = new ArrayList<>(Arrays.asList("x", null, "x", "y"));
+        inventory.number = 7;
+        inventory.readings = new ArrayDeque<>(Arrays.asList(1.5, -2.5, 0.0));
+        inventory.scores = new ArrayList<>(Arrays.asList(1, 2, 3));
+        inventory.tags = new LinkedHashSet<>(Arrays.asList('z', 'a', 'm'));
+        inventory.units = new HashMap<>();
+        inventory.units.put(TimeUnit.SECONDS, "s");
+        inventory.units.put(TimeUnit.DAYS, "d");
+        return inventory;
+    }
+
+    static class Inventory {
+        HashMap<String, Integer> counts;
+        List<String> empty;
+        HashSet<Long> ids;
+        LinkedHashMap<String, TestUtils.EncapsulatedData> items;
+        ArrayList<String> names;
+        int number;
+        ArrayDeque<Double> readings;
+        List<Integer> scores;
+        Set<Character> tags;
+        Map<TimeUnit, String> units;
+    }
+
+    static class Scores {
+        List<Integer> values;
+    }
+
     private void evaluateLengthAndData() {
         assertEquals(19, data.length);
         ByteBuffer byteBuffer = ByteBuffer.wrap(data);
@@ -0,0 +1,61 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestOutputBuffer {
+
+    @Test
+    public void test_buffer_grows_and_keeps_what_was_written() {
+        OutputBuffer outputBuffer = new OutputBuffer(3);
+        outputBuffer.put((byte) 1);
+        outputBuffer.putInt(0x01020304);
+        outputBuffer.putLong(-1L);
+        outputBuffer.putChar('c');
+        outputBuffer.put(new byte[100]);
+        assertEquals(1 + 4 + 8 + 2 + 100, outputBuffer.position());
+
+        ByteBuffer byteBuffer = ByteBuffer.wrap(outputBuffer.toByteArray());
+        assertEquals(115, byteBuffer.capacity());
+        assertEquals(1, byteBuffer.get());
+        assertEquals(0x01020304, byteBuffer.getInt());
+        assertEquals(-1L, byteBuffer.getLong());
+        assertEquals('c', byteBuffer.getChar());
+    }
+
+    @Test
+    public void test_full_buffer_is_returned_without_copying() {
+        OutputBuffer outputBuffer = new OutputBuffer(8);
+        outputBuffer.putDouble(1.5);
+        byte[] first = outputBuffer.toByteArray();
+        assertSame(first, outputBuffer.toByteArray());
+        assertEquals(8, first.length);
+    }
+
+    @Test
+    public void test_deep_graph_is_serialized_in_one_pass() {
+        TestUtils.ComplexDataStructure cds = new TestUtils.ComplexDataStructure();
+        TestUtils.ComplexDataStructure addingCds = cds;
+        for (int i = 0; i < 100; i++) {
+            addingCds.a = i;
+            addingCds.b = -i;
+            addingCds.somethingElse = new TestUtils.ComplexDataStructure();
+            addingCds = addingCds.somethingElse;
+        }
+        VSerializer vSerializer = new AlphabeticalSerializer();
+        byte[] data = vSerializer.serialize(cds);
+        assertEquals(SerializationUtils.calculateSize(ClassPlan.of(cds.getClass()), cds), data.length);
+
+        TestUtils.ComplexDataStructure recoveredCds = vSerializer.deserialise(data, TestUtils.ComplexDataStructure.class);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, recoveredCds.a);
+            assertEquals(-i, recoveredCds.b);
+            recoveredCds = recoveredCds.somethingElse;
+        }
+        assertEquals(data.length, vSerializer.serialize(cds).length);
+    }
+}
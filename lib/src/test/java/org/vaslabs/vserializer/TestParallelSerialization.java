@@ -0,0 +1,98 @@
+package org.vaslabs.vserializer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestParallelSerialization {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Object[] elements(int length) {
+        Object[] elements = new Object[length];
+        for (int i = 0; i < length; i++) {
+            switch (i % 4) {
+                case 0:
+                    TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+                    encapsulatedData.a = i;
+                    encapsulatedData.b = -i;
+                    elements[i] = encapsulatedData;
+                    break;
+                case 1:
+                    elements[i] = "element " + i;
+                    break;
+                case 2:
+                    elements[i] = null;
+                    break;
+                default:
+                    elements[i] = i;
+            }
+        }
+        return elements;
+    }
+
+    @Test
+    public void test_parallel_output_is_the_sequential_output() {
+        Object[] elements = elements(AlphabeticalSerializer.PARALLEL_CHUNK_LENGTH * 5 + 7);
+        AlphabeticalSerializer[] serializers = new AlphabeticalSerializer[] {
+                new AlphabeticalSerializer(), new CompactAlphabeticalSerializer(), new DeduplicatingAlphabeticalSerializer()
+        };
+        for (AlphabeticalSerializer vSerializer : serializers) {
+            assertTrue(Arrays.equals(vSerializer.serialize(elements), vSerializer.serialize(elements, executor)));
+        }
+
+        List<Object> shortList = Arrays.asList(elements(10));
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        assertTrue(Arrays.equals(vSerializer.serialize(shortList), vSerializer.serialize(shortList, executor)));
+    }
+
+    @Test
+    public void test_parallel_output_reads_back() {
+        TestUtils.EncapsulatedData[] encapsulatedDatas = new TestUtils.EncapsulatedData[AlphabeticalSerializer.PARALLEL_CHUNK_LENGTH * 3];
+        for (int i = 0; i < encapsulatedDatas.length; i++) {
+            encapsulatedDatas[i] = new TestUtils.EncapsulatedData();
+            encapsulatedDatas[i].a = i;
+        }
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        TestUtils.EncapsulatedData[] recovered = vSerializer.deserialise(vSerializer.serialize(encapsulatedDatas, executor), TestUtils.EncapsulatedData[].class);
+        assertEquals(encapsulatedDatas.length, recovered.length);
+        for (int i = 0; i < recovered.length; i++) {
+            assertEquals(i, recovered[i].a);
+        }
+    }
+
+    @Test
+    public void test_failures_of_other_threads_are_rethrown() {
+        Object[] elements = elements(AlphabeticalSerializer.PARALLEL_CHUNK_LENGTH * 3);
+        elements[elements.length - 1] = new Object() {
+            private int value;
+        };
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer() {
+            @Override
+            protected void putElementIn(OutputBuffer byteBuffer, ClassPlan plan, Object object) throws IllegalAccessException {
+                if (object != null && object.getClass().isAnonymousClass())
+                    throw new IllegalStateException("unsupported element");
+                super.putElementIn(byteBuffer, plan, object);
+            }
+        };
+        try {
+            vSerializer.serialize(elements, executor);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("unsupported element", e.getMessage());
+        }
+    }
+}
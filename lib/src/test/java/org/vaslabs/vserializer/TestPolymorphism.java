@@ -0,0 +1,174 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestPolymorphism {
+
+    private final PolymorphicAlphabeticalSerializer vSerializer =
+            new PolymorphicAlphabeticalSerializer(new ClassRegistry(Dog.class, Cat.class, Circle.class, String.class, TimeUnit.class));
+
+    private static Zoo zoo() {
+        Dog dog = new Dog();
+        dog.name = "rex";
+        dog.barks = 3;
+        Cat cat = new Cat();
+        cat.name = "tom";
+        cat.indoor = true;
+        Zoo zoo = new Zoo();
+        zoo.animals = new Animal[] {dog, null, cat};
+        zoo.favourite = cat;
+        Circle circle = new Circle();
+        circle.radius = 2.5;
+        zoo.shape = circle;
+        zoo.anything = TimeUnit.HOURS;
+        zoo.point = new Point();
+        zoo.point.x = 4;
+        return zoo;
+    }
+
+    @Test
+    public void test_subclasses_and_interfaces_are_kept() {
+        Zoo recoveredZoo = vSerializer.deserialise(vSerializer.serialize(zoo()), Zoo.class);
+        assertEquals(3, recoveredZoo.animals.length);
+        assertEquals("rex", recoveredZoo.animals[0].name);
+        assertEquals(3, ((Dog) recoveredZoo.animals[0]).barks);
+        assertNull(recoveredZoo.animals[1]);
+        assertTrue(((Cat) recoveredZoo.animals[2]).indoor);
+        assertEquals("tom", recoveredZoo.favourite.name);
+        assertTrue(((Cat) recoveredZoo.favourite).indoor);
+        assertEquals(2.5, ((Circle) recoveredZoo.shape).radius, 0);
+        assertSame(TimeUnit.HOURS, recoveredZoo.anything);
+        assertEquals(4, recoveredZoo.point.x);
+
+        Object[] objects = new Object[] {"text", zoo().animals[0], null, TimeUnit.DAYS};
+        Object[] recoveredObjects = vSerializer.deserialise(vSerializer.serialize(objects), Object[].class);
+        assertEquals("text", recoveredObjects[0]);
+        assertEquals("rex", ((Dog) recoveredObjects[1]).name);
+        assertNull(recoveredObjects[2]);
+        assertSame(TimeUnit.DAYS, recoveredObjects[3]);
+    }
+
+    @Test
+    public void test_lists_are_read_back_with_their_element_type() {
+        PolymorphicAlphabeticalSerializer emptyRegistrySerializer = new PolymorphicAlphabeticalSerializer(new ClassRegistry());
+        List<Integer> numbers = new ArrayList<>(Arrays.asList(1, null, 3));
+        assertEquals(numbers, emptyRegistrySerializer.deserialise(emptyRegistrySerializer.serialize(numbers), List.class, Integer.class));
+        List<String> names = Arrays.asList("a", "b");
+        assertEquals(names, emptyRegistrySerializer.deserialise(emptyRegistrySerializer.serialize(names), List.class, String.class));
+        List<TestUtils.EncapsulatedData> models = Arrays.asList(new TestUtils.EncapsulatedData(), null);
+        models.get(0).a = 6;
+        List<TestUtils.EncapsulatedData> recoveredModels = emptyRegistrySerializer.deserialise(
+                emptyRegistrySerializer.serialize(models), List.class, TestUtils.EncapsulatedData.class);
+        assertEquals(6, recoveredModels.get(0).a);
+        assertNull(recoveredModels.get(1));
+
+        List<Animal> animals = Arrays.asList(zoo().animals);
+        List<Animal> recoveredAnimals = vSerializer.deserialise(vSerializer.serialize(animals, Animal.class), List.class, Animal.class);
+        assertEquals(3, ((Dog) recoveredAnimals.get(0)).barks);
+        assertNull(recoveredAnimals.get(1));
+        assertTrue(((Cat) recoveredAnimals.get(2)).indoor);
+    }
+
+    @Test
+    public void test_values_of_the_declared_type_take_no_extra_room() {
+        TestUtils.ComplexDataStructure cds = new TestUtils.ComplexDataStructure();
+        cds.a = 1;
+        cds.somethingElse = new TestUtils.ComplexDataStructure();
+        cds.somethingElse.b = 2;
+        cds.somethingElse.somethingElse = new TestUtils.ComplexDataStructure();
+        byte[] data = vSerializer.serialize(cds);
+        byte[] plainData = new AlphabeticalSerializer().serialize(cds);
+        assertEquals(plainData.length, data.length);
+        assertEquals(2, vSerializer.deserialise(data, TestUtils.ComplexDataStructure.class).somethingElse.b);
+
+        Holder holder = new Holder();
+        holder.point = new Point();
+        holder.point.x = 1;
+        assertTrue(Arrays.equals(new AlphabeticalSerializer().serialize(holder), vSerializer.serialize(holder)));
+    }
+
+    @Test
+    public void test_streams_and_projections_read_tags() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ArrayStreamWriter<Animal> writer = new ArrayStreamWriter<>(vSerializer, outputStream, 3, Animal.class);
+        for (Animal animal : zoo().animals) {
+            writer.write(animal);
+        }
+        writer.close();
+        ElementIterator<Animal> iterator = vSerializer.iterate(outputStream.toByteArray(), Animal.class);
+        assertEquals(3, ((Dog) iterator.next()).barks);
+        assertNull(iterator.next());
+        assertTrue(((Cat) iterator.next()).indoor);
+
+        Zoo summary = vSerializer.deserialise(vSerializer.serialize(zoo()), Zoo.class, "shape");
+        assertEquals(2.5, ((Circle) summary.shape).radius, 0);
+    }
+
+    @Test
+    public void test_unregistered_classes_are_rejected() {
+        Zoo zoo = zoo();
+        zoo.favourite = new Animal() {};
+        try {
+            vSerializer.serialize(zoo);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        byte[] data = vSerializer.serialize(new Animal[] {new Dog()});
+        PolymorphicAlphabeticalSerializer otherSerializer = new PolymorphicAlphabeticalSerializer(new ClassRegistry(Circle.class));
+        try {
+            otherSerializer.iterate(data, Animal.class).next();
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    private static abstract class Animal implements Serializable {
+        String name;
+    }
+
+    private static class Dog extends Animal {
+        private int barks;
+    }
+
+    private static class Cat extends Animal {
+        private boolean indoor;
+    }
+
+    private interface Shape {
+    }
+
+    private static class Circle implements Shape {
+        private double radius;
+    }
+
+    private static final class Point {
+        private int x;
+    }
+
+    private static class Holder {
+        private Point point;
+    }
+
+    private static class Zoo implements Serializable {
+        private Animal[] animals;
+        private Object anything;
+        private Animal favourite;
+        private Point point;
+        private Shape shape;
+    }
+}
@@ -0,0 +1,78 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestPrimitiveArrays {
+
+    @Test
+    public void test_bulk_arrays_keep_the_big_endian_layout() {
+        VSerializer vSerializer = new AlphabeticalSerializer();
+        int[] numbers = new int[] {1, -2, Integer.MAX_VALUE};
+        byte[] data = vSerializer.serialize(numbers);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        for (int number : numbers) {
+            assertEquals(number, byteBuffer.getInt());
+        }
+        assertTrue(Arrays.equals(numbers, vSerializer.deserialise(data, int[].class)));
+
+        TestUtils.DataStructureWithArray dataStructureWithArray = new TestUtils.DataStructureWithArray();
+        dataStructureWithArray.numbers = new int[] {5, 6, 7};
+        dataStructureWithArray.value = 9L;
+        TestUtils.DataStructureWithArray recovered =
+                vSerializer.deserialise(vSerializer.serialize(dataStructureWithArray), TestUtils.DataStructureWithArray.class);
+        assertTrue(Arrays.equals(dataStructureWithArray.numbers, recovered.numbers));
+        assertEquals(9L, recovered.value);
+    }
+
+    @Test
+    public void test_native_byte_order() {
+        VSerializer vSerializer = new AlphabeticalSerializer(ByteOrder.LITTLE_ENDIAN);
+        double[] values = new double[] {1.5, -2.25, Double.MIN_VALUE};
+        byte[] data = vSerializer.serialize(values);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : values) {
+            assertEquals(value, byteBuffer.getDouble(), 0);
+        }
+        assertTrue(Arrays.equals(values, vSerializer.deserialise(data, double[].class)));
+
+        TestUtils.AllEncapsulatedData allEncapsulatedData = new TestUtils.AllEncapsulatedData();
+        allEncapsulatedData.a = -1L;
+        allEncapsulatedData.b = 0x01020304;
+        data = vSerializer.serialize(allEncapsulatedData);
+        TestUtils.AllEncapsulatedData recoveredData = vSerializer.deserialise(data, TestUtils.AllEncapsulatedData.class);
+        assertEquals(allEncapsulatedData.a, recoveredData.a);
+        assertEquals(allEncapsulatedData.b, recoveredData.b);
+        assertTrue(!Arrays.equals(data, new AlphabeticalSerializer().serialize(allEncapsulatedData)));
+    }
+
+    @Test
+    public void test_decoding_into_an_existing_array() {
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        long[] values = new long[] {3, 4, 5};
+        byte[] data = vSerializer.serialize(values);
+
+        long[] array = new long[5];
+        assertEquals(3, vSerializer.deserialiseInto(data, array, 2));
+        assertTrue(Arrays.equals(new long[] {0, 0, 3, 4, 5}, array));
+
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        try {
+            vSerializer.deserialiseInto(byteBuffer, array, 3);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals(0, byteBuffer.position());
+        }
+
+        float[] floats = new float[2];
+        assertEquals(2, vSerializer.deserialiseInto(vSerializer.serialize(new float[] {1f, 2f}), floats, 0));
+        assertEquals(2f, floats[1], 0);
+    }
+}
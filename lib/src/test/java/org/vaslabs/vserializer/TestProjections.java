@@ -0,0 +1,103 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TestProjections {
+
+    private static Record record() {
+        Record record = new Record();
+        record.attachments = TestUtils.initEncapsulatedDataArray();
+        record.attachments[1] = null;
+        record.body = "A body with non Latin-1 characters: αβγ 😀";
+        record.counts = new int[] {1, -200, 30000};
+        record.header = "header";
+        record.id = 77L;
+        record.labels = new String[] {"x", null, "header"};
+        record.nested = new TestUtils.EncapsulatedData();
+        record.nested.a = 9;
+        record.title = "title";
+        record.unit = TimeUnit.SECONDS;
+        record.values = new Integer[] {5, null, -5};
+        record.wide = "中文中文中文";
+        record.zeta = 3;
+        return record;
+    }
+
+    @Test
+    public void test_only_selected_fields_are_decoded() {
+        AlphabeticalSerializer[] serializers = new AlphabeticalSerializer[] {
+                new AlphabeticalSerializer(), new CompactAlphabeticalSerializer(), new DeduplicatingAlphabeticalSerializer(),
+                new ReferenceSensitiveAlphabeticalSerializer()
+        };
+        for (AlphabeticalSerializer vSerializer : serializers) {
+            byte[] data = vSerializer.serialize(record());
+            Record summary = vSerializer.deserialise(data, Record.class, "zeta", "title", "id");
+            assertEquals(77L, summary.id);
+            assertEquals("title", summary.title);
+            assertEquals(3, summary.zeta);
+            assertNull(summary.body);
+            assertNull(summary.attachments);
+            assertNull(summary.nested);
+            assertNull(summary.unit);
+
+            Record other = vSerializer.deserialise(data, new Projection<>(Record.class, "labels", "wide", "nested"));
+            assertEquals("header", other.labels[2]);
+            assertEquals(record().wide, other.wide);
+            assertEquals(9, other.nested.a);
+            assertNull(other.title);
+            assertEquals(0, other.zeta);
+        }
+    }
+
+    @Test
+    public void test_buffers_are_not_moved() {
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(vSerializer.serialize(record()));
+        Projection<Record> projection = new Projection<>(Record.class, "counts", "unit");
+        Record record = vSerializer.deserialise(byteBuffer, projection);
+        assertEquals(0, byteBuffer.position());
+        assertArrayEquals(new int[] {1, -200, 30000}, record.counts);
+        assertSame(TimeUnit.SECONDS, record.unit);
+        assertNull(record.values);
+        assertSame(Record.class, projection.getType());
+    }
+
+    @Test
+    public void test_unknown_fields_are_rejected() {
+        try {
+            new Projection<>(Record.class, "missing");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new Projection<>(String.class, "value");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    private static class Record implements Serializable {
+        private TestUtils.EncapsulatedData[] attachments;
+        private String body;
+        private int[] counts;
+        private String header;
+        private long id;
+        private String[] labels;
+        private TestUtils.EncapsulatedData nested;
+        private String title;
+        private TimeUnit unit;
+        private Integer[] values;
+        private String wide;
+        private int zeta;
+    }
+}
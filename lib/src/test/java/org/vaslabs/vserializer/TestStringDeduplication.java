@@ -0,0 +1,95 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestStringDeduplication {
+
+    private static List<TestUtils.InternalStrings> readings(int count) {
+        List<TestUtils.InternalStrings> readings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestUtils.InternalStrings reading = new TestUtils.InternalStrings();
+            reading.myMessage = new String("device-" + (i % 2));
+            reading.myNumber = i;
+            reading.myOtherMessage = i == 1 ? null : new String("celsius");
+            readings.add(reading);
+        }
+        return readings;
+    }
+
+    @Test
+    public void test_repeated_strings_are_written_once() {
+        AlphabeticalSerializer vSerializer = new DeduplicatingAlphabeticalSerializer();
+        List<TestUtils.InternalStrings> readings = readings(10);
+        byte[] data = vSerializer.serialize(readings);
+        byte[] plainData = new AlphabeticalSerializer().serialize(readings);
+        // each repeat costs its index instead of its encoding and characters
+        assertEquals(plainData.length - 8 * (1 + 8) - 8 * (1 + 7), data.length);
+
+        List<TestUtils.InternalStrings> recoveredReadings = vSerializer.deserialise(data, List.class, TestUtils.InternalStrings.class);
+        assertEquals(10, recoveredReadings.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("device-" + (i % 2), recoveredReadings.get(i).myMessage);
+            assertEquals(i, recoveredReadings.get(i).myNumber);
+        }
+        assertNull(recoveredReadings.get(1).myOtherMessage);
+        assertSame(recoveredReadings.get(0).myMessage, recoveredReadings.get(8).myMessage);
+        assertSame(recoveredReadings.get(3).myMessage, recoveredReadings.get(9).myMessage);
+        assertSame(recoveredReadings.get(0).myOtherMessage, recoveredReadings.get(9).myOtherMessage);
+    }
+
+    @Test
+    public void test_payloads_do_not_share_strings() {
+        AlphabeticalSerializer vSerializer = new DeduplicatingAlphabeticalSerializer();
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "same";
+        internalStrings.myOtherMessage = "same";
+        byte[] first = vSerializer.serialize(internalStrings);
+        byte[] second = vSerializer.serialize(internalStrings);
+        assertEquals(4 + 1 + 4 + 4 + 4, first.length);
+        assertTrue(Arrays.equals(first, second));
+
+        TestUtils.InternalStrings recoveredStrings = vSerializer.deserialise(second, TestUtils.InternalStrings.class);
+        assertSame(recoveredStrings.myMessage, recoveredStrings.myOtherMessage);
+        assertEquals("same", recoveredStrings.myMessage);
+    }
+
+    @Test
+    public void test_iterating_and_streaming() throws Exception {
+        AlphabeticalSerializer vSerializer = new DeduplicatingAlphabeticalSerializer();
+        List<TestUtils.InternalStrings> readings = readings(6);
+        ElementIterator<TestUtils.InternalStrings> iterator = vSerializer.iterate(vSerializer.serialize(readings), TestUtils.InternalStrings.class);
+        TestUtils.InternalStrings first = iterator.next();
+        // a payload decoded in between keeps its own strings
+        vSerializer.deserialise(vSerializer.serialize(readings(3)), List.class, TestUtils.InternalStrings.class);
+        iterator.next();
+        assertSame(first.myMessage, iterator.next().myMessage);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ArrayStreamWriter<TestUtils.InternalStrings> writer = new ArrayStreamWriter<>(vSerializer, outputStream, 600);
+        for (TestUtils.InternalStrings reading : readings(600)) {
+            writer.write(reading);
+        }
+        writer.close();
+        ArrayStreamReader<TestUtils.InternalStrings> reader = new ArrayStreamReader<>(vSerializer,
+                new ByteArrayInputStream(outputStream.toByteArray()), TestUtils.InternalStrings.class);
+        TestUtils.InternalStrings firstReading = reader.read();
+        for (int i = 1; i < 600; i++) {
+            TestUtils.InternalStrings reading = reader.read();
+            assertEquals(i, reading.myNumber);
+            assertEquals("device-" + (i % 2), reading.myMessage);
+            if (i % 2 == 0)
+                assertSame(firstReading.myMessage, reading.myMessage);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestStringEncodings {
+
+    private final VSerializer vSerializer = new AlphabeticalSerializer();
+
+    @Test
+    public void test_latin_1_takes_a_byte_per_char() {
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "café";
+        internalStrings.myOtherMessage = "";
+        byte[] data = vSerializer.serialize(internalStrings);
+        // length, encoding and chars, then the number, then the length of the empty string
+        assertEquals(4 + 1 + 4 + 4 + 4, data.length);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        assertEquals(4, byteBuffer.getInt());
+        assertEquals(StringSerializer.LATIN_1, byteBuffer.get());
+        assertEquals((byte) 0xe9, data[8]);
+        assertEquals(data.length, SerializationUtils.calculateSize(ClassPlan.of(TestUtils.InternalStrings.class), internalStrings));
+
+        TestUtils.InternalStrings recoveredStrings = vSerializer.deserialise(data, TestUtils.InternalStrings.class);
+        assertEquals(internalStrings.myMessage, recoveredStrings.myMessage);
+        assertEquals("", recoveredStrings.myOtherMessage);
+    }
+
+    @Test
+    public void test_utf_8_and_utf_16_fallbacks() {
+        String mostlyAscii = "id-€";
+        byte[] data = vSerializer.serialize(mostlyAscii);
+        assertEquals(StringSerializer.UTF_8, data[0]);
+        assertEquals(1 + 3 + 3, data.length);
+        assertEquals(mostlyAscii, vSerializer.deserialise(data, String.class));
+
+        String greek = "αβγ";
+        data = vSerializer.serialize(greek);
+        assertEquals(StringSerializer.UTF_16, data[0]);
+        assertEquals(1 + 6, data.length);
+        assertEquals(greek, vSerializer.deserialise(data, String.class));
+
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "a😀b";
+        internalStrings.myOtherMessage = "\ud800";
+        TestUtils.InternalStrings recoveredStrings =
+                vSerializer.deserialise(vSerializer.serialize(internalStrings), TestUtils.InternalStrings.class);
+        assertEquals(internalStrings.myMessage, recoveredStrings.myMessage);
+        assertEquals(internalStrings.myOtherMessage, recoveredStrings.myOtherMessage);
+    }
+
+    @Test
+    public void test_direct_buffers() {
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "plain";
+        internalStrings.myNumber = 3;
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(64);
+        int written = vSerializer.serialize(internalStrings, byteBuffer);
+        assertEquals(4 + 1 + 5 + 4 + 4, written);
+        byteBuffer.flip();
+        TestUtils.InternalStrings recoveredStrings = vSerializer.deserialise(byteBuffer, TestUtils.InternalStrings.class);
+        assertEquals("plain", recoveredStrings.myMessage);
+        assertEquals(3, recoveredStrings.myNumber);
+        assertNull(recoveredStrings.myOtherMessage);
+    }
+}
@@ -0,0 +1,152 @@
+package org.vaslabs.vserializer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestVStore {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("vstore", "");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void test_put_get_remove_and_reopen() throws IOException {
+        VStore<String, TestUtils.EncapsulatedData> store = new VStore<>(directory, String.class, TestUtils.EncapsulatedData.class);
+        for (int i = 0; i < 100; i++) {
+            store.put("key" + i, encapsulatedData(i));
+        }
+        store.put("key5", encapsulatedData(500));
+        assertTrue(store.remove("key7"));
+        assertFalse(store.remove("key7"));
+        assertEquals(99, store.size());
+        assertEquals(500, store.get("key5").b);
+        assertEquals(6, store.get("key6").b);
+        assertNull(store.get("key7"));
+        store.close();
+
+        store = new VStore<>(directory, String.class, TestUtils.EncapsulatedData.class);
+        assertEquals(99, store.size());
+        assertEquals(500, store.get("key5").b);
+        assertEquals(99, store.get("key99").a);
+        assertFalse(store.containsKey("key7"));
+        store.put("key7", encapsulatedData(7));
+        assertEquals(7, store.get("key7").b);
+        store.close();
+    }
+
+    @Test
+    public void test_segments_roll_over_and_compact() throws IOException {
+        VStore<Long, String> store = new VStore<>(directory, Long.class, String.class, new AlphabeticalSerializer(), 256);
+        for (int round = 0; round < 5; round++) {
+            for (long key = 0; key < 50; key++) {
+                store.put(key, "value " + key + " of round " + round);
+            }
+        }
+        char[] characters = new char[1000];
+        Arrays.fill(characters, 'v');
+        store.put(-1L, new String(characters));
+        int segmentFiles = directory.list().length;
+
+        store.compact();
+        assertTrue(directory.list().length < segmentFiles);
+        for (long key = 0; key < 50; key++) {
+            assertEquals("value " + key + " of round 4", store.get(key));
+        }
+        assertEquals(new String(characters), store.get(-1L));
+        store.close();
+
+        store = new VStore<>(directory, Long.class, String.class, new AlphabeticalSerializer(), 256);
+        assertEquals(51, store.size());
+        assertEquals("value 42 of round 4", store.get(42L));
+        store.close();
+    }
+
+    @Test
+    public void test_failed_compactions_are_reported_and_retried() throws IOException, InterruptedException {
+        FailingSerializer serializer = new FailingSerializer();
+        VStore<Long, String> store = new VStore<>(directory, Long.class, String.class, serializer, 256);
+        serializer.failing = true;
+        IOException failure = null;
+        for (int round = 0; failure == null && round < 1000; round++) {
+            try {
+                for (long key = 0; key < 50; key++) {
+                    store.put(key, "value " + key + " of round " + round);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            Thread.sleep(5);
+        }
+        assertTrue(failure != null && failure.getCause().getCause() instanceof IllegalStateException);
+
+        serializer.failing = false;
+        int segmentFiles = directory.list().length;
+        for (int round = 0; directory.list().length >= segmentFiles && round < 1000; round++) {
+            store.put((long) round % 50, "value " + round);
+            Thread.sleep(5);
+        }
+        assertTrue(directory.list().length < segmentFiles);
+        store.close();
+    }
+
+    /**
+     * Cannot read keys back on the compaction thread while failing.
+     */
+    private static class FailingSerializer extends AlphabeticalSerializer {
+        volatile boolean failing;
+
+        @Override
+        public <T> T deserialise(ByteBuffer byteBuffer, Class<T> clazz) {
+            if (failing && Thread.currentThread().getName().equals("VStore compaction"))
+                throw new IllegalStateException("Cannot read keys");
+            return super.deserialise(byteBuffer, clazz);
+        }
+    }
+
+    @Test
+    public void test_key_index() {
+        KeyIndex<Integer> index = new KeyIndex<>();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(KeyIndex.ABSENT, index.put(i * 16, i));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals(i, index.remove(i * 16));
+        }
+        assertEquals(500, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? KeyIndex.ABSENT : i, index.get(i * 16));
+        }
+    }
+
+    private static TestUtils.EncapsulatedData encapsulatedData(int i) {
+        TestUtils.EncapsulatedData encapsulatedData = new TestUtils.EncapsulatedData();
+        encapsulatedData.a = i;
+        encapsulatedData.b = i;
+        return encapsulatedData;
+    }
+}
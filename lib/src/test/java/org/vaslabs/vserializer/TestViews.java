@@ -0,0 +1,125 @@
+package org.vaslabs.vserializer;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestViews {
+
+    private static Reading reading(long timestamp) {
+        Reading reading = new Reading();
+        reading.active = true;
+        reading.code = 'x';
+        reading.level = -3;
+        reading.ratio = 0.5f;
+        reading.temperature = 21.5;
+        reading.timestamp = timestamp;
+        reading.unit = TimeUnit.MINUTES;
+        reading.value = 42;
+        return reading;
+    }
+
+    @Test
+    public void test_fields_are_read_in_place() {
+        for (ByteOrder byteOrder : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            AlphabeticalSerializer vSerializer = new AlphabeticalSerializer(byteOrder);
+            VView<Reading> view = vSerializer.view(Reading.class).wrap(vSerializer.serialize(reading(1000L)));
+            assertTrue(view.getBoolean("active"));
+            assertEquals('x', view.getChar("code"));
+            assertEquals(-3, view.getShort("level"));
+            assertEquals(0.5f, view.getFloat("ratio"), 0);
+            assertEquals(21.5, view.getDouble("temperature"), 0);
+            assertEquals(1000L, view.getLong("timestamp"));
+            assertSame(TimeUnit.MINUTES, view.<TimeUnit>getEnum("unit"));
+            assertEquals(42, view.getInt("value"));
+        }
+    }
+
+    @Test
+    public void test_views_are_pointed_at_one_instance_after_another() {
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        byte[] first = vSerializer.serialize(reading(1L));
+        Reading nullUnit = reading(2L);
+        nullUnit.unit = null;
+        nullUnit.active = false;
+        byte[] second = vSerializer.serialize(nullUnit);
+        ByteBuffer byteBuffer = ByteBuffer.allocate(first.length + second.length);
+        byteBuffer.put(first).put(second).position(first.length);
+
+        VView<Reading> view = vSerializer.view(Reading.class);
+        final int timestamp = view.fieldIndex("timestamp");
+        assertEquals(2L, view.wrap(byteBuffer).getLong(timestamp));
+        assertEquals(first.length, byteBuffer.position());
+        assertNull(view.getEnum("unit"));
+        assertFalse(view.getBoolean("active"));
+        assertEquals(1L, view.wrap(first).getLong(timestamp));
+    }
+
+    @Test
+    public void test_only_fields_at_fixed_offsets_are_viewed() {
+        AlphabeticalSerializer vSerializer = new AlphabeticalSerializer();
+        TestUtils.InternalStrings internalStrings = new TestUtils.InternalStrings();
+        internalStrings.myMessage = "message";
+        internalStrings.myNumber = 7;
+        VView<TestUtils.InternalStrings> view = vSerializer.view(TestUtils.InternalStrings.class).wrap(vSerializer.serialize(internalStrings));
+        try {
+            view.getInt("myNumber");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        VView<Reading> readingView = vSerializer.view(Reading.class);
+        try {
+            readingView.wrap(new byte[4]);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        readingView.wrap(vSerializer.serialize(reading(0L)));
+        try {
+            readingView.getInt("timestamp");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            readingView.getInt("missing");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void test_serializers_without_fixed_offsets_have_no_views() {
+        AlphabeticalSerializer[] serializers = new AlphabeticalSerializer[] {
+                new CompactAlphabeticalSerializer(), new ReferenceSensitiveAlphabeticalSerializer(),
+                new RSAEncryptedAlphabeticalSerializer(null, null)
+        };
+        for (AlphabeticalSerializer serializer : serializers) {
+            try {
+                serializer.view(Reading.class);
+                fail(serializer.getClass().getSimpleName());
+            } catch (UnsupportedOperationException e) {
+            }
+        }
+    }
+
+    private static class Reading implements Serializable {
+        private boolean active;
+        private char code;
+        private short level;
+        private float ratio;
+        private double temperature;
+        private long timestamp;
+        private TimeUnit unit;
+        private int value;
+    }
+}
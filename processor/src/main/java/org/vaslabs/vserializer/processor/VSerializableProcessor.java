@@ -0,0 +1,287 @@
+package org.vaslabs.vserializer.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a codec for every class annotated with {@code org.vaslabs.vserializer.VSerializable}.
+ * The codec writes and reads the fields of the class directly, in the alphabetical layout of
+ * {@code AlphabeticalSerializer}, and is named after the binary name of the class with nested
+ * class separators flattened, followed by {@code _VCodec}.
+ */
+@SupportedAnnotationTypes(VSerializableProcessor.ANNOTATION)
+public class VSerializableProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "org.vaslabs.vserializer.VSerializable";
+    private static final String CODEC_SUFFIX = "_VCodec";
+
+    private static final Comparator<VariableElement> alphabeticalOrder = new Comparator<VariableElement>() {
+        @Override
+        public int compare(VariableElement lhs, VariableElement rhs) {
+            return lhs.getSimpleName().toString().compareTo(rhs.getSimpleName().toString());
+        }
+    };
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = processingEnv.getElementUtils().getTypeElement(ANNOTATION);
+        if (annotation == null)
+            return false;
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@VSerializable can only be applied to classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<VariableElement> fields = serializableFields(type);
+            if (fields == null || !isInstantiable(type))
+                continue;
+            try {
+                generateCodec(type, fields);
+            } catch (IOException e) {
+                error(type, "Cannot write the codec of " + type + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private boolean isInstantiable(TypeElement type) {
+        Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT)) {
+            error(type, "@VSerializable classes must not be private or abstract");
+            return false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            error(type, "@VSerializable nested classes must be static");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The serializable fields of the class and its superclasses in wire order, or null if one of
+     * them cannot be accessed by the generated codec.
+     */
+    private List<VariableElement> serializableFields(TypeElement type) {
+        PackageElement codecPackage = processingEnv.getElementUtils().getPackageOf(type);
+        List<VariableElement> fields = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        boolean valid = true;
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            boolean samePackage = processingEnv.getElementUtils().getPackageOf(current).equals(codecPackage);
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT))
+                    continue;
+                if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                    error(field, "Fields of @VSerializable classes must not be private or final");
+                    valid = false;
+                } else if (!samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+                    error(field, "Inherited fields of @VSerializable classes must be public or in the same package");
+                    valid = false;
+                } else if (!names.add(field.getSimpleName().toString())) {
+                    error(field, "Shadowed fields are not supported by @VSerializable classes");
+                    valid = false;
+                }
+                fields.add(field);
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        Collections.sort(fields, alphabeticalOrder);
+        return valid ? fields : null;
+    }
+
+    private boolean hasNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                return true;
+        }
+        return false;
+    }
+
+    private void generateCodec(TypeElement type, List<VariableElement> fields) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String codecName = binaryName.replace('$', '_') + CODEC_SUFFIX;
+        String codecSimpleName = packageName.isEmpty() ? codecName : codecName.substring(packageName.length() + 1);
+        String typeName = erasure(type.asType());
+
+        StringBuilder source = new StringBuilder(1024);
+        if (!packageName.isEmpty())
+            source.append("package ").append(packageName).append(";\n\n");
+        source.append("import java.nio.ByteBuffer;\n\n")
+                .append("import org.vaslabs.vserializer.AlphabeticalSerializer;\n")
+                .append("import org.vaslabs.vserializer.ClassCodec;\n")
+                .append("import org.vaslabs.vserializer.OutputBuffer;\n\n")
+                .append("/**\n * Generated by VSerializableProcessor for {@link ").append(typeName).append("}. Do not edit.\n */\n")
+                .append("public final class ").append(codecSimpleName)
+                .append(" extends ClassCodec<").append(typeName).append("> {\n");
+
+        if (hasNoArgConstructor(type)) {
+            source.append("\n    @Override\n")
+                    .append("    protected ").append(typeName).append(" newInstance() {\n")
+                    .append("        return new ").append(typeName).append("();\n")
+                    .append("    }\n");
+        }
+
+        source.append("\n    @Override\n")
+                .append("    protected void write(AlphabeticalSerializer serializer, OutputBuffer byteBuffer, ")
+                .append(typeName).append(" obj) throws IllegalAccessException {\n");
+        for (VariableElement field : fields) {
+            source.append("        ").append(writeStatement(field)).append('\n');
+        }
+        source.append("    }\n");
+
+        source.append("\n    @Override\n")
+                .append("    protected void read(AlphabeticalSerializer serializer, ByteBuffer byteBuffer, ")
+                .append(typeName).append(" obj) throws Exception {\n");
+        for (VariableElement field : fields) {
+            source.append("        obj.").append(field.getSimpleName()).append(" = ").append(readExpression(field)).append(";\n");
+        }
+        source.append("    }\n}\n");
+
+        JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(codecName, type);
+        Writer writer = sourceFile.openWriter();
+        try {
+            writer.write(source.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private String writeStatement(VariableElement field) {
+        String value = "obj." + field.getSimpleName();
+        TypeMirror type = field.asType();
+        switch (type.getKind()) {
+            case INT:
+                return "byteBuffer.putInt(" + value + ");";
+            case LONG:
+                return "byteBuffer.putLong(" + value + ");";
+            case SHORT:
+                return "byteBuffer.putShort(" + value + ");";
+            case CHAR:
+                return "byteBuffer.putChar(" + value + ");";
+            case BYTE:
+                return "byteBuffer.put(" + value + ");";
+            case BOOLEAN:
+                return "byteBuffer.put((byte) (" + value + " ? 1 : 0));";
+            case FLOAT:
+                return "byteBuffer.putFloat(" + value + ");";
+            case DOUBLE:
+                return "byteBuffer.putDouble(" + value + ");";
+            case ARRAY:
+                return "writeArray(serializer, byteBuffer, " + value + ");";
+        }
+        if (isString(type))
+            return "writeString(serializer, byteBuffer, " + value + ");";
+        if (isEnum(type))
+            return "writeEnum(serializer, byteBuffer, " + value + ");";
+        if (isSubtype(type, "java.util.Collection"))
+            return "writeCollection(serializer, byteBuffer, " + value + ", " + typeArgument(type, 0) + ");";
+        if (isSubtype(type, "java.util.Map"))
+            return "writeMap(serializer, byteBuffer, " + value + ", " + typeArgument(type, 0) + ", " + typeArgument(type, 1) + ");";
+        return "writeObject(serializer, byteBuffer, " + value + ");";
+    }
+
+    private String readExpression(VariableElement field) {
+        TypeMirror type = field.asType();
+        switch (type.getKind()) {
+            case INT:
+                return "byteBuffer.getInt()";
+            case LONG:
+                return "byteBuffer.getLong()";
+            case SHORT:
+                return "byteBuffer.getShort()";
+            case CHAR:
+                return "byteBuffer.getChar()";
+            case BYTE:
+                return "byteBuffer.get()";
+            case BOOLEAN:
+                return "byteBuffer.get() == 1";
+            case FLOAT:
+                return "byteBuffer.getFloat()";
+            case DOUBLE:
+                return "byteBuffer.getDouble()";
+            case ARRAY:
+                return "readArray(serializer, byteBuffer, " + erasure(type) + ".class)";
+        }
+        if (isString(type))
+            return "readString(serializer, byteBuffer)";
+        if (isEnum(type))
+            return "readEnum(serializer, byteBuffer, " + erasure(type) + ".class)";
+        if (isSubtype(type, "java.util.Collection"))
+            return "readCollection(serializer, byteBuffer, " + erasure(type) + ".class, " + typeArgument(type, 0) + ")";
+        if (isSubtype(type, "java.util.Map"))
+            return "readMap(serializer, byteBuffer, " + erasure(type) + ".class, " + typeArgument(type, 0) + ", " + typeArgument(type, 1) + ")";
+        return "readObject(serializer, byteBuffer, " + erasure(type) + ".class)";
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private boolean isSubtype(TypeMirror type, String superTypeName) {
+        TypeElement superType = processingEnv.getElementUtils().getTypeElement(superTypeName);
+        return type.getKind() == TypeKind.DECLARED
+                && processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type),
+                processingEnv.getTypeUtils().erasure(superType.asType()));
+    }
+
+    /**
+     * The class literal of a type argument of the declared type, like FieldPlan resolves it at
+     * runtime: Object when the argument is not a class or the type is raw.
+     */
+    private String typeArgument(TypeMirror type, int index) {
+        List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+        if (arguments.size() <= index || arguments.get(index).getKind() != TypeKind.DECLARED)
+            return "Object.class";
+        return erasure(arguments.get(index)) + ".class";
+    }
+
+    private static boolean isString(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals("java.lang.String");
+    }
+
+    private static boolean isEnum(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}